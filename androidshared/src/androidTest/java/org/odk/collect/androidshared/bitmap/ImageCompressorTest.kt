@@ -118,6 +118,28 @@ class ImageCompressorTest {
         assertThat(2000, equalTo(image.height))
     }
 
+    @Test
+    fun imageShouldBeCompressedToTheExactSizeWhenItIsSubsampled() {
+        saveTestBitmap(4000, 3000)
+        imageCompressor.execute(testImagePath, 500)
+
+        val image = ImageFileUtils.getBitmap(testImagePath, BitmapFactory.Options())!!
+
+        assertThat(500, equalTo(image.width))
+        assertThat(375, equalTo(image.height))
+    }
+
+    @Test
+    fun imageFileShouldNotBeRewrittenIfItDoesNotNeedToBeCompressed() {
+        saveTestBitmap(3000, 2000)
+        val imageFile = File(testImagePath)
+        imageFile.setLastModified(1000)
+
+        imageCompressor.execute(testImagePath, 3000)
+
+        assertThat(imageFile.lastModified(), equalTo(1000L))
+    }
+
     @Test
     fun keepExifAfterScaling() {
         val attributes = mutableMapOf(
@@ -19,58 +19,93 @@ import android.graphics.Bitmap
 import android.graphics.BitmapFactory
 import androidx.exifinterface.media.ExifInterface
 import timber.log.Timber
+import kotlin.math.max
 
 object ImageCompressor {
     /**
      * Before proceed with scaling or rotating, make sure existing exif information is stored/restored.
+     * The file is left untouched (including its exif data) if it doesn't need to be scaled.
      * @author Khuong Ninh (khuong.ninh@it-development.com)
      */
     fun execute(imagePath: String, maxPixels: Int) {
-        backupExifData(imagePath)
-        scaleDownImage(imagePath, maxPixels)
-        restoreExifData(imagePath)
+        if (maxPixels <= 0) {
+            return
+        }
+
+        val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        BitmapFactory.decodeFile(imagePath, bounds)
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0 || max(bounds.outWidth, bounds.outHeight) <= maxPixels) {
+            return
+        }
+
+        val exifData = readExifData(imagePath)
+        if (scaleDownImage(imagePath, bounds.outWidth, bounds.outHeight, maxPixels)) {
+            writeExifData(imagePath, exifData)
+        }
     }
 
     /**
      * This method is used to reduce an original picture size.
      * maxPixels refers to the max pixels of the long edge, the short edge is scaled proportionately.
+     *
+     * The image is decoded with the largest power of two [BitmapFactory.Options.inSampleSize]
+     * that keeps its long edge at least maxPixels long so that the decoded bitmap is never more
+     * than four times the size of the result (rather than the size of the original photo) and
+     * is then scaled to the exact size.
      */
-    private fun scaleDownImage(imagePath: String, maxPixels: Int) {
-        if (maxPixels <= 0) {
-            return
+    private fun scaleDownImage(imagePath: String, originalWidth: Int, originalHeight: Int, maxPixels: Int): Boolean {
+        val newWidth: Int
+        val newHeight: Int
+        if (originalWidth > originalHeight) {
+            newWidth = maxPixels
+            newHeight = (originalHeight.toDouble() / (originalWidth.toDouble() / maxPixels)).toInt()
+        } else {
+            newWidth = (originalWidth.toDouble() / (originalHeight.toDouble() / maxPixels)).toInt()
+            newHeight = maxPixels
         }
 
-        var image = ImageFileUtils.getBitmap(imagePath, BitmapFactory.Options())
-        if (image != null) {
-            val originalWidth = image.width.toDouble()
-            val originalHeight = image.height.toDouble()
-            if (originalWidth > originalHeight && originalWidth > maxPixels) {
-                val newHeight = (originalHeight / (originalWidth / maxPixels)).toInt()
-                image = Bitmap.createScaledBitmap(image, maxPixels, newHeight, false)
-                ImageFileUtils.saveBitmapToFile(image, imagePath)
-            } else if (originalHeight > maxPixels) {
-                val newWidth = (originalWidth / (originalHeight / maxPixels)).toInt()
-                image = Bitmap.createScaledBitmap(image, newWidth, maxPixels, false)
-                ImageFileUtils.saveBitmapToFile(image, imagePath)
-            }
+        val options = BitmapFactory.Options().apply {
+            inSampleSize = getSampleSize(max(originalWidth, originalHeight), maxPixels)
         }
+
+        val sampledImage = ImageFileUtils.getBitmap(imagePath, options) ?: return false
+        val image = Bitmap.createScaledBitmap(sampledImage, newWidth, newHeight, true)
+        if (image != sampledImage) {
+            sampledImage.recycle()
+        }
+
+        ImageFileUtils.saveBitmapToFile(image, imagePath)
+        image.recycle()
+        return true
     }
 
-    private fun backupExifData(imagePath: String) {
-        try {
+    private fun getSampleSize(longEdge: Int, maxPixels: Int): Int {
+        var sampleSize = 1
+        while (longEdge / (sampleSize * 2) >= maxPixels) {
+            sampleSize *= 2
+        }
+
+        return sampleSize
+    }
+
+    private fun readExifData(imagePath: String): Map<String, String?> {
+        return try {
             val exif = ExifInterface(imagePath)
-            for ((key, _) in exifDataBackup) {
-                exifDataBackup[key] = exif.getAttribute(key)
-            }
+            EXIF_TAGS.associateWith { exif.getAttribute(it) }
         } catch (e: Throwable) {
             Timber.w(e)
+            emptyMap()
         }
     }
 
-    private fun restoreExifData(imagePath: String) {
+    private fun writeExifData(imagePath: String, exifData: Map<String, String?>) {
+        if (exifData.isEmpty()) {
+            return
+        }
+
         try {
             val exif = ExifInterface(imagePath)
-            for ((key, value) in exifDataBackup) {
+            for ((key, value) in exifData) {
                 exif.setAttribute(key, value)
             }
             exif.saveAttributes()
@@ -79,37 +114,37 @@ object ImageCompressor {
         }
     }
 
-    private val exifDataBackup = mutableMapOf<String, String?>(
-        ExifInterface.TAG_DATETIME to null,
-        ExifInterface.TAG_DATETIME_ORIGINAL to null,
-        ExifInterface.TAG_DATETIME_DIGITIZED to null,
-        ExifInterface.TAG_OFFSET_TIME to null,
-        ExifInterface.TAG_OFFSET_TIME_ORIGINAL to null,
-        ExifInterface.TAG_OFFSET_TIME_DIGITIZED to null,
-        ExifInterface.TAG_SUBSEC_TIME to null,
-        ExifInterface.TAG_SUBSEC_TIME_ORIGINAL to null,
-        ExifInterface.TAG_SUBSEC_TIME_DIGITIZED to null,
-        ExifInterface.TAG_IMAGE_DESCRIPTION to null,
-        ExifInterface.TAG_MAKE to null,
-        ExifInterface.TAG_MODEL to null,
-        ExifInterface.TAG_SOFTWARE to null,
-        ExifInterface.TAG_ARTIST to null,
-        ExifInterface.TAG_COPYRIGHT to null,
-        ExifInterface.TAG_MAKER_NOTE to null,
-        ExifInterface.TAG_USER_COMMENT to null,
-        ExifInterface.TAG_IMAGE_UNIQUE_ID to null,
-        ExifInterface.TAG_CAMERA_OWNER_NAME to null,
-        ExifInterface.TAG_BODY_SERIAL_NUMBER to null,
-        ExifInterface.TAG_GPS_ALTITUDE to null,
-        ExifInterface.TAG_GPS_ALTITUDE_REF to null,
-        ExifInterface.TAG_GPS_DATESTAMP to null,
-        ExifInterface.TAG_GPS_TIMESTAMP to null,
-        ExifInterface.TAG_GPS_LATITUDE to null,
-        ExifInterface.TAG_GPS_LATITUDE_REF to null,
-        ExifInterface.TAG_GPS_LONGITUDE to null,
-        ExifInterface.TAG_GPS_LONGITUDE_REF to null,
-        ExifInterface.TAG_GPS_SATELLITES to null,
-        ExifInterface.TAG_GPS_STATUS to null,
-        ExifInterface.TAG_ORIENTATION to null
+    private val EXIF_TAGS = listOf(
+        ExifInterface.TAG_DATETIME,
+        ExifInterface.TAG_DATETIME_ORIGINAL,
+        ExifInterface.TAG_DATETIME_DIGITIZED,
+        ExifInterface.TAG_OFFSET_TIME,
+        ExifInterface.TAG_OFFSET_TIME_ORIGINAL,
+        ExifInterface.TAG_OFFSET_TIME_DIGITIZED,
+        ExifInterface.TAG_SUBSEC_TIME,
+        ExifInterface.TAG_SUBSEC_TIME_ORIGINAL,
+        ExifInterface.TAG_SUBSEC_TIME_DIGITIZED,
+        ExifInterface.TAG_IMAGE_DESCRIPTION,
+        ExifInterface.TAG_MAKE,
+        ExifInterface.TAG_MODEL,
+        ExifInterface.TAG_SOFTWARE,
+        ExifInterface.TAG_ARTIST,
+        ExifInterface.TAG_COPYRIGHT,
+        ExifInterface.TAG_MAKER_NOTE,
+        ExifInterface.TAG_USER_COMMENT,
+        ExifInterface.TAG_IMAGE_UNIQUE_ID,
+        ExifInterface.TAG_CAMERA_OWNER_NAME,
+        ExifInterface.TAG_BODY_SERIAL_NUMBER,
+        ExifInterface.TAG_GPS_ALTITUDE,
+        ExifInterface.TAG_GPS_ALTITUDE_REF,
+        ExifInterface.TAG_GPS_DATESTAMP,
+        ExifInterface.TAG_GPS_TIMESTAMP,
+        ExifInterface.TAG_GPS_LATITUDE,
+        ExifInterface.TAG_GPS_LATITUDE_REF,
+        ExifInterface.TAG_GPS_LONGITUDE,
+        ExifInterface.TAG_GPS_LONGITUDE_REF,
+        ExifInterface.TAG_GPS_SATELLITES,
+        ExifInterface.TAG_GPS_STATUS,
+        ExifInterface.TAG_ORIENTATION
     )
 }
@@ -59,6 +59,26 @@ class CoroutineAndWorkManagerScheduler(
         workManager.beginUniqueWork(tag, ExistingWorkPolicy.REPLACE, workRequest).enqueue()
     }
 
+    override fun deferred(tag: String, spec: TaskSpec, inputData: Map<String, String>) {
+        val constraints = Constraints.Builder()
+            .setRequiresBatteryNotLow(true)
+            .setRequiresStorageNotLow(true)
+            .build()
+
+        val workManagerInputData = Data.Builder()
+            .putString(TaskSpecWorker.DATA_TASK_SPEC_CLASS, spec.javaClass.name)
+            .putAll(inputData)
+            .build()
+
+        val workRequest = OneTimeWorkRequest.Builder(TaskSpecWorker::class.java)
+            .addTag(tag)
+            .setConstraints(constraints)
+            .setInputData(workManagerInputData)
+            .build()
+
+        workManager.beginUniqueWork(tag, ExistingWorkPolicy.REPLACE, workRequest).enqueue()
+    }
+
     override fun networkDeferredRepeat(
         tag: String,
         spec: TaskSpec,
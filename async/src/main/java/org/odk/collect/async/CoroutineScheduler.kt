@@ -57,6 +57,10 @@ open class CoroutineScheduler(private val foregroundContext: CoroutineContext, p
         throw UnsupportedOperationException()
     }
 
+    override fun deferred(tag: String, spec: TaskSpec, inputData: Map<String, String>) {
+        throw UnsupportedOperationException()
+    }
+
     override fun networkDeferredRepeat(tag: String, spec: TaskSpec, repeatPeriod: Long, inputData: Map<String, String>) {
         throw UnsupportedOperationException()
     }
@@ -23,4 +23,10 @@ interface TaskSpec {
      * Called if an exception is thrown while executing the work.
      */
     fun onException(exception: Throwable)
+
+    /**
+     * Called if the work is stopped while it is running (because it has been cancelled or its
+     * constraints are no longer met). Long running work should use this to finish early.
+     */
+    fun onStopped() {}
 }
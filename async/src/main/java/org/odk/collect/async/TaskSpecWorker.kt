@@ -13,6 +13,9 @@ class TaskSpecWorker(
 
     private val connectivityProvider: ConnectivityProvider = ConnectivityProvider(context)
 
+    @Volatile
+    private var spec: TaskSpec? = null
+
     override fun doWork(): Result {
         val cellularOnly = inputData.getBoolean(DATA_CELLULAR_ONLY, false)
         if (cellularOnly && connectivityProvider.currentNetwork != Scheduler.NetworkType.CELLULAR) {
@@ -22,6 +25,7 @@ class TaskSpecWorker(
 
         val specClass = inputData.getString(DATA_TASK_SPEC_CLASS)!!
         val spec = Class.forName(specClass).getConstructor().newInstance() as TaskSpec
+        this.spec = spec
 
         val stringInputData = inputData.keyValueMap.mapValues { it.value.toString() }
 
@@ -43,6 +47,10 @@ class TaskSpecWorker(
         }
     }
 
+    override fun onStopped() {
+        spec?.onStopped()
+    }
+
     private fun isLastUniqueExecution(spec: TaskSpec) =
         spec.maxRetries?.let { runAttemptCount >= it } ?: true
 
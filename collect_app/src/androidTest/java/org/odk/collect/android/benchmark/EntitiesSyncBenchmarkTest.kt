@@ -0,0 +1,95 @@
+package org.odk.collect.android.benchmark
+
+import android.app.Application
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.android.benchmark.support.Benchmarker
+import org.odk.collect.android.database.entities.DatabaseEntitiesRepository
+import org.odk.collect.entities.LocalEntityUseCases
+import org.odk.collect.entities.server.EntitySource
+import org.odk.collect.shared.TempFiles
+import java.io.File
+
+/**
+ * Benchmarks updating a 100k entity list from a server list CSV (both the initial sync and an
+ * update where every entity has a new version) directly against [DatabaseEntitiesRepository].
+ *
+ * The targets have not been verified on a device yet so there are no devices that currently
+ * pass.
+ */
+
+@RunWith(AndroidJUnit4::class)
+class EntitiesSyncBenchmarkTest {
+
+    @Test
+    fun run() {
+        val application = ApplicationProvider.getApplicationContext<Application>()
+        val repository = DatabaseEntitiesRepository(application, TempFiles.createTempDir().absolutePath)
+        val entitySource = object : EntitySource {
+            override fun fetchDeletedStates(integrityUrl: String, ids: List<String>): List<Pair<String, Boolean>> {
+                return emptyList()
+            }
+        }
+
+        val benchmarker = Benchmarker()
+
+        val firstList = createServerList(1)
+        benchmarker.benchmarkRowsPerSecond("Syncing new list", 30) {
+            LocalEntityUseCases.updateLocalEntitiesFromServer(
+                LIST_NAME,
+                firstList,
+                repository,
+                entitySource,
+                "1",
+                null
+            )
+        }
+
+        val secondList = createServerList(2)
+        benchmarker.benchmarkRowsPerSecond("Syncing updated list", 40) {
+            LocalEntityUseCases.updateLocalEntitiesFromServer(
+                LIST_NAME,
+                secondList,
+                repository,
+                entitySource,
+                "2",
+                null
+            )
+        }
+
+        assertThat(repository.getCount(LIST_NAME), equalTo(ENTITY_COUNT))
+        benchmarker.assertResults()
+    }
+
+    private fun Benchmarker.benchmarkRowsPerSecond(name: String, target: Long, action: () -> Unit) {
+        val startTime = System.currentTimeMillis()
+        benchmark(name, target, action)
+        val duration = System.currentTimeMillis() - startTime
+
+        println("$name: ${ENTITY_COUNT * 1000L / duration.coerceAtLeast(1)} rows/s")
+    }
+
+    private fun createServerList(version: Int): File {
+        val csv = TempFiles.createTempFile(".csv")
+        csv.bufferedWriter().use { writer ->
+            writer.write("name,label,__version,value,group")
+            writer.newLine()
+
+            (0 until ENTITY_COUNT).forEach {
+                writer.write("entity-$it,Entity $it,$version,${it * version},${it % 100}")
+                writer.newLine()
+            }
+        }
+
+        return csv
+    }
+
+    companion object {
+        private const val LIST_NAME = "benchmark"
+        private const val ENTITY_COUNT = 100_000
+    }
+}
@@ -60,6 +60,11 @@ class TestScheduler(private val networkStateProvider: NetworkStateProvider) : Sc
         deferredTasks.add(DeferredTask(tag, spec, null, inputData, networkConstraint))
     }
 
+    override fun deferred(tag: String, spec: TaskSpec, inputData: Map<String, String>) {
+        cancelDeferred(tag)
+        deferredTasks.add(DeferredTask(tag, spec, null, inputData, null))
+    }
+
     override fun networkDeferredRepeat(
         tag: String,
         spec: TaskSpec,
@@ -151,6 +151,7 @@ import org.odk.collect.android.utilities.ChangeLockProvider;
 import org.odk.collect.android.utilities.ContentUriHelper;
 import org.odk.collect.android.utilities.ControllableLifecyleOwner;
 import org.odk.collect.android.utilities.ExternalAppIntentProvider;
+import org.odk.collect.android.utilities.ExternalizableFormDefCache;
 import org.odk.collect.android.utilities.FormsRepositoryProvider;
 import org.odk.collect.android.utilities.InstancesRepositoryProvider;
 import org.odk.collect.android.utilities.MediaUtils;
@@ -192,6 +193,7 @@ import org.odk.collect.printer.HtmlPrinter;
 import org.odk.collect.qrcode.QRCodeCreatorImpl;
 import org.odk.collect.settings.SettingsProvider;
 import org.odk.collect.settings.keys.ProjectKeys;
+import org.odk.collect.shared.files.FileHashCache;
 import org.odk.collect.strings.localization.LocalizedActivity;
 
 import java.io.File;
@@ -361,6 +363,9 @@ public class FormFillingActivity extends LocalizedActivity implements AnimationL
     @Inject
     public ChangeLockProvider changeLockProvider;
 
+    @Inject
+    public FileHashCache fileHashCache;
+
     private final LocationProvidersReceiver locationProvidersReceiver = new LocationProvidersReceiver();
 
     private SwipeHandler swipeHandler;
@@ -732,7 +737,7 @@ public class FormFillingActivity extends LocalizedActivity implements AnimationL
             uriMimeType = getContentResolver().getType(uri);
         }
 
-        formLoaderTask = new FormLoaderTask(uri, uriMimeType, startingXPath, waitingXPath, formEntryControllerFactory, scheduler, savepointsRepositoryProvider.create(), FormOpeningMode.EDIT_FINALIZED.equalsIgnoreCase(intent.getStringExtra(FormOpeningMode.FORM_MODE_KEY)));
+        formLoaderTask = new FormLoaderTask(uri, uriMimeType, startingXPath, waitingXPath, formEntryControllerFactory, scheduler, savepointsRepositoryProvider.create(), new ExternalizableFormDefCache(fileHashCache), FormOpeningMode.EDIT_FINALIZED.equalsIgnoreCase(intent.getStringExtra(FormOpeningMode.FORM_MODE_KEY)));
         formLoaderTask.setFormLoaderListener(this);
         showIfNotShowing(FormLoadingDialogFragment.class, getSupportFragmentManager());
         formLoaderTask.execute();
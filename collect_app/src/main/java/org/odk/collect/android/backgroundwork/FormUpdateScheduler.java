@@ -5,4 +5,10 @@ public interface FormUpdateScheduler {
     void scheduleUpdates(String projectId);
 
     void cancelUpdates(String projectId);
+
+    /**
+     * Schedules building the caches for the project's forms so that they don't need to be built
+     * when a form is first opened.
+     */
+    void scheduleWarmUp(String projectId);
 }
@@ -0,0 +1,43 @@
+package org.odk.collect.android.backgroundwork
+
+import android.content.Context
+import androidx.work.BackoffPolicy
+import org.odk.collect.analytics.Analytics
+import org.odk.collect.android.formmanagement.FormsDataService
+import org.odk.collect.android.injection.DaggerUtils
+import org.odk.collect.async.TaskSpec
+import java.util.function.Supplier
+import javax.inject.Inject
+
+class WarmUpFormsTaskSpec : TaskSpec {
+    @Inject
+    lateinit var formsDataService: FormsDataService
+
+    override val maxRetries: Int? = null
+    override val backoffPolicy: BackoffPolicy? = null
+    override val backoffDelay: Long? = null
+
+    @Volatile
+    private var stopped = false
+
+    override fun getTask(context: Context, inputData: Map<String, String>, isLastUniqueExecution: Boolean): Supplier<Boolean> {
+        DaggerUtils.getComponent(context).inject(this)
+        return Supplier {
+            val projectId = inputData[TaskData.DATA_PROJECT_ID]
+            if (projectId != null) {
+                formsDataService.warmUpForms(projectId) { stopped }
+                true
+            } else {
+                throw IllegalArgumentException("No project ID provided!")
+            }
+        }
+    }
+
+    override fun onException(exception: Throwable) {
+        Analytics.logNonFatal(exception)
+    }
+
+    override fun onStopped() {
+        stopped = true
+    }
+}
@@ -2,16 +2,13 @@ package org.odk.collect.android.database.entities
 
 import android.content.ContentValues
 import android.content.Context
-import android.database.Cursor
 import android.database.sqlite.SQLiteDatabase
 import android.database.sqlite.SQLiteException
 import android.provider.BaseColumns._ID
 import org.odk.collect.db.sqlite.CursorExt.first
 import org.odk.collect.db.sqlite.CursorExt.foldAndClose
-import org.odk.collect.db.sqlite.CursorExt.getInt
 import org.odk.collect.db.sqlite.CursorExt.getString
 import org.odk.collect.db.sqlite.CursorExt.getStringOrNull
-import org.odk.collect.db.sqlite.CursorExt.rowToMap
 import org.odk.collect.db.sqlite.DatabaseMigrator
 import org.odk.collect.db.sqlite.RowNumbers.invalidateRowNumbers
 import org.odk.collect.db.sqlite.RowNumbers.rawQueryWithRowNumber
@@ -27,6 +24,8 @@ import org.odk.collect.entities.storage.Entity
 import org.odk.collect.entities.storage.QueryException
 import org.odk.collect.shared.Query
 import org.odk.collect.shared.mapColumns
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
 
 private object ListsTable {
     const val TABLE_NAME = "lists"
@@ -34,7 +33,7 @@ private object ListsTable {
     const val COLUMN_HASH = "hash"
 }
 
-private object EntitiesTable {
+internal object EntitiesTable {
     const val COLUMN_ID = "id"
     const val COLUMN_LABEL = "label"
     const val COLUMN_VERSION = "version"
@@ -46,92 +45,68 @@ private object EntitiesTable {
     fun getPropertyColumn(property: String) = "$COLUMN_PROPERTY_PREFIX$property"
 }
 
-class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRepository {
+internal const val STATE_OFFLINE = 0
+internal const val STATE_ONLINE = 1
+
+/**
+ * Store state as an Int rather than a string to avoid increasing the storage needed for
+ * entities.
+ */
+internal fun convertStateToInt(state: Entity.State): Int {
+    return when (state) {
+        Entity.State.OFFLINE -> STATE_OFFLINE
+        Entity.State.ONLINE -> STATE_ONLINE
+    }
+}
+
+/**
+ * @param indexBuilder used to run the creation of indexes for queried properties (see
+ * [EntityListIndexes]). This should run work in the background outside of tests.
+ */
+class DatabaseEntitiesRepository @JvmOverloads constructor(
+    context: Context,
+    private val dbPath: String,
+    indexBuilder: (Runnable) -> Unit = { it.run() }
+) : EntitiesRepository {
 
     private val databaseConnection = SynchronizedDatabaseConnection(
         context,
         dbPath,
         "entities.db",
-        EntitiesDatabaseMigrator(),
+        EntitiesDatabaseMigrator(getCatalog(dbPath)),
         DATABASE_VERSION
     )
 
+    private val catalog = getCatalog(dbPath)
+
+    private val indexes = EntityListIndexes(databaseConnection, indexBuilder)
+
     override fun save(list: String, vararg entities: Entity) {
+        saveAll(list, entities.asList())
+    }
+
+    override fun saveAll(list: String, entities: List<Entity>) {
         if (entities.isEmpty()) {
             return
         }
 
-        val listExists = listExists(list)
-        if (!listExists) {
+        if (!listExists(list)) {
             createList(list)
         }
 
-        updatePropertyColumns(list, entities.first())
+        updatePropertyColumns(list, entities)
 
         databaseConnection.transaction {
-            entities.forEach { entity ->
-                val existing = if (listExists) {
-                    query(
-                        quote(list),
-                        "${EntitiesTable.COLUMN_ID} = ?",
-                        arrayOf(entity.id)
-                    ).first { mapCursorRowToEntity(it, 0) }
-                } else {
-                    null
-                }
-
-                if (existing != null) {
-                    val state = if (existing.state == Entity.State.OFFLINE) {
-                        entity.state
-                    } else {
-                        Entity.State.ONLINE
-                    }
-
-                    val contentValues = ContentValues().also {
-                        it.put(EntitiesTable.COLUMN_ID, entity.id)
-                        it.put(EntitiesTable.COLUMN_LABEL, entity.label ?: existing.label)
-                        it.put(EntitiesTable.COLUMN_VERSION, entity.version)
-                        it.put(EntitiesTable.COLUMN_TRUNK_VERSION, entity.trunkVersion)
-                        it.put(EntitiesTable.COLUMN_BRANCH_ID, entity.branchId)
-                        it.put(EntitiesTable.COLUMN_STATE, convertStateToInt(state))
-
-                        addPropertiesToContentValues(it, entity)
-                    }
-
-                    update(
-                        quote(list),
-                        contentValues,
-                        "${EntitiesTable.COLUMN_ID} = ?",
-                        arrayOf(entity.id)
-                    )
-                } else {
-                    val contentValues = ContentValues().also {
-                        it.put(EntitiesTable.COLUMN_ID, entity.id)
-                        it.put(EntitiesTable.COLUMN_LABEL, entity.label)
-                        it.put(EntitiesTable.COLUMN_VERSION, entity.version)
-                        it.put(EntitiesTable.COLUMN_TRUNK_VERSION, entity.trunkVersion)
-                        it.put(EntitiesTable.COLUMN_BRANCH_ID, entity.branchId)
-                        it.put(EntitiesTable.COLUMN_STATE, convertStateToInt(entity.state))
-
-                        addPropertiesToContentValues(it, entity)
-                    }
-
-                    insertOrThrow(
-                        quote(list),
-                        null,
-                        contentValues
-                    )
-                }
+            EntityUpsertStatements(this, list).use { statements ->
+                entities.forEach { statements.upsert(it) }
             }
         }
 
-        invalidateRowNumbers()
+        incrementRevision(list)
     }
 
     override fun getLists(): Set<String> {
-        return databaseConnection.withConnection {
-            getListsFromDB(readableDatabase)
-        }
+        return withCatalog { getLists(it) }
     }
 
     override fun updateListHash(list: String, hash: String) {
@@ -146,15 +121,17 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
                 "${ListsTable.COLUMN_NAME} = ?",
                 arrayOf(list)
             )
+
+            catalog.onHashUpdated(list, hash)
         }
     }
 
     override fun getListHash(list: String): String? {
-        return databaseConnection.withConnection {
-            readableDatabase
-                .query(ListsTable.TABLE_NAME, "${ListsTable.COLUMN_NAME} = ?", arrayOf(list))
-                .first { it.getStringOrNull(ListsTable.COLUMN_HASH) }
-        }
+        return withCatalog { getHash(it, list) }
+    }
+
+    override fun getListRevision(list: String): Long {
+        return revisions[getRevisionKey(list)]?.get() ?: 0
     }
 
     override fun getCount(list: String): Int {
@@ -178,7 +155,6 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
     override fun addList(list: String) {
         if (!listExists(list)) {
             createList(list)
-            invalidateRowNumbers()
         }
     }
 
@@ -187,7 +163,8 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
             writableDatabase.delete(quote(list), "${EntitiesTable.COLUMN_ID} = ?", arrayOf(id))
         }
 
-        invalidateRowNumbers()
+        databaseConnection.invalidateRowNumbers(list)
+        incrementRevision(list)
     }
 
     override fun query(list: String, query: Query?): List<Entity.Saved> {
@@ -195,14 +172,13 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
             return emptyList()
         }
 
-        return queryWithAttachedRowNumber(list, query?.mapColumns { columnName ->
-            when (columnName) {
-                EntitySchema.ID -> EntitiesTable.COLUMN_ID
-                EntitySchema.LABEL -> EntitiesTable.COLUMN_LABEL
-                EntitySchema.VERSION -> EntitiesTable.COLUMN_VERSION
-                else -> EntitiesTable.getPropertyColumn(columnName)
+        val mappedQuery = query?.mapColumns(::mapColumn)
+
+        return queryWithAttachedRowNumber(list, mappedQuery).also {
+            if (mappedQuery != null) {
+                indexes.onQuery(list, mappedQuery)
             }
-        })
+        }
     }
 
     override fun getByIndex(list: String, index: Int): Entity.Saved? {
@@ -214,6 +190,61 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
         return queryWithAttachedRowNumber(list, query).firstOrNull()
     }
 
+    override fun getByIndexes(list: String, indexes: List<Int>): List<Entity.Saved> {
+        if (!listExists(list) || indexes.isEmpty()) {
+            return emptyList()
+        }
+
+        val query = Query.StringIn(ROW_NUMBER, indexes.map { (it + 1).toString() })
+        return queryWithAttachedRowNumber(list, query)
+    }
+
+    override fun queryFirstValue(list: String, query: Query, column: String): String? {
+        if (!listExists(list)) {
+            return null
+        }
+
+        val valueColumn = mapColumn(column)
+        if (!withCatalog { getColumns(it, list) }.contains(valueColumn)) {
+            return null
+        }
+
+        val mappedQuery = query.mapColumns(::mapColumn)
+        val sqlQuery = mappedQuery.toSql()
+
+        return try {
+            databaseConnection.withConnection {
+                readableDatabase.rawQuery(
+                    """
+                    SELECT "$valueColumn"
+                    FROM "$list"
+                    WHERE ${sqlQuery.selection}
+                    ORDER BY $_ID
+                    LIMIT 1
+                    """.trimIndent(),
+                    sqlQuery.selectionArgs
+                ).first {
+                    if (it.isNull(0)) null else it.getString(0)
+                }
+            }.also {
+                indexes.onQuery(list, mappedQuery)
+            }
+        } catch (e: SQLiteException) {
+            throw QueryException(e.message)
+        }
+    }
+
+    private fun mapColumn(columnName: String): String {
+        return when (columnName) {
+            EntitySchema.ID -> EntitiesTable.COLUMN_ID
+            EntitySchema.LABEL -> EntitiesTable.COLUMN_LABEL
+            EntitySchema.VERSION -> EntitiesTable.COLUMN_VERSION
+            EntitySchema.TRUNK_VERSION -> EntitiesTable.COLUMN_TRUNK_VERSION
+            EntitySchema.BRANCH_ID -> EntitiesTable.COLUMN_BRANCH_ID
+            else -> EntitiesTable.getPropertyColumn(columnName)
+        }
+    }
+
     private fun queryWithAttachedRowNumber(list: String, query: Query?): List<Entity.Saved> {
         try {
             return if (query == null) {
@@ -221,28 +252,26 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
             } else {
                 val sqlQuery = query.toSql()
                 databaseConnection.rawQueryWithRowNumber(list, sqlQuery.selection, sqlQuery.selectionArgs)
-            }.foldAndClose {
-                mapCursorRowToEntity(it, it.getInt(ROW_NUMBER))
+            }.let { cursor ->
+                val mapper = EntityCursorMapper(cursor)
+                cursor.foldAndClose { mapper.map(it) }
             }
         } catch (e: SQLiteException) {
             throw QueryException(e.message)
         }
     }
 
-    private fun invalidateRowNumbers() {
-        getLists().forEach {
-            databaseConnection.invalidateRowNumbers(it)
-        }
+    private fun listExists(list: String): Boolean {
+        return withCatalog { listExists(it, list) }
     }
 
-    private fun listExists(list: String): Boolean {
+    /**
+     * Runs [block] against the shared [EntityListCatalog] for this DB. The catalog is passed the
+     * DB so it can load itself if needed.
+     */
+    private fun <T> withCatalog(block: EntityListCatalog.(SQLiteDatabase) -> T): T {
         return databaseConnection.withConnection {
-            readableDatabase
-                .query(
-                    ListsTable.TABLE_NAME,
-                    selection = "${ListsTable.COLUMN_NAME} = ?",
-                    selectionArgs = arrayOf(list)
-                ).use { it.count } > 0
+            catalog.block(readableDatabase)
         }
     }
 
@@ -276,17 +305,37 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
                 """.trimIndent()
             )
         }
+
+        catalog.onListCreated(
+            list,
+            listOf(
+                _ID,
+                EntitiesTable.COLUMN_ID,
+                EntitiesTable.COLUMN_LABEL,
+                EntitiesTable.COLUMN_VERSION,
+                EntitiesTable.COLUMN_TRUNK_VERSION,
+                EntitiesTable.COLUMN_BRANCH_ID,
+                EntitiesTable.COLUMN_STATE
+            )
+        )
+
+        /**
+         * Row numbers are only maintained incrementally so make sure any left over from a
+         * previous version of this list (from before a DB upgrade for example) aren't reused.
+         */
+        databaseConnection.invalidateRowNumbers(list)
+        indexes.onListCreated(list)
     }
 
-    private fun updatePropertyColumns(list: String, entity: Entity) {
-        val columnNames = databaseConnection.withConnection {
-            readableDatabase.getColumnNames(quote(list))
+    private fun updatePropertyColumns(list: String, entities: List<Entity>) {
+        val propertyNames = LinkedHashSet<String>()
+        entities.forEach { entity ->
+            entity.properties.forEach { propertyNames.add(it.first) }
         }
 
-        val missingColumns = entity.properties
-            .map { EntitiesTable.getPropertyColumn(it.first) }
-            .distinctBy { it.lowercase() }
-            .filterNot { columnName -> columnNames.any { it.equals(columnName, ignoreCase = true) } }
+        val missingColumns = withCatalog { db ->
+            getMissingColumns(db, list, propertyNames.map { EntitiesTable.getPropertyColumn(it) })
+        }
 
         if (missingColumns.isNotEmpty()) {
             databaseConnection.resetTransaction {
@@ -298,73 +347,51 @@ class DatabaseEntitiesRepository(context: Context, dbPath: String) : EntitiesRep
                     )
                 }
             }
-        }
-    }
 
-    private fun addPropertiesToContentValues(contentValues: ContentValues, entity: Entity) {
-        entity.properties.forEach { (name, value) ->
-            contentValues.put(quote(EntitiesTable.getPropertyColumn(name)), value)
+            catalog.onColumnsAdded(list, missingColumns)
         }
     }
 
-    private fun mapCursorRowToEntity(
-        cursor: Cursor,
-        rowId: Int
-    ): Entity.Saved {
-        val map = cursor.rowToMap()
-
-        val propertyColumns = map.keys.filter {
-            it.startsWith(EntitiesTable.COLUMN_PROPERTY_PREFIX)
-        }
-
-        val properties =
-            propertyColumns.fold(emptyList<Pair<String, String>>()) { accum, property ->
-                accum + Pair(
-                    property.removePrefix(EntitiesTable.COLUMN_PROPERTY_PREFIX),
-                    map[property] ?: ""
-                )
-            }
-
-        val state = if (map[EntitiesTable.COLUMN_STATE]!!.toInt() == 0) {
-            Entity.State.OFFLINE
-        } else {
-            Entity.State.ONLINE
-        }
-
-        return Entity.Saved(
-            map[EntitiesTable.COLUMN_ID]!!,
-            map[EntitiesTable.COLUMN_LABEL],
-            map[EntitiesTable.COLUMN_VERSION]!!.toInt(),
-            properties,
-            state,
-            rowId - 1,
-            map[EntitiesTable.COLUMN_TRUNK_VERSION]?.toInt(),
-            map[EntitiesTable.COLUMN_BRANCH_ID]!!
-        )
+    private fun incrementRevision(list: String) {
+        revisions.getOrPut(getRevisionKey(list)) { AtomicLong() }.incrementAndGet()
     }
 
-    /**
-     * Store state as an Int rather than a string to avoid increasing the storage needed for
-     * entities.
-     */
-    private fun convertStateToInt(state: Entity.State): Int {
-        return when (state) {
-            Entity.State.OFFLINE -> 0
-            Entity.State.ONLINE -> 1
-        }
-    }
+    private fun getRevisionKey(list: String) = "$dbPath/$list"
 
     private fun quote(text: String) = "\"$text\""
 
     companion object {
         private const val DATABASE_VERSION = 2
+
+        /**
+         * Revisions are tracked for the whole process (rather than per instance) as multiple
+         * repository instances can be created for the same DB. They don't need to be persisted
+         * as anything using them to cache query results won't outlive the process.
+         */
+        private val revisions = ConcurrentHashMap<String, AtomicLong>()
+
+        /**
+         * Catalogs are shared for the same reason as [revisions].
+         */
+        private val catalogs = ConcurrentHashMap<String, EntityListCatalog>()
+
+        private fun getCatalog(dbPath: String): EntityListCatalog {
+            return catalogs.getOrPut(dbPath) {
+                EntityListCatalog(
+                    ::getListsFromDB,
+                    { db, list -> db.getColumnNames("\"$list\"") }
+                )
+            }
+        }
     }
 }
 
-private class EntitiesDatabaseMigrator :
+private class EntitiesDatabaseMigrator(private val catalog: EntityListCatalog) :
     DatabaseMigrator {
 
     override fun onCreate(db: SQLiteDatabase) {
+        catalog.invalidate()
+
         db.execSQL(
             """
             CREATE TABLE IF NOT EXISTS ${ListsTable.TABLE_NAME} (
@@ -377,20 +404,27 @@ private class EntitiesDatabaseMigrator :
     }
 
     override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int) {
+        catalog.invalidate()
         dropAllTablesFromDB(db)
     }
 }
 
 private fun dropAllTablesFromDB(db: SQLiteDatabase) {
-    getListsFromDB(db).forEach {
+    getListsFromDB(db).keys.forEach {
         db.delete(it)
     }
 
     db.delete(ListsTable.TABLE_NAME)
 }
 
-private fun getListsFromDB(db: SQLiteDatabase): Set<String> {
+/**
+ * Returns each list in the DB along with its hash.
+ */
+private fun getListsFromDB(db: SQLiteDatabase): Map<String, String?> {
     return db
         .query(ListsTable.TABLE_NAME)
-        .foldAndClose(emptySet()) { set, cursor -> set + cursor.getString(ListsTable.COLUMN_NAME) }
+        .foldAndClose(HashMap<String, String?>()) { map, cursor ->
+            map[cursor.getString(ListsTable.COLUMN_NAME)] = cursor.getStringOrNull(ListsTable.COLUMN_HASH)
+            map
+        }
 }
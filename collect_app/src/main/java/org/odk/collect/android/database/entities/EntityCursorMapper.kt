@@ -0,0 +1,79 @@
+package org.odk.collect.android.database.entities
+
+import android.database.Cursor
+import org.odk.collect.db.sqlite.SQLiteColumns.ROW_NUMBER
+import org.odk.collect.entities.storage.Entity
+
+/**
+ * Maps rows of a cursor over a list's table (with an attached [ROW_NUMBER]) to [Entity.Saved].
+ * Column indexes are resolved once for the cursor rather than for every row, and each entity's
+ * properties are backed by an array of values that shares the property names with every other
+ * row (so pairs are only created when properties are actually accessed).
+ *
+ * Property columns are found by iterating [Cursor.getColumnNames] rather than using
+ * [Cursor.getColumnIndex] as the latter doesn't support column names including a ".".
+ */
+internal class EntityCursorMapper(cursor: Cursor) {
+
+    private val idIndex = cursor.getColumnIndex(EntitiesTable.COLUMN_ID)
+    private val labelIndex = cursor.getColumnIndex(EntitiesTable.COLUMN_LABEL)
+    private val versionIndex = cursor.getColumnIndex(EntitiesTable.COLUMN_VERSION)
+    private val trunkVersionIndex = cursor.getColumnIndex(EntitiesTable.COLUMN_TRUNK_VERSION)
+    private val branchIdIndex = cursor.getColumnIndex(EntitiesTable.COLUMN_BRANCH_ID)
+    private val stateIndex = cursor.getColumnIndex(EntitiesTable.COLUMN_STATE)
+    private val rowNumberIndex = cursor.getColumnIndex(ROW_NUMBER)
+
+    private val propertyIndexes: IntArray
+    private val propertyNames: Array<String>
+
+    init {
+        val indexes = ArrayList<Int>()
+        val names = ArrayList<String>()
+
+        cursor.columnNames.forEachIndexed { index, column ->
+            if (column.startsWith(EntitiesTable.COLUMN_PROPERTY_PREFIX)) {
+                indexes.add(index)
+                names.add(column.removePrefix(EntitiesTable.COLUMN_PROPERTY_PREFIX))
+            }
+        }
+
+        propertyIndexes = indexes.toIntArray()
+        propertyNames = names.toTypedArray()
+    }
+
+    fun map(cursor: Cursor): Entity.Saved {
+        val propertyValues = Array(propertyIndexes.size) {
+            cursor.getString(propertyIndexes[it]) ?: ""
+        }
+
+        val state = if (cursor.getInt(stateIndex) == STATE_OFFLINE) {
+            Entity.State.OFFLINE
+        } else {
+            Entity.State.ONLINE
+        }
+
+        return Entity.Saved(
+            cursor.getString(idIndex),
+            cursor.getString(labelIndex),
+            cursor.getInt(versionIndex),
+            PropertyList(propertyNames, propertyValues),
+            state,
+            cursor.getInt(rowNumberIndex) - 1,
+            if (cursor.isNull(trunkVersionIndex)) null else cursor.getInt(trunkVersionIndex),
+            cursor.getString(branchIdIndex)
+        )
+    }
+}
+
+private class PropertyList(
+    private val names: Array<String>,
+    private val values: Array<String>
+) : AbstractList<Pair<String, String>>() {
+
+    override val size: Int
+        get() = names.size
+
+    override fun get(index: Int): Pair<String, String> {
+        return Pair(names[index], values[index])
+    }
+}
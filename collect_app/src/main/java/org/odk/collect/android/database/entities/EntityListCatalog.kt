@@ -0,0 +1,100 @@
+package org.odk.collect.android.database.entities
+
+import android.database.sqlite.SQLiteDatabase
+
+/**
+ * An in-memory, write-through copy of the lists in an entities DB along with their hashes and
+ * columns. This is loaded from the DB on first use (and again whenever the DB is
+ * recreated or upgraded - see [invalidate]) and should then be kept up to date by whatever
+ * changes the lists table or a list's schema so that lookups don't have to hit `lists` or
+ * `sqlite_master`.
+ *
+ * Multiple repository instances can be created for the same DB so catalogs should be shared
+ * between them (see [DatabaseEntitiesRepository]).
+ */
+internal class EntityListCatalog(
+    private val listsLoader: (SQLiteDatabase) -> Map<String, String?>,
+    private val columnsLoader: (SQLiteDatabase, String) -> Collection<String>
+) {
+
+    private var lists: MutableMap<String, ListMetadata>? = null
+
+    @Synchronized
+    fun listExists(database: SQLiteDatabase, list: String): Boolean {
+        return load(database).containsKey(list)
+    }
+
+    @Synchronized
+    fun getLists(database: SQLiteDatabase): Set<String> {
+        return load(database).keys.toSet()
+    }
+
+    @Synchronized
+    fun getHash(database: SQLiteDatabase, list: String): String? {
+        return load(database)[list]?.hash
+    }
+
+    @Synchronized
+    fun getColumns(database: SQLiteDatabase, list: String): Set<String> {
+        return load(database)[list]?.columns?.toSet() ?: emptySet()
+    }
+
+    /**
+     * Returns the columns in [columns] that are not in [list] ignoring case (as SQLite does).
+     * Only the first of any columns that differ just by case is returned.
+     */
+    @Synchronized
+    fun getMissingColumns(database: SQLiteDatabase, list: String, columns: Collection<String>): List<String> {
+        val existing = load(database)[list]?.lowercaseColumns ?: emptySet()
+        return columns
+            .distinctBy { it.lowercase() }
+            .filterNot { existing.contains(it.lowercase()) }
+    }
+
+    @Synchronized
+    fun onListCreated(list: String, columns: Collection<String>) {
+        lists?.put(list, ListMetadata(null).also { it.addColumns(columns) })
+    }
+
+    @Synchronized
+    fun onColumnsAdded(list: String, columns: Collection<String>) {
+        lists?.get(list)?.addColumns(columns)
+    }
+
+    @Synchronized
+    fun onHashUpdated(list: String, hash: String) {
+        lists?.get(list)?.hash = hash
+    }
+
+    /**
+     * Forces the catalog to be reloaded from the DB the next time it's used.
+     */
+    @Synchronized
+    fun invalidate() {
+        lists = null
+    }
+
+    private fun load(database: SQLiteDatabase): Map<String, ListMetadata> {
+        return lists ?: HashMap<String, ListMetadata>().also { loaded ->
+            listsLoader(database).forEach { (list, hash) ->
+                loaded[list] = ListMetadata(hash).also {
+                    it.addColumns(columnsLoader(database, list))
+                }
+            }
+
+            lists = loaded
+        }
+    }
+
+    private class ListMetadata(var hash: String?) {
+        val columns = LinkedHashSet<String>()
+        val lowercaseColumns = HashSet<String>()
+
+        fun addColumns(columns: Collection<String>) {
+            columns.forEach {
+                this.columns.add(it)
+                lowercaseColumns.add(it.lowercase())
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.odk.collect.android.database.entities
+
+import android.database.sqlite.SQLiteException
+import org.odk.collect.db.sqlite.CursorExt.foldAndClose
+import org.odk.collect.db.sqlite.SynchronizedDatabaseConnection
+import org.odk.collect.shared.Query
+import timber.log.Timber
+
+/**
+ * Creates indexes for the property columns that queries (the filters used in forms for example)
+ * compare against, so that later queries can use an index lookup rather than scanning the whole
+ * list. Indexes are created in the background the first time a property is queried and persist
+ * in the DB - their existence is our record of which properties are used for filtering.
+ *
+ * Numeric comparisons get an expression index on the same `CAST` used in the generated SQL.
+ * Expression indexes aren't supported on older versions of SQLite (pre Android 7) so those
+ * comparisons will just continue to scan there.
+ */
+internal class EntityListIndexes(
+    private val databaseConnection: SynchronizedDatabaseConnection,
+    private val indexBuilder: (Runnable) -> Unit
+) {
+
+    /**
+     * Indexes that exist in the DB. Guarded by [lock] along with [pending] (indexes that are
+     * waiting to be created) and [failed] (indexes that couldn't be created, which aren't
+     * retried until their list is recreated).
+     */
+    private val indexes: MutableSet<String> by lazy {
+        databaseConnection.withConnection {
+            readableDatabase
+                .rawQuery("SELECT name FROM sqlite_master WHERE type = 'index'", null)
+                .foldAndClose(HashSet<String>()) { set, cursor ->
+                    set.add(cursor.getString(0).lowercase())
+                    set
+                }
+        }
+    }
+
+    private val pending = HashSet<String>()
+    private val failed = HashSet<String>()
+    private val lock = Any()
+
+    /**
+     * Should be called with a (column mapped) [Query] once it has been successfully run
+     * against [list].
+     */
+    fun onQuery(list: String, query: Query) {
+        val missing = getIndexedColumns(query).distinct().filter { (column, numeric) ->
+            val name = getIndexName(list, column, numeric)
+            synchronized(lock) {
+                !indexes.contains(name) && !failed.contains(name) && pending.add(name)
+            }
+        }
+
+        if (missing.isNotEmpty()) {
+            indexBuilder(Runnable { createIndexes(list, missing) })
+        }
+    }
+
+    /**
+     * Should be called whenever the table for [list] is (re)created as any indexes it had will
+     * have been dropped along with the old table.
+     */
+    fun onListCreated(list: String) {
+        val prefix = "${list}_".lowercase()
+        synchronized(lock) {
+            indexes.removeAll { it.startsWith(prefix) }
+            failed.removeAll { it.startsWith(prefix) }
+        }
+    }
+
+    private fun createIndexes(list: String, columns: List<Pair<String, Boolean>>) {
+        columns.forEach { (column, numeric) ->
+            val indexed = if (numeric) {
+                "CAST(\"$column\" AS REAL)"
+            } else {
+                "\"$column\""
+            }
+
+            val name = getIndexName(list, column, numeric)
+            val created = try {
+                databaseConnection.transaction {
+                    execSQL(
+                        """
+                        CREATE INDEX IF NOT EXISTS "$name" ON "$list" ($indexed);
+                        """.trimIndent()
+                    )
+                }
+
+                true
+            } catch (e: SQLiteException) {
+                Timber.w(e)
+                false
+            }
+
+            synchronized(lock) {
+                pending.remove(name)
+                if (created) {
+                    indexes.add(name)
+                } else {
+                    failed.add(name)
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns property columns that could benefit from an index paired with whether they are
+     * being compared numerically.
+     */
+    private fun getIndexedColumns(query: Query): List<Pair<String, Boolean>> {
+        return when (query) {
+            is Query.StringEq -> listOf(Pair(query.column, false))
+            is Query.StringIn -> listOf(Pair(query.column, false))
+            is Query.StringStartsWith -> listOf(Pair(query.column, false))
+            is Query.NumericEq -> listOf(Pair(query.column, true))
+            is Query.NumericLessThan -> listOf(Pair(query.column, true))
+            is Query.NumericLessThanOrEq -> listOf(Pair(query.column, true))
+            is Query.NumericGreaterThan -> listOf(Pair(query.column, true))
+            is Query.NumericGreaterThanOrEq -> listOf(Pair(query.column, true))
+            is Query.StringNotEq, is Query.NumericNotEq, is Query.StringContains -> emptyList()
+            is Query.And -> getIndexedColumns(query.queryA) + getIndexedColumns(query.queryB)
+            is Query.Or -> getIndexedColumns(query.queryA) + getIndexedColumns(query.queryB)
+        }.filter { (column, _) -> column.startsWith(EntitiesTable.COLUMN_PROPERTY_PREFIX) }
+    }
+
+    /**
+     * Property columns are case-insensitive so index names are as well.
+     */
+    private fun getIndexName(list: String, column: String, numeric: Boolean): String {
+        return if (numeric) {
+            "${list}_${column}_numeric_index".lowercase()
+        } else {
+            "${list}_${column}_index".lowercase()
+        }
+    }
+}
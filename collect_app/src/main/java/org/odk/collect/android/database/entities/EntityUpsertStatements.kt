@@ -0,0 +1,148 @@
+package org.odk.collect.android.database.entities
+
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteStatement
+import org.odk.collect.entities.storage.Entity
+import java.io.Closeable
+
+/**
+ * Upserts entities into a list's table using compiled statements that are reused for every entity
+ * with the same set of properties. An `UPDATE` is attempted first and the entity is only inserted
+ * if that doesn't match an existing row, so no lookup query is needed per entity. Merging with an
+ * existing entity's label and state happens in SQL.
+ *
+ * `INSERT ... ON CONFLICT DO UPDATE` would let us do this with one statement, but it isn't
+ * supported by the SQLite versions that ship with older Android versions we still support.
+ */
+internal class EntityUpsertStatements(
+    private val database: SQLiteDatabase,
+    private val list: String
+) : Closeable {
+
+    private val updates = mutableMapOf<List<String>, SQLiteStatement>()
+    private val inserts = mutableMapOf<List<String>, SQLiteStatement>()
+
+    fun upsert(entity: Entity) {
+        val properties = dedupeProperties(entity.properties)
+        val propertyNames = properties.map { it.first }
+
+        val update = updates.getOrPut(propertyNames) { compileUpdate(propertyNames) }
+        bindUpdate(update, entity, properties)
+
+        if (update.executeUpdateDelete() == 0) {
+            val insert = inserts.getOrPut(propertyNames) { compileInsert(propertyNames) }
+            bindInsert(insert, entity, properties)
+            insert.executeInsert()
+        }
+    }
+
+    override fun close() {
+        updates.values.forEach { it.close() }
+        inserts.values.forEach { it.close() }
+    }
+
+    private fun compileUpdate(propertyNames: List<String>): SQLiteStatement {
+        val propertyAssignments = propertyNames.joinToString("") {
+            ", \"${EntitiesTable.getPropertyColumn(it)}\" = ?"
+        }
+
+        return database.compileStatement(
+            """
+            UPDATE "$list" SET
+                ${EntitiesTable.COLUMN_LABEL} = IFNULL(?, ${EntitiesTable.COLUMN_LABEL}),
+                ${EntitiesTable.COLUMN_VERSION} = ?,
+                ${EntitiesTable.COLUMN_TRUNK_VERSION} = ?,
+                ${EntitiesTable.COLUMN_BRANCH_ID} = ?,
+                ${EntitiesTable.COLUMN_STATE} = CASE WHEN ${EntitiesTable.COLUMN_STATE} = $STATE_OFFLINE THEN ? ELSE $STATE_ONLINE END
+                $propertyAssignments
+            WHERE ${EntitiesTable.COLUMN_ID} = ?
+            """.trimIndent()
+        )
+    }
+
+    private fun compileInsert(propertyNames: List<String>): SQLiteStatement {
+        val propertyColumns = propertyNames.joinToString("") {
+            ", \"${EntitiesTable.getPropertyColumn(it)}\""
+        }
+
+        val propertyPlaceholders = propertyNames.joinToString("") { ", ?" }
+
+        return database.compileStatement(
+            """
+            INSERT INTO "$list" (
+                ${EntitiesTable.COLUMN_ID},
+                ${EntitiesTable.COLUMN_LABEL},
+                ${EntitiesTable.COLUMN_VERSION},
+                ${EntitiesTable.COLUMN_TRUNK_VERSION},
+                ${EntitiesTable.COLUMN_BRANCH_ID},
+                ${EntitiesTable.COLUMN_STATE}
+                $propertyColumns
+            ) VALUES (?, ?, ?, ?, ?, ?$propertyPlaceholders)
+            """.trimIndent()
+        )
+    }
+
+    private fun bindUpdate(
+        statement: SQLiteStatement,
+        entity: Entity,
+        properties: List<Pair<String, String>>
+    ) {
+        statement.bindStringOrNull(1, entity.label)
+        statement.bindLong(2, entity.version.toLong())
+        statement.bindLongOrNull(3, entity.trunkVersion)
+        statement.bindString(4, entity.branchId)
+        statement.bindLong(5, convertStateToInt(entity.state).toLong())
+
+        properties.forEachIndexed { index, property ->
+            statement.bindString(6 + index, property.second)
+        }
+
+        statement.bindString(6 + properties.size, entity.id)
+    }
+
+    private fun bindInsert(
+        statement: SQLiteStatement,
+        entity: Entity,
+        properties: List<Pair<String, String>>
+    ) {
+        statement.bindString(1, entity.id)
+        statement.bindStringOrNull(2, entity.label)
+        statement.bindLong(3, entity.version.toLong())
+        statement.bindLongOrNull(4, entity.trunkVersion)
+        statement.bindString(5, entity.branchId)
+        statement.bindLong(6, convertStateToInt(entity.state).toLong())
+
+        properties.forEachIndexed { index, property ->
+            statement.bindString(7 + index, property.second)
+        }
+    }
+
+    /**
+     * Property columns are case-insensitive so only the last of any properties that only differ
+     * by case can be written.
+     */
+    private fun dedupeProperties(properties: List<Pair<String, String>>): List<Pair<String, String>> {
+        val distinctNames = properties.mapTo(HashSet()) { it.first.lowercase() }
+        return if (distinctNames.size == properties.size) {
+            properties
+        } else {
+            properties.asReversed().distinctBy { it.first.lowercase() }.asReversed()
+        }
+    }
+
+    private fun SQLiteStatement.bindStringOrNull(index: Int, value: String?) {
+        if (value != null) {
+            bindString(index, value)
+        } else {
+            bindNull(index)
+        }
+    }
+
+    private fun SQLiteStatement.bindLongOrNull(index: Int, value: Int?) {
+        if (value != null) {
+            bindLong(index, value.toLong())
+        } else {
+            bindNull(index)
+        }
+    }
+}
@@ -41,7 +41,7 @@ import org.odk.collect.forms.Form;
 import org.odk.collect.forms.FormsRepository;
 import org.odk.collect.forms.savepoints.SavepointsRepository;
 import org.odk.collect.shared.files.FileExt;
-import org.odk.collect.shared.strings.Md5;
+import org.odk.collect.shared.files.FileHashCache;
 
 import java.io.File;
 import java.lang.reflect.Field;
@@ -63,8 +63,9 @@ public class DatabaseFormsRepository implements FormsRepository {
     private final String cachePath;
     private final Supplier<Long> clock;
     private final SavepointsRepository savepointsRepository;
+    private final FileHashCache fileHashCache;
 
-    public DatabaseFormsRepository(Context context, String dbPath, String formsPath, String cachePath, Supplier<Long> clock, SavepointsRepository savepointsRepository) {
+    public DatabaseFormsRepository(Context context, String dbPath, String formsPath, String cachePath, Supplier<Long> clock, SavepointsRepository savepointsRepository, FileHashCache fileHashCache) {
         this.formsPath = formsPath;
         this.cachePath = cachePath;
         this.clock = clock;
@@ -76,6 +77,7 @@ public class DatabaseFormsRepository implements FormsRepository {
                 DatabaseConstants.FORMS_DATABASE_VERSION
         );
         this.savepointsRepository = savepointsRepository;
+        this.fileHashCache = fileHashCache;
     }
 
     @Nullable
@@ -158,7 +160,7 @@ public class DatabaseFormsRepository implements FormsRepository {
     public Form save(@NotNull Form form) {
         final ContentValues values = getValuesFromForm(form, formsPath);
 
-        String md5Hash = Md5.getMd5Hash(new File(form.getFormFilePath()));
+        String md5Hash = fileHashCache.getMd5Hash(new File(form.getFormFilePath()));
         values.put(MD5_HASH, md5Hash);
         values.put(FORM_MEDIA_PATH, getRelativeFilePath(formsPath, FileUtils.constructMediaPath(form.getFormFilePath())));
         values.put(JRCACHE_FILE_PATH, md5Hash + ".formdef");
@@ -189,6 +191,23 @@ public class DatabaseFormsRepository implements FormsRepository {
         }
     }
 
+    @Override
+    public List<Form> saveAll(@NotNull List<Form> forms) {
+        SQLiteDatabase writableDatabase = databaseConnection.getWritableDatabase();
+        writableDatabase.beginTransaction();
+        try {
+            List<Form> saved = new ArrayList<>();
+            for (Form form : forms) {
+                saved.add(save(form));
+            }
+
+            writableDatabase.setTransactionSuccessful();
+            return saved;
+        } finally {
+            writableDatabase.endTransaction();
+        }
+    }
+
     @Override
     public void delete(Long id) {
         String selection = _ID + "=?";
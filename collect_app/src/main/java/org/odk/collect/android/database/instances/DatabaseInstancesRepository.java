@@ -3,6 +3,7 @@ package org.odk.collect.android.database.instances;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.os.StrictMode;
@@ -15,7 +16,12 @@ import org.odk.collect.shared.files.FileExt;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 import static android.provider.BaseColumns._ID;
@@ -41,9 +47,16 @@ import static org.odk.collect.shared.PathUtils.getRelativeFilePath;
  */
 public final class DatabaseInstancesRepository implements InstancesRepository {
 
+    /**
+     * Change versions keyed by database path so that they're shared between all repositories
+     * for the same database (in the same way the underlying connection is).
+     */
+    private static final Map<String, AtomicLong> CHANGE_VERSIONS = new ConcurrentHashMap<>();
+
     private final DatabaseConnection databaseConnection;
     private final Supplier<Long> clock;
     private final String instancesPath;
+    private final AtomicLong changeVersion;
 
     public DatabaseInstancesRepository(Context context, String dbPath, String instancesPath, Supplier<Long> clock) {
         this.databaseConnection = new DatabaseConnection(
@@ -56,6 +69,10 @@ public final class DatabaseInstancesRepository implements InstancesRepository {
 
         this.clock = clock;
         this.instancesPath = instancesPath;
+        this.changeVersion = CHANGE_VERSIONS.computeIfAbsent(
+                dbPath + File.separator + DatabaseConstants.INSTANCES_DATABASE_NAME,
+                path -> new AtomicLong()
+        );
     }
 
     @Override
@@ -110,9 +127,31 @@ public final class DatabaseInstancesRepository implements InstancesRepository {
 
     @Override
     public int getCountByStatus(String... status) {
-        try (Cursor cursorForAllByStatus = getCursorForAllByStatus(status)) {
-            return cursorForAllByStatus.getCount();
+        return (int) DatabaseUtils.queryNumEntries(
+                databaseConnection.getReadableDatabase(),
+                INSTANCES_TABLE_NAME,
+                getSelectionForAllByStatus(status),
+                status
+        );
+    }
+
+    @Override
+    public Map<String, Integer> getCountsByStatus() {
+        String sql = "SELECT " + STATUS + ", COUNT(*) FROM " + INSTANCES_TABLE_NAME + " GROUP BY " + STATUS;
+
+        Map<String, Integer> counts = new HashMap<>();
+        try (Cursor cursor = databaseConnection.getReadableDatabase().rawQuery(sql, null)) {
+            while (cursor.moveToNext()) {
+                counts.put(cursor.getString(0), cursor.getInt(1));
+            }
         }
+
+        return Collections.unmodifiableMap(counts);
+    }
+
+    @Override
+    public long getChangeVersion() {
+        return changeVersion.get();
     }
 
 
@@ -149,6 +188,7 @@ public final class DatabaseInstancesRepository implements InstancesRepository {
                 _ID + "=?",
                 new String[]{String.valueOf(id)}
         );
+        changeVersion.incrementAndGet();
 
         deleteInstanceFiles(instance);
     }
@@ -162,6 +202,7 @@ public final class DatabaseInstancesRepository implements InstancesRepository {
                 null,
                 null
         );
+        changeVersion.incrementAndGet();
 
         for (Instance instance : instances) {
             deleteInstanceFiles(instance);
@@ -214,12 +255,16 @@ public final class DatabaseInstancesRepository implements InstancesRepository {
     }
 
     private Cursor getCursorForAllByStatus(String[] status) {
+        return query(null, getSelectionForAllByStatus(status), status, null);
+    }
+
+    private static String getSelectionForAllByStatus(String[] status) {
         StringBuilder selection = new StringBuilder(STATUS + "=?");
         for (int i = 1; i < status.length; i++) {
             selection.append(" or ").append(STATUS).append("=?");
         }
 
-        return query(null, selection.toString(), status, null);
+        return selection.toString();
     }
 
     private Cursor query(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
@@ -256,11 +301,14 @@ public final class DatabaseInstancesRepository implements InstancesRepository {
     }
 
     private long insert(ContentValues values) {
-        return databaseConnection.getWritableDatabase().insertOrThrow(
+        long id = databaseConnection.getWritableDatabase().insertOrThrow(
                 INSTANCES_TABLE_NAME,
                 null,
                 values
         );
+
+        changeVersion.incrementAndGet();
+        return id;
     }
 
     private void update(Long instanceId, ContentValues values) {
@@ -270,6 +318,8 @@ public final class DatabaseInstancesRepository implements InstancesRepository {
                 _ID + "=?",
                 new String[]{instanceId.toString()}
         );
+
+        changeVersion.incrementAndGet();
     }
 
     private void deleteInstanceFiles(Instance instance) {
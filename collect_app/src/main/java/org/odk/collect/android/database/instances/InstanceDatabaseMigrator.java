@@ -38,6 +38,7 @@ public class InstanceDatabaseMigrator implements DatabaseMigrator {
 
     public void onCreate(SQLiteDatabase db) {
         createInstancesTableV8(db);
+        createStatusIndex(db);
     }
 
     @SuppressWarnings({"checkstyle:FallThrough"})
@@ -59,8 +60,10 @@ public class InstanceDatabaseMigrator implements DatabaseMigrator {
             case 7:
                 upgradeToVersion8(db);
             case 8:
+                upgradeToVersion9(db);
+            case 9:
                 // Remember to bump the database version number in {@link org.odk.collect.android.database.DatabaseConstants}
-                // upgradeToVersion9(db);
+                // upgradeToVersion10(db);
         }
     }
 
@@ -143,6 +146,18 @@ public class InstanceDatabaseMigrator implements DatabaseMigrator {
         db.execSQL("UPDATE " + INSTANCES_TABLE_NAME + " SET " + CAN_DELETE_BEFORE_SEND + " = 'true';");
     }
 
+    private void upgradeToVersion9(SQLiteDatabase db) {
+        createStatusIndex(db);
+    }
+
+    /**
+     * Allows instances to be counted (or listed) by status without scanning the whole table.
+     */
+    private void createStatusIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INSTANCES_TABLE_NAME + "_" + STATUS + "_index ON "
+                + INSTANCES_TABLE_NAME + " (" + STATUS + ");");
+    }
+
     private void createInstancesTableV5(SQLiteDatabase db, String name) {
         db.execSQL("CREATE TABLE IF NOT EXISTS " + name + " ("
                 + _ID + " integer primary key, "
@@ -8,6 +8,7 @@ import org.odk.collect.android.database.DatabaseConstants.SAVEPOINTS_DATABASE_VE
 import org.odk.collect.android.database.DatabaseConstants.SAVEPOINTS_TABLE_NAME
 import org.odk.collect.android.database.savepoints.DatabaseSavepointsColumns.FORM_DB_ID
 import org.odk.collect.android.database.savepoints.DatabaseSavepointsColumns.INSTANCE_DB_ID
+import org.odk.collect.android.savepoints.SavepointJournal
 import org.odk.collect.androidshared.utils.PathUtils.getAbsoluteFilePath
 import org.odk.collect.db.sqlite.CursorExt.foldAndClose
 import org.odk.collect.db.sqlite.DatabaseConnection
@@ -90,11 +91,13 @@ class DatabaseSavepointsRepository(
             .delete(SAVEPOINTS_TABLE_NAME, selection, selectionArgs)
 
         File(savepoint.savepointFilePath).delete()
+        SavepointJournal.getJournalFile(File(savepoint.savepointFilePath)).delete()
     }
 
     override fun deleteAll() {
         getAll().forEach {
             File(it.savepointFilePath).delete()
+            SavepointJournal.getJournalFile(File(it.savepointFilePath)).delete()
         }
 
         databaseConnection
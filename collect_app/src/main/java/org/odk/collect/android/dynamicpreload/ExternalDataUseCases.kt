@@ -3,18 +3,39 @@ package org.odk.collect.android.dynamicpreload
 import android.content.res.Resources
 import org.javarosa.core.model.FormDef
 import java.io.File
+import java.util.concurrent.ConcurrentHashMap
 import java.util.function.Consumer
 import java.util.function.Function
 import java.util.function.Supplier
 
 object ExternalDataUseCases {
 
+    private val locks = ConcurrentHashMap<String, Any>()
+
+    /**
+     * Imports the CSVs in [mediaDir] used by [form] (with `search()` or `pulldata()`) into
+     * SQLite if they haven't been already. This can happen in the background (when a form is
+     * warmed up) at the same time as the form is opened, so imports are synchronized per media
+     * dir. Imports for different forms don't wait for each other.
+     */
     @JvmStatic
     fun create(
         form: FormDef,
         mediaDir: File,
         isCancelled: Supplier<Boolean>,
         progressReporter: Consumer<Function<Resources, String>>
+    ) {
+        val lock = locks.computeIfAbsent(mediaDir.absolutePath) { Any() }
+        synchronized(lock) {
+            import(form, mediaDir, isCancelled, progressReporter)
+        }
+    }
+
+    private fun import(
+        form: FormDef,
+        mediaDir: File,
+        isCancelled: Supplier<Boolean>,
+        progressReporter: Consumer<Function<Resources, String>>
     ) {
         if (form.extras.get(DynamicPreloadExtra::class.java) == null) {
             return
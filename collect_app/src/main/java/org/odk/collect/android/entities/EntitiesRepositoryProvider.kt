@@ -3,16 +3,21 @@ package org.odk.collect.android.entities
 import android.content.Context
 import org.odk.collect.android.database.entities.DatabaseEntitiesRepository
 import org.odk.collect.android.storage.StoragePaths
+import org.odk.collect.async.Scheduler
 import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.projects.ProjectDependencyFactory
 
 class EntitiesRepositoryProvider(
     private val context: Context,
-    private val storagePathFactory: ProjectDependencyFactory<StoragePaths>
+    private val storagePathFactory: ProjectDependencyFactory<StoragePaths>,
+    private val scheduler: Scheduler
 ) :
     ProjectDependencyFactory<EntitiesRepository> {
 
     override fun create(projectId: String): EntitiesRepository {
-        return DatabaseEntitiesRepository(context, storagePathFactory.create(projectId).metaDir)
+        return DatabaseEntitiesRepository(
+            context,
+            storagePathFactory.create(projectId).metaDir
+        ) { scheduler.immediate(runnable = it) }
     }
 }
@@ -22,6 +22,7 @@ import org.odk.collect.android.injection.DaggerUtils
 import org.odk.collect.android.instancemanagement.InstanceDeleter
 import org.odk.collect.android.instancemanagement.canBeEdited
 import org.odk.collect.android.projects.ProjectsDataService
+import org.odk.collect.android.savepoints.SavepointJournal
 import org.odk.collect.android.savepoints.SavepointUseCases
 import org.odk.collect.android.utilities.ChangeLockProvider
 import org.odk.collect.android.utilities.ContentUriHelper
@@ -118,7 +119,7 @@ class FormUriActivity : LocalizedActivity() {
     private fun displaySavePointRecoveryDialog(savepoint: Savepoint) {
         MaterialAlertDialogBuilder(this)
             .setTitle(string.savepoint_recovery_dialog_title)
-            .setMessage(SimpleDateFormat(getString(string.savepoint_recovery_dialog_message), Locale.getDefault()).format(File(savepoint.savepointFilePath).lastModified()))
+            .setMessage(SimpleDateFormat(getString(string.savepoint_recovery_dialog_message), Locale.getDefault()).format(SavepointJournal.getLastModified(File(savepoint.savepointFilePath))))
             .setCancelable(false)
             .setPositiveButton(string.recover) { _, _ ->
                 val uri = intent.data!!
@@ -0,0 +1,152 @@
+package org.odk.collect.android.fastexternalitemset;
+
+import android.database.Cursor;
+import android.database.SQLException;
+
+import androidx.annotation.Nullable;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+import org.odk.collect.shared.strings.Md5;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Imports a form's itemsets.csv into the itemsets DB. This is done (if the CSV has changed)
+ * both when a form is loaded and when it's warmed up in the background after download, so
+ * imports are synchronized per CSV to prevent the same CSV being imported twice at once.
+ */
+public final class ItemsetsImporter {
+
+    private static final String ITEMSETS_CSV = "itemsets.csv";
+    private static final ConcurrentHashMap<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private ItemsetsImporter() {
+
+    }
+
+    /**
+     * @return a warning message if the CSV could not be (fully) imported
+     */
+    @Nullable
+    public static String importItemsets(File formMediaDir) {
+        return importItemsets(formMediaDir, () -> false);
+    }
+
+    /**
+     * Like {@link #importItemsets(File)}, but stops (and discards anything imported so far) once
+     * {@code isCancelled} returns {@code true}.
+     *
+     * @return a warning message if the CSV could not be (fully) imported
+     */
+    @Nullable
+    public static String importItemsets(File formMediaDir, Supplier<Boolean> isCancelled) {
+        // for itemsets.csv, we only check to see if the itemset file has been
+        // updated
+        final File csv = new File(formMediaDir.getAbsolutePath() + "/" + ITEMSETS_CSV);
+        synchronized (LOCKS.computeIfAbsent(csv.getAbsolutePath(), path -> new Object())) {
+            return importCsv(csv, isCancelled);
+        }
+    }
+
+    @Nullable
+    private static String importCsv(File csv, Supplier<Boolean> isCancelled) {
+        String csvmd5;
+        if (csv.exists()) {
+            csvmd5 = Md5.getMd5Hash(csv);
+            boolean readFile = false;
+            final ItemsetDbAdapter ida = new ItemsetDbAdapter();
+            ida.open();
+            // get the database entry (if exists) for this itemsets.csv, based
+            // on the path
+            final Cursor c = ida.getItemsets(csv.getAbsolutePath());
+            if (c != null) {
+                if (c.getCount() == 1) {
+                    c.moveToFirst(); // should be only one, ever, if any
+                    final String oldmd5 = c.getString(c.getColumnIndex("hash"));
+                    if (oldmd5.equals(csvmd5)) {
+                        // they're equal, do nothing
+                    } else {
+                        // the csv has been updated, delete the old entries
+                        ida.dropTable(ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath()),
+                                csv.getAbsolutePath());
+                        // and read the new
+                        readFile = true;
+                    }
+                } else {
+                    // new csv, add it
+                    readFile = true;
+                }
+                c.close();
+            }
+            ida.close();
+            if (readFile) {
+                return readCSV(csv, csvmd5, ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath()), isCancelled);
+            }
+        }
+
+        return null;
+    }
+
+    @Nullable
+    private static String readCSV(File csv, String formHash, String pathHash, Supplier<Boolean> isCancelled) {
+        String warningMsg = null;
+        boolean cancelled = false;
+
+        CSVReader reader;
+        ItemsetDbAdapter ida = new ItemsetDbAdapter();
+        ida.open();
+        boolean withinTransaction = false;
+
+        try {
+            reader = new CSVReader(new FileReader(csv));
+
+            String[] nextLine;
+            String[] columnHeaders = null;
+            int lineNumber = 0;
+            while ((nextLine = reader.readNext()) != null) {
+                if (isCancelled.get()) {
+                    cancelled = true;
+                    break;
+                }
+
+                lineNumber++;
+                if (lineNumber == 1) {
+                    // first line of csv is column headers
+                    columnHeaders = nextLine;
+                    ida.createTable(formHash, pathHash, columnHeaders,
+                            csv.getAbsolutePath());
+                    continue;
+                }
+                // add the rest of the lines to the specified database
+                // nextLine[] is an array of values from the line
+                if (lineNumber == 2) {
+                    // start a transaction for the inserts
+                    withinTransaction = true;
+                    ida.beginTransaction();
+                }
+                ida.addRow(pathHash, columnHeaders, nextLine);
+
+            }
+        } catch (IOException | SQLException | CsvValidationException e) {
+            warningMsg = e.getMessage();
+        } finally {
+            if (withinTransaction) {
+                ida.commit();
+            }
+
+            // Drop anything imported so far so that the CSV is imported again next time
+            if (cancelled) {
+                ida.dropTable(pathHash, csv.getAbsolutePath());
+            }
+            ida.close();
+        }
+
+        return warningMsg;
+    }
+}
@@ -1,15 +1,12 @@
 package org.odk.collect.android.formentry
 
-import org.apache.commons.io.FileUtils.readFileToByteArray
 import org.javarosa.core.model.FormDef
 import org.javarosa.core.model.FormInitializationMode
-import org.javarosa.core.model.instance.TreeReference
-import org.javarosa.core.model.instance.utils.DefaultAnswerResolver
 import org.javarosa.core.reference.ReferenceManager
 import org.javarosa.form.api.FormEntryController
-import org.javarosa.xform.parse.XFormParser
 import org.javarosa.xform.util.XFormUtils
-import org.odk.collect.android.dynamicpreload.ExternalAnswerResolver
+import org.odk.collect.android.dynamicpreload.ExternalDataUseCases
+import org.odk.collect.android.fastexternalitemset.ItemsetsImporter
 import org.odk.collect.android.javarosawrapper.FailedValidationResult
 import org.odk.collect.android.javarosawrapper.FormController
 import org.odk.collect.android.javarosawrapper.JavaRosaFormController
@@ -66,6 +63,55 @@ object FormEntryUseCases {
         return createFormDefFromCacheOrXml(xForm, formDefCache)!!
     }
 
+    /**
+     * Builds everything that would otherwise need to be built the first time [form] is opened:
+     * the cached FormDef, any CSVs used with `search()` or `pulldata()` and the form's
+     * itemsets.csv. Returns `false` if the form doesn't exist, another form is using the
+     * reference manager or [isCancelled] returned `true` before everything was built. Warming up
+     * also stops as soon as a form starts loading so that it doesn't have to wait for imports.
+     */
+    fun warmUpForm(
+        form: Form,
+        projectRootDir: File,
+        formDefCache: FormDefCache,
+        isCancelled: () -> Boolean
+    ): Boolean {
+        val xForm = File(form.formFilePath)
+        if (!xForm.exists()) {
+            return false
+        }
+        val formMediaDir = File(form.formMediaPath)
+
+        /**
+         * The form is only parsed if no other form is using the (global) reference manager and
+         * the result is only cached once we know it was parsed with this form's references.
+         */
+        var parsed = false
+        val formDef = FormUtils.withUnusedReferenceManager(projectRootDir, formMediaDir) {
+            formDefCache.readCache(xForm) ?: XFormUtils.getFormFromFormXml(
+                xForm.absolutePath,
+                FileUtils.getOrCreateLastSavedSrc(xForm)
+            )?.also { parsed = true }
+        } ?: return false
+
+        if (parsed) {
+            formDefCache.writeCache(formDef, xForm.path)
+        }
+
+        val shouldStop = { isCancelled() || FormUtils.isReferenceManagerInUseByForm() }
+        if (shouldStop()) {
+            return false
+        }
+
+        ExternalDataUseCases.create(formDef, formMediaDir, { shouldStop() }) {}
+        if (shouldStop()) {
+            return false
+        }
+
+        ItemsetsImporter.importItemsets(formMediaDir) { shouldStop() }
+        return !shouldStop()
+    }
+
     fun loadBlankForm(
         form: Form,
         formEntryController: FormEntryController,
@@ -172,6 +218,9 @@ object FormEntryUseCases {
     @JvmStatic
     fun saveInstanceToDisk(formController: FormController) {
         val payload = formController.getSubmissionXml()
+
+        // Replace rather than overwrite the file as it may be hard linked to last-saved.xml
+        formController.getInstanceFile()!!.delete()
         FileUtils.write(formController.getInstanceFile(), payload!!.payloadBytes)
     }
 
@@ -196,36 +245,10 @@ object FormEntryUseCases {
     }
 
     private fun importInstance(instanceFile: File, formEntryController: FormEntryController) {
-        // convert files into a byte array
-        val fileBytes = readFileToByteArray(instanceFile)
-
-        // get the root of the saved and template instances
-        val savedRoot = XFormParser.restoreDataModel(fileBytes, null).root
-        val templateRoot = formEntryController.model.form.instance.root.deepCopy(true)
-
-        // weak check for matching forms
-        if (savedRoot.name != templateRoot.name || savedRoot.mult != 0) {
+        if (!InstanceImporter.importInstance(instanceFile, formEntryController.model.form, false)) {
             return
         }
 
-        // populate the data model
-        val tr = TreeReference.rootRef()
-        tr.add(templateRoot.name, TreeReference.INDEX_UNBOUND)
-
-        // Here we set the Collect's implementation of the IAnswerResolver.
-        // We set it back to the default after select choices have been populated.
-        XFormParser.setAnswerResolver(ExternalAnswerResolver())
-        templateRoot.populate(savedRoot, formEntryController.model.form)
-        XFormParser.setAnswerResolver(DefaultAnswerResolver())
-
-        // FormInstanceParser.parseInstance is responsible for initial creation of instances. It explicitly sets the
-        // main instance name to null so we force this again on deserialization because some code paths rely on the main
-        // instance not having a name. Must be before the call on setRoot because setRoot also sets the root's name.
-        formEntryController.model.form.instance.name = null
-
-        // populated model to current form
-        formEntryController.model.form.instance.root = templateRoot
-
         // fix any language issues
         // :
         // http://bitbucket.org/javarosa/main/issue/5/itext-n-appearing-in-restored-instances
@@ -15,7 +15,6 @@ import org.javarosa.core.model.GroupDef;
 import org.javarosa.core.model.SelectChoice;
 import org.javarosa.core.model.actions.recordaudio.RecordAudioActionHandler;
 import org.javarosa.core.model.data.IAnswerData;
-import org.javarosa.core.reference.ReferenceManager;
 import org.javarosa.form.api.FormEntryController;
 import org.javarosa.form.api.FormEntryPrompt;
 import org.javarosa.xpath.parser.XPathSyntaxException;
@@ -29,6 +28,7 @@ import org.odk.collect.android.javarosawrapper.FormController;
 import org.odk.collect.android.javarosawrapper.RepeatsInFieldListException;
 import org.odk.collect.android.javarosawrapper.ValidationResult;
 import org.odk.collect.android.utilities.ChangeLocks;
+import org.odk.collect.android.utilities.FormUtils;
 import org.odk.collect.android.widgets.interfaces.SelectChoiceLoader;
 import org.odk.collect.androidshared.async.TrackableWorker;
 import org.odk.collect.androidshared.data.Consumable;
@@ -361,8 +361,12 @@ public class FormEntryViewModel extends ViewModel implements SelectChoiceLoader
     }
 
     public void exit() {
+        if (formController != null) {
+            formController.getAuditEventLogger().close();
+        }
+
         formSessionRepository.clear(sessionId);
-        ReferenceManager.instance().reset();
+        FormUtils.releaseReferenceManager();
         changeLocks.getFormsLock().unlock();
     }
 
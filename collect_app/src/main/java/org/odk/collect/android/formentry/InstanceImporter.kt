@@ -0,0 +1,234 @@
+package org.odk.collect.android.formentry
+
+import org.javarosa.core.model.FormDef
+import org.javarosa.core.model.data.StringData
+import org.javarosa.core.model.instance.TreeElement
+import org.javarosa.core.model.instance.TreeReference
+import org.javarosa.core.model.instance.utils.DefaultAnswerResolver
+import org.javarosa.xform.parse.XFormParseException
+import org.javarosa.xform.parse.XFormParser
+import org.javarosa.xform.parse.XFormParser.NAMESPACE_JAVAROSA
+import org.kxml2.io.KXmlParser
+import org.odk.collect.android.dynamicpreload.ExternalAnswerResolver
+import org.odk.collect.android.savepoints.SavepointJournal
+import org.odk.collect.android.savepoints.SavepointJournal.Companion.getChildPath
+import org.xmlpull.v1.XmlPullParser
+import org.xmlpull.v1.XmlPullParserException
+import java.io.File
+import java.io.IOException
+
+/**
+ * Populates a form's main instance from a saved instance file. This does the same as restoring
+ * the saved instance with [XFormParser.restoreDataModel] and passing it to
+ * [TreeElement.populate] on a copy of the form's template, but reads the file with a pull parser
+ * and fills in the template as each element is read so that only one copy of the instance's
+ * data is ever held in memory.
+ */
+object InstanceImporter {
+
+    /**
+     * Returns `false` (leaving the form's instance untouched) if the saved instance's root
+     * doesn't match the form's.
+     *
+     * @param addDeprecatedId whether to keep the saved instance's `meta/deprecatedID` if the
+     * form doesn't declare one
+     * @param changes values (keyed by the path of the element or attribute) to use in place of
+     * the ones in the saved instance as read by [SavepointJournal.readChanges]
+     */
+    @JvmStatic
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun importInstance(
+        instanceFile: File,
+        formDef: FormDef,
+        addDeprecatedId: Boolean,
+        changes: Map<String, String?> = emptyMap()
+    ): Boolean {
+        val templateRoot = formDef.instance.root.deepCopy(true)
+
+        instanceFile.bufferedReader().use { reader ->
+            val parser = KXmlParser()
+
+            try {
+                parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true)
+                parser.setInput(reader)
+                parser.nextTag()
+
+                // weak check for matching forms
+                if (parser.name != templateRoot.name || parser.isTemplate()) {
+                    return false
+                }
+
+                // Here we set the Collect's implementation of the IAnswerResolver.
+                // We set it back to the default after select choices have been populated.
+                XFormParser.setAnswerResolver(ExternalAnswerResolver())
+                try {
+                    populate(parser, templateRoot, "/${templateRoot.name}", formDef, addDeprecatedId, changes, 0)
+                } finally {
+                    XFormParser.setAnswerResolver(DefaultAnswerResolver())
+                }
+            } catch (e: XmlPullParserException) {
+                throw XFormParseException("Unable to parse XML: ${e.message}")
+            }
+        }
+
+        // FormInstanceParser.parseInstance is responsible for initial creation of instances. It explicitly sets the
+        // main instance name to null so we force this again on deserialization because some code paths rely on the main
+        // instance not having a name. Must be before the call on setRoot because setRoot also sets the root's name.
+        formDef.instance.name = null
+
+        // populated model to current form
+        formDef.instance.root = templateRoot
+        return true
+    }
+
+    private fun populate(
+        parser: XmlPullParser,
+        element: TreeElement,
+        path: String,
+        formDef: FormDef,
+        addDeprecatedId: Boolean,
+        changes: Map<String, String?>,
+        depth: Int
+    ) {
+        if (element.isLeaf) {
+            val incoming = TreeElement(element.name, 0)
+            parser.copyAttributes(incoming, path, changes)
+
+            val text = parser.readText()
+            val value = if (changes.containsKey(path)) changes[path]?.trim()?.ifEmpty { null } else text
+            value?.let { incoming.setValue(StringData(it)) }
+
+            element.populate(incoming, formDef)
+        } else {
+            parser.copyAttributes(element, path, changes)
+            populateChildren(parser, element, path, formDef, addDeprecatedId, changes, depth)
+        }
+    }
+
+    /**
+     * Matches each child element of the saved instance with the template's child of the same
+     * name as [TreeElement.populate] does: every match for a repeat's template becomes a new
+     * repeat instance, only the first match for anything else is used and anything without a
+     * match is marked as non relevant.
+     */
+    private fun populateChildren(
+        parser: XmlPullParser,
+        element: TreeElement,
+        path: String,
+        formDef: FormDef,
+        addDeprecatedId: Boolean,
+        changes: Map<String, String?>,
+        depth: Int
+    ) {
+        // remove all default repetitions from skeleton data model (_preserving_ templates, though)
+        var i = 0
+        while (i < element.numChildren) {
+            val child = element.getChildAt(i)
+            if (child.isRepeatable && child.mult != TreeReference.INDEX_TEMPLATE) {
+                element.removeChildAt(i)
+            } else {
+                i++
+            }
+        }
+
+        val populated = mutableSetOf<String>()
+        val repeatCounts = mutableMapOf<String, Int>()
+        while (parser.nextChild()) {
+            val name = parser.name
+            val repeatTemplate = element.getChild(name, TreeReference.INDEX_TEMPLATE)
+
+            if (parser.isTemplate()) {
+                parser.skipElement()
+            } else if (repeatTemplate != null && repeatTemplate.isRepeatable) {
+                val mult = repeatCounts.getOrDefault(name, 0)
+                repeatCounts[name] = mult + 1
+
+                val repeat = repeatTemplate.deepCopy(true)
+                repeat.mult = mult
+                element.addChild(repeat)
+                populate(parser, repeat, getChildPath(path, name, mult), formDef, addDeprecatedId, changes, depth + 1)
+            } else if (populated.contains(name)) {
+                parser.skipElement()
+            } else {
+                var child = element.getChild(name, 0)
+                if (child == null && addDeprecatedId && depth == 1 && element.name == "meta" && name == "deprecatedID") {
+                    child = TreeElement(name)
+                    element.addChild(child)
+                }
+
+                if (child != null) {
+                    populated.add(name)
+                    populate(parser, child, getChildPath(path, name, null), formDef, addDeprecatedId, changes, depth + 1)
+                } else {
+                    parser.skipElement()
+                }
+            }
+        }
+
+        for (index in 0 until element.numChildren) {
+            val child = element.getChildAt(index)
+            if (!child.isRepeatable && !populated.contains(child.name)) {
+                child.setRelevant(false)
+            }
+        }
+    }
+
+    private fun XmlPullParser.isTemplate(): Boolean {
+        return getAttributeValue(NAMESPACE_JAVAROSA, "template") != null
+    }
+
+    private fun XmlPullParser.copyAttributes(element: TreeElement, path: String, changes: Map<String, String?>) {
+        for (i in 0 until attributeCount) {
+            val namespace = getAttributeNamespace(i)
+            val name = getAttributeName(i)
+            if (namespace == NAMESPACE_JAVAROSA && (name == "template" || name == "recordset")) {
+                continue
+            }
+
+            val attributePath = "$path/@$name"
+            val value = if (changes.containsKey(attributePath)) changes[attributePath] ?: "" else getAttributeValue(i)
+            element.setAttribute(namespace, name, value)
+        }
+    }
+
+    /**
+     * Reads the trimmed text of the current element leaving the parser at its end. Returns
+     * `null` if the element contains other elements or only whitespace.
+     */
+    private fun XmlPullParser.readText(): String? {
+        val text = StringBuilder()
+        var hasElements = false
+        while (true) {
+            when (next()) {
+                XmlPullParser.TEXT -> text.append(this.text)
+                XmlPullParser.START_TAG -> {
+                    hasElements = true
+                    skipElement()
+                }
+                XmlPullParser.END_TAG, XmlPullParser.END_DOCUMENT -> break
+            }
+        }
+
+        return if (hasElements) null else text.trim().toString().ifEmpty { null }
+    }
+
+    /**
+     * Moves to the start of the current element's next child element returning `false` (and
+     * leaving the parser at the current element's end) if there isn't one.
+     */
+    private fun XmlPullParser.nextChild(): Boolean {
+        while (true) {
+            when (next()) {
+                XmlPullParser.START_TAG -> return true
+                XmlPullParser.END_TAG, XmlPullParser.END_DOCUMENT -> return false
+            }
+        }
+    }
+
+    private fun XmlPullParser.skipElement() {
+        while (nextChild()) {
+            skipElement()
+        }
+    }
+}
@@ -20,7 +20,7 @@ import timber.log.Timber;
 
 /**
  * Handle logging of auditEvents (which contain time and might contain location coordinates),
- * and pass them to an Async task to append to a file
+ * and pass them to an {@link AuditEventWriter} to append to a file
  * Notes:
  * 1) If the user has saved the form, then resumes editing, then exits without saving then the timing data during the
  * second editing session will be saved.  This is OK as it records user activity.  However if the user exits
@@ -97,7 +97,7 @@ public class AuditEventLogger {
          * Write the event unless it is an interval event in which case we need to wait for the end of that event
          */
         if (writeImmediatelyToDisk && !newAuditEvent.isIntervalAuditEventType()) {
-            writeEvents();
+            writeEvents(false);
         }
     }
 
@@ -108,7 +108,28 @@ public class AuditEventLogger {
     public synchronized void flush() {
         if (isAuditEnabled()) {
             finalizeEvents();
-            writeEvents();
+            writeEvents(false);
+        }
+    }
+
+    /*
+     * Like flush but also makes sure the events are synced to the audit file before the instance
+     * is saved.
+     */
+    public synchronized void flushBeforeSave() {
+        if (isAuditEnabled()) {
+            finalizeEvents();
+            writeEvents(true);
+        }
+    }
+
+    /*
+     * Releases the writer's hold on the audit file once the form session has ended. Sessions don't
+     * always end with a form exit event (which also closes the file).
+     */
+    public synchronized void close() {
+        if (writer != null) {
+            writer.close();
         }
     }
 
@@ -209,9 +230,9 @@ public class AuditEventLogger {
         return true;
     }
 
-    private void writeEvents() {
+    private void writeEvents(boolean beforeSave) {
         if (!writer.isWriting()) {
-            writer.writeEvents(auditEvents);
+            writer.writeEvents(auditEvents, beforeSave);
             auditEvents = new ArrayList<>();
         } else {
             Timber.i("Queueing AuditEvent");
@@ -290,8 +311,18 @@ public class AuditEventLogger {
 
     public interface AuditEventWriter {
 
-        void writeEvents(List<AuditEvent> auditEvents);
+        /**
+         * @param beforeSave whether the instance is about to be saved in which case the events
+         *                   need to be in the audit file before the save reads it
+         */
+        void writeEvents(List<AuditEvent> auditEvents, boolean beforeSave);
 
         boolean isWriting();
+
+        /**
+         * Releases any resources held for the audit file. The writer should still accept events
+         * written after this.
+         */
+        void close();
     }
 }
@@ -0,0 +1,216 @@
+package org.odk.collect.android.formentry.audit;
+
+import static org.odk.collect.android.formentry.audit.AuditEventCSVLine.toCSVLine;
+
+import android.os.AsyncTask;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import timber.log.Timber;
+
+/**
+ * Appends events to an instance's audit log. The log is kept open in a buffered writer between
+ * batches (until the form is exited or the writer is closed) and its header is only checked (and
+ * rewritten if the form's audit config has changed since it was written) the first time it's
+ * opened. Every batch is flushed to the file and batches written before a save or exit are also
+ * synced to disk.
+ * <p>
+ * Batches are written in order on {@link AsyncTask#SERIAL_EXECUTOR} by default so that any
+ * events written before a save are in the log before the save (which also runs on that executor)
+ * reads it.
+ */
+public class BufferedAuditEventWriter implements AuditEventLogger.AuditEventWriter {
+
+    private static final String DEFAULT_COLUMNS = "event,node,start,end";
+    private static final String LOCATION_COORDINATES_COLUMNS = ",latitude,longitude,accuracy";
+    private static final String ANSWER_VALUES_COLUMNS = ",old-value,new-value";
+    private static final String USER_COLUMNS = ",user";
+    private static final String CHANGE_REASON_COLUMNS = ",change-reason";
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final @NonNull File file;
+    private final boolean isLocationEnabled;
+    private final boolean isTrackingChangesEnabled;
+    private final boolean isUserRequired;
+    private final boolean isTrackChangesReasonEnabled;
+    private final Executor executor;
+
+    // Only accessed from the executor
+    @Nullable
+    private FileOutputStream outputStream;
+    @Nullable
+    private BufferedWriter writer;
+    private boolean headerChecked;
+
+    public BufferedAuditEventWriter(@NonNull File file, boolean isLocationEnabled, boolean isTrackingChangesEnabled, boolean isUserRequired, boolean isTrackChangesReasonEnabled) {
+        this(file, isLocationEnabled, isTrackingChangesEnabled, isUserRequired, isTrackChangesReasonEnabled, AsyncTask.SERIAL_EXECUTOR);
+    }
+
+    public BufferedAuditEventWriter(@NonNull File file, boolean isLocationEnabled, boolean isTrackingChangesEnabled, boolean isUserRequired, boolean isTrackChangesReasonEnabled, Executor executor) {
+        this.file = file;
+        this.isLocationEnabled = isLocationEnabled;
+        this.isTrackingChangesEnabled = isTrackingChangesEnabled;
+        this.isUserRequired = isUserRequired;
+        this.isTrackChangesReasonEnabled = isTrackChangesReasonEnabled;
+        this.executor = executor;
+    }
+
+    @Override
+    public void writeEvents(List<AuditEvent> auditEvents, boolean beforeSave) {
+        executor.execute(() -> write(auditEvents, beforeSave));
+    }
+
+    /**
+     * Closes the log once any batches that have already been queued are written. It will be
+     * reopened if more events are written.
+     */
+    @Override
+    public void close() {
+        executor.execute(this::closeStream);
+    }
+
+    /**
+     * Batches are queued on the executor rather than dropped so the writer never needs the
+     * logger to hold on to them.
+     */
+    @Override
+    public boolean isWriting() {
+        return false;
+    }
+
+    private synchronized void write(List<AuditEvent> auditEvents, boolean beforeSave) {
+        boolean exiting = contains(auditEvents, AuditEvent.AuditEventType.FORM_EXIT);
+
+        try {
+            BufferedWriter writer = open();
+            for (AuditEvent aev : auditEvents) {
+                String csvLine = toCSVLine(aev, isLocationEnabled, isTrackingChangesEnabled, isTrackChangesReasonEnabled);
+                writer.write(csvLine);
+                writer.write('\n');
+                Timber.i("Log audit event: %s", csvLine);
+            }
+
+            writer.flush();
+            if (beforeSave || exiting || contains(auditEvents, AuditEvent.AuditEventType.FORM_SAVE)) {
+                outputStream.getFD().sync();
+            }
+        } catch (IOException e) {
+            Timber.e(e);
+            closeStream();
+            return;
+        }
+
+        if (exiting) {
+            closeStream();
+        }
+    }
+
+    private BufferedWriter open() throws IOException {
+        if (writer != null) {
+            return writer;
+        }
+
+        if (!headerChecked) {
+            checkHeader();
+            headerChecked = true;
+        }
+
+        outputStream = new FileOutputStream(file, true);
+        writer = new BufferedWriter(new OutputStreamWriter(outputStream, Charset.defaultCharset()), BUFFER_SIZE);
+        return writer;
+    }
+
+    private synchronized void closeStream() {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            Timber.e(e);
+        } finally {
+            writer = null;
+            outputStream = null;
+        }
+    }
+
+    /**
+     * Writes the header to a new (or empty) log and rewrites an existing log if its header is
+     * missing columns the form now needs.
+     */
+    private void checkHeader() throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            try (FileWriter fw = new FileWriter(file)) {
+                fw.write(getHeader() + "\n");
+            }
+
+            return;
+        }
+
+        File temporaryFile = new File(file.getParentFile(), "temporaryAudit.csv");
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            if (!shouldHeaderBeUpdated(br.readLine())) {
+                return;
+            }
+
+            try (BufferedWriter tfw = new BufferedWriter(new FileWriter(temporaryFile), BUFFER_SIZE)) {
+                tfw.write(getHeader() + "\n");
+                String line;
+                while ((line = br.readLine()) != null) {
+                    tfw.write(line + "\n");
+                }
+            }
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            throw new IOException("Could not update header of " + file);
+        }
+    }
+
+    private boolean shouldHeaderBeUpdated(String header) {
+        return header == null
+                || (isLocationEnabled && !header.contains(LOCATION_COORDINATES_COLUMNS))
+                || (isTrackingChangesEnabled && !header.contains(ANSWER_VALUES_COLUMNS))
+                || (isUserRequired && !header.contains(USER_COLUMNS));
+    }
+
+    private String getHeader() {
+        String header = DEFAULT_COLUMNS;
+        if (isLocationEnabled) {
+            header += LOCATION_COORDINATES_COLUMNS;
+        }
+        if (isTrackingChangesEnabled) {
+            header += ANSWER_VALUES_COLUMNS;
+        }
+        if (isUserRequired) {
+            header += USER_COLUMNS;
+        }
+        if (isTrackChangesReasonEnabled) {
+            header += CHANGE_REASON_COLUMNS;
+        }
+        return header;
+    }
+
+    private static boolean contains(List<AuditEvent> auditEvents, AuditEvent.AuditEventType eventType) {
+        for (AuditEvent aev : auditEvents) {
+            if (aev.getAuditEventType() == eventType) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
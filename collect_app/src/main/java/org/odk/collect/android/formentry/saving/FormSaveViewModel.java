@@ -137,7 +137,7 @@ public class FormSaveViewModel extends ViewModel implements MaterialProgressDial
         }
 
         SaveRequest saveRequest = new SaveRequest(instanceContentURI, viewExiting, updatedSaveName, shouldFinalize);
-        formController.getAuditEventLogger().flush();
+        formController.getAuditEventLogger().flushBeforeSave();
 
         if (requiresReasonToSave()) {
             this.saveResult.setValue(new SaveResult(SaveResult.State.CHANGE_REASON_REQUIRED, saveRequest));
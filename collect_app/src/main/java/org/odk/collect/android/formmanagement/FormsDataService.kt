@@ -3,6 +3,8 @@ package org.odk.collect.android.formmanagement
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.asLiveData
 import kotlinx.coroutines.flow.Flow
+import org.odk.collect.android.backgroundwork.FormUpdateScheduler
+import org.odk.collect.android.formentry.FormEntryUseCases
 import org.odk.collect.android.formmanagement.download.FormDownloadException
 import org.odk.collect.android.formmanagement.download.ServerFormDownloader
 import org.odk.collect.android.formmanagement.matchexactly.ServerFormsSynchronizer
@@ -10,13 +12,17 @@ import org.odk.collect.android.formmanagement.metadata.FormMetadataParser
 import org.odk.collect.android.notifications.Notifier
 import org.odk.collect.android.projects.ProjectDependencyModule
 import org.odk.collect.android.state.DataKeys
+import org.odk.collect.android.utilities.ExternalizableFormDefCache
 import org.odk.collect.androidshared.data.AppState
 import org.odk.collect.androidshared.data.DataService
 import org.odk.collect.forms.Form
 import org.odk.collect.forms.FormSourceException
 import org.odk.collect.projects.ProjectDependencyFactory
 import org.odk.collect.settings.keys.ProjectKeys
+import org.odk.collect.shared.files.FileHashCache
+import timber.log.Timber
 import java.io.File
+import java.io.IOException
 import java.util.function.Supplier
 import java.util.stream.Collectors
 
@@ -24,7 +30,9 @@ class FormsDataService(
     appState: AppState,
     private val notifier: Notifier,
     private val projectDependencyModuleFactory: ProjectDependencyFactory<ProjectDependencyModule>,
-    private val clock: Supplier<Long>
+    private val clock: Supplier<Long>,
+    private val formUpdateScheduler: FormUpdateScheduler,
+    private val fileHashCache: FileHashCache = FileHashCache()
 ) : DataService(appState) {
 
     private val forms by qualifiedData(DataKeys.FORMS, emptyList<Form>()) { projectId ->
@@ -80,7 +88,7 @@ class FormsDataService(
         projectDependencyModule.formsLock.withLock { acquiredLock ->
             if (acquiredLock) {
                 val formDownloader =
-                    formDownloader(projectDependencyModule, clock)
+                    formDownloader(projectDependencyModule, clock, fileHashCache)
 
                 results.putAll(ServerFormUseCases.downloadForms(
                     forms,
@@ -90,6 +98,11 @@ class FormsDataService(
                 ))
             }
         }
+
+        if (results.values.any { it == null }) {
+            formUpdateScheduler.scheduleWarmUp(projectId)
+        }
+
         return results
     }
 
@@ -103,8 +116,8 @@ class FormsDataService(
             if (acquiredLock) {
                 syncWithStorage(projectId)
 
-                val serverFormsDetailsFetcher = serverFormsDetailsFetcher(projectDependencies)
-                val formDownloader = formDownloader(projectDependencies, clock)
+                val serverFormsDetailsFetcher = serverFormsDetailsFetcher(projectDependencies, fileHashCache)
+                val formDownloader = formDownloader(projectDependencies, clock, fileHashCache)
 
                 try {
                     val serverForms: List<ServerFormDetails> =
@@ -120,6 +133,9 @@ class FormsDataService(
                             )
 
                             notifier.onUpdatesDownloaded(results, projectId)
+                            if (results.values.any { it == null }) {
+                                formUpdateScheduler.scheduleWarmUp(projectId)
+                            }
                         } else {
                             notifier.onUpdatesAvailable(updatedForms, projectId)
                         }
@@ -145,8 +161,8 @@ class FormsDataService(
                 startSync(projectId)
                 syncWithStorage(projectId)
 
-                val serverFormsDetailsFetcher = serverFormsDetailsFetcher(projectDependencies)
-                val formDownloader = formDownloader(projectDependencies, clock)
+                val serverFormsDetailsFetcher = serverFormsDetailsFetcher(projectDependencies, fileHashCache)
+                val formDownloader = formDownloader(projectDependencies, clock, fileHashCache)
 
                 val serverFormsSynchronizer = ServerFormsSynchronizer(
                     serverFormsDetailsFetcher,
@@ -172,6 +188,11 @@ class FormsDataService(
 
                 update(projectId)
                 finishSyncWithServer(projectId, exception)
+
+                if (exception == null) {
+                    formUpdateScheduler.scheduleWarmUp(projectId)
+                }
+
                 exception == null
             } else {
                 false
@@ -179,6 +200,46 @@ class FormsDataService(
         }
     }
 
+    /**
+     * Builds the [ExternalizableFormDefCache] entry, external data database and itemsets
+     * database for each of the project's forms that haven't been warmed up since they (or their
+     * media) last changed so that opening them for the first time is quick. Forms are recorded
+     * as warmed up in the project's cache dir so that repeated calls only do work for new or
+     * updated forms.
+     */
+    fun warmUpForms(projectId: String, isCancelled: () -> Boolean) {
+        val projectDependencies = projectDependencyModuleFactory.create(projectId)
+        val warmedUpFile = File(projectDependencies.cacheDir, WARMED_UP_FORMS_FILE)
+        val previouslyWarmedUp = readWarmedUpForms(warmedUpFile)
+
+        val forms = projectDependencies.formsRepository.all.filter { !it.isDeleted }
+        val formDefCache = ExternalizableFormDefCache(fileHashCache)
+        val warmedUp = mutableSetOf<String>()
+        for (form in forms) {
+            if (isCancelled()) {
+                break
+            }
+
+            val key = getWarmUpKey(form)
+            if (previouslyWarmedUp.contains(key)) {
+                warmedUp.add(key)
+                continue
+            }
+
+            try {
+                if (FormEntryUseCases.warmUpForm(form, File(projectDependencies.rootDir), formDefCache, isCancelled)) {
+                    warmedUp.add(key)
+                }
+            } catch (e: Exception) {
+                Timber.w(e, "Failed to warm up form %s", form.formId)
+            }
+        }
+
+        if (warmedUp != previouslyWarmedUp) {
+            writeWarmedUpForms(warmedUpFile, warmedUp)
+        }
+    }
+
     fun deleteForm(projectId: String, formId: Long) {
         val projectDependencies = projectDependencyModuleFactory.create(projectId)
         LocalFormUseCases.deleteForm(
@@ -194,7 +255,8 @@ class FormsDataService(
         val projectDependencies = projectDependencyModuleFactory.create(projectId)
         val error = LocalFormUseCases.synchronizeWithDisk(
             projectDependencies.formsRepository,
-            projectDependencies.formsDir
+            projectDependencies.formsDir,
+            fileHashCache
         )
 
         diskError.set(projectId, error)
@@ -214,9 +276,32 @@ class FormsDataService(
     }
 }
 
+private const val WARMED_UP_FORMS_FILE = "warmed_up_forms"
+
+private fun getWarmUpKey(form: Form): String {
+    return "${form.mD5Hash}:${form.lastDetectedAttachmentsUpdateDate}"
+}
+
+private fun readWarmedUpForms(file: File): Set<String> {
+    return try {
+        if (file.exists()) file.readLines().toSet() else emptySet()
+    } catch (e: IOException) {
+        emptySet()
+    }
+}
+
+private fun writeWarmedUpForms(file: File, keys: Set<String>) {
+    try {
+        file.writeText(keys.joinToString("\n"))
+    } catch (e: IOException) {
+        Timber.w(e)
+    }
+}
+
 private fun formDownloader(
     projectDependencyModule: ProjectDependencyModule,
-    clock: Supplier<Long>
+    clock: Supplier<Long>,
+    fileHashCache: FileHashCache
 ): ServerFormDownloader {
     return ServerFormDownloader(
         projectDependencyModule.formSource,
@@ -226,15 +311,20 @@ private fun formDownloader(
         FormMetadataParser,
         clock,
         projectDependencyModule.entitiesRepository,
-        projectDependencyModule.entitySource
+        projectDependencyModule.entitySource,
+        fileHashCache,
+        projectDependencyModule.generalSettings.getInt(ProjectKeys.KEY_MEDIA_DOWNLOAD_CONCURRENCY)
+            .coerceIn(1, ServerFormUseCases.MAX_MEDIA_DOWNLOAD_CONCURRENCY)
     )
 }
 
 private fun serverFormsDetailsFetcher(
-    projectDependencyModule: ProjectDependencyModule
+    projectDependencyModule: ProjectDependencyModule,
+    fileHashCache: FileHashCache
 ): ServerFormsDetailsFetcher {
     return ServerFormsDetailsFetcher(
         projectDependencyModule.formsRepository,
-        projectDependencyModule.formSource
+        projectDependencyModule.formSource,
+        fileHashCache
     )
 }
@@ -10,11 +10,11 @@ import org.odk.collect.androidshared.utils.Validator
 import org.odk.collect.forms.Form
 import org.odk.collect.forms.FormsRepository
 import org.odk.collect.forms.instances.InstancesRepository
-import org.odk.collect.shared.strings.Md5.getMd5Hash
+import org.odk.collect.shared.collections.CollectionExtensions.mapConcurrently
+import org.odk.collect.shared.files.FileHashCache
 import org.odk.collect.strings.localization.getLocalizedString
 import timber.log.Timber
 import java.io.File
-import java.util.Collections
 import java.util.LinkedList
 
 object LocalFormUseCases {
@@ -47,7 +47,17 @@ object LocalFormUseCases {
         }
     }
 
-    fun synchronizeWithDisk(formsRepository: FormsRepository, formsDir: String?): String {
+    /**
+     * Brings [formsRepository] in line with the form files in [formsDir]. Form files are hashed
+     * and parsed using a pool of up to [concurrency] threads and all new and changed forms are
+     * then saved in a single batch.
+     */
+    fun synchronizeWithDisk(
+        formsRepository: FormsRepository,
+        formsDir: String?,
+        fileHashCache: FileHashCache = FileHashCache(),
+        concurrency: Int = Runtime.getRuntime().availableProcessors()
+    ): String {
         var statusMessage = ""
         val instance = ++counter
         Timber.i("[%d] doInBackground begins!", instance)
@@ -66,9 +76,18 @@ object LocalFormUseCases {
                 // Step 2: quickly run through and figure out what files we need to
                 // parse and update; this is quick, as we only calculate the md5
                 // and see if it has changed.
-                val uriToUpdate: MutableList<IdFile?> = ArrayList()
+                val uriToUpdate: MutableList<IdFile> = ArrayList()
                 val forms = formsRepository.all
-                for (form in forms) {
+                val md5sComputed = forms.mapConcurrently(concurrency) { form ->
+                    val sqlFile = File(form.formFilePath)
+                    if (sqlFile.exists()) {
+                        fileHashCache.getMd5Hash(sqlFile)
+                    } else {
+                        null
+                    }
+                }
+
+                forms.forEachIndexed { index, form ->
                     // For each element in the provider, see if the file already exists
                     val sqlFilename = form.formFilePath
                     val md5 = form.mD5Hash
@@ -77,7 +96,7 @@ object LocalFormUseCases {
                         // remove it from the list of forms (we only want forms
                         // we haven't added at the end)
                         formsToAdd.remove(sqlFile)
-                        val md5Computed = sqlFile.getMd5Hash()
+                        val md5Computed = md5sComputed[index]
                         if (md5Computed == null || md5 == null || md5Computed != md5) {
                             // Probably someone overwrite the file on the sdcard
                             // So re-parse it and update it's information
@@ -98,59 +117,47 @@ object LocalFormUseCases {
                     formsRepository.delete(id)
                 }
 
-                // Step3: go through uriToUpdate to parse and update each in turn.
-                // Note: buildContentValues calls getMetadataFromFormDefinition which parses the
-                // form XML. This takes time for large forms and/or slow devices.
-                Collections.shuffle(uriToUpdate) // Big win if multiple DiskSyncTasks running
-                for (entry in uriToUpdate) {
-                    val formDefFile = entry!!.file
-                    // Probably someone overwrite the file on the sdcard
-                    // So re-parse it and update it's information
-                    var form: Form
-                    form = try {
-                        parseForm(formDefFile)
-                    } catch (e: IllegalArgumentException) {
-                        errors.append(e.message).append("\r\n")
-                        val badFile = File(
-                            formDefFile.parentFile,
-                            formDefFile.name + ".bad"
-                        )
-                        badFile.delete()
-                        formDefFile.renameTo(badFile)
-                        continue
-                    }
-                    formsRepository.save(
-                        Form.Builder(form)
-                            .dbId(entry.id)
-                            .build()
-                    )
-                }
-                uriToUpdate.clear()
-
-                // Step 4: go through the newly-discovered files in xFormsToAdd and add them.
-                // This is slow because buildContentValues(...) is slow.
-                //
-                Collections.shuffle(formsToAdd) // Big win if multiple DiskSyncTasks running
-                while (!formsToAdd.isEmpty()) {
-                    val formDefFile = formsToAdd.removeAt(0)
-
-                    // Since parsing is so slow, if there are multiple tasks,
-                    // they may have already updated the database.
-                    // Skip this file if that is the case.
-                    if (formsRepository.getOneByPath(formDefFile!!.absolutePath) != null) {
+                // Step 3: go through the newly-discovered files in formsToAdd and skip any that
+                // another sync has already recorded.
+                val newFiles = formsToAdd.filterNotNull().filter { formDefFile ->
+                    if (formsRepository.getOneByPath(formDefFile.absolutePath) != null) {
                         Timber.i(
                             "[%d] skipping -- definition already recorded: %s",
                             instance,
                             formDefFile.absolutePath
                         )
-                        continue
+                        false
+                    } else {
+                        true
                     }
+                }
 
-                    // Parse it for the first time...
-                    var form: Form
-                    form = try {
-                        parseForm(formDefFile)
+                // Step 4: parse the changed and new files. This is the slow part (as it reads
+                // each whole file) so it's spread across the pool.
+                val filesToParse = uriToUpdate.map { it.file } + newFiles
+                val parseResults = filesToParse.mapConcurrently(concurrency) { formDefFile ->
+                    try {
+                        Result.success(parseForm(formDefFile))
                     } catch (e: IllegalArgumentException) {
+                        Result.failure(e)
+                    }
+                }
+
+                val updatedForms = ArrayList<Form>()
+                val newForms = ArrayList<Form>()
+                parseResults.forEachIndexed { index, result ->
+                    val formDefFile = filesToParse[index]
+                    result.onSuccess { form ->
+                        if (index < uriToUpdate.size) {
+                            updatedForms.add(
+                                Form.Builder(form)
+                                    .dbId(uriToUpdate[index].id)
+                                    .build()
+                            )
+                        } else {
+                            newForms.add(form)
+                        }
+                    }.onFailure { e ->
                         errors.append(e.message).append("\r\n")
                         val badFile = File(
                             formDefFile.parentFile,
@@ -158,18 +165,11 @@ object LocalFormUseCases {
                         )
                         badFile.delete()
                         formDefFile.renameTo(badFile)
-                        continue
-                    }
-
-                    // insert into content provider
-                    try {
-                        // insert failures are OK and expected if multiple
-                        // DiskSync scanners are active.
-                        formsRepository.save(form)
-                    } catch (e: SQLException) {
-                        Timber.i("[%d] %s", instance, e.toString())
                     }
                 }
+
+                // Step 5: save everything in one go
+                saveForms(formsRepository, updatedForms, newForms, instance)
             }
             if (errors.length != 0) {
                 statusMessage = errors.toString()
@@ -185,6 +185,33 @@ object LocalFormUseCases {
         }
     }
 
+    private fun saveForms(
+        formsRepository: FormsRepository,
+        updatedForms: List<Form>,
+        newForms: List<Form>,
+        instance: Int
+    ) {
+        try {
+            formsRepository.saveAll(updatedForms + newForms)
+        } catch (e: SQLException) {
+            // Insert failures are OK and expected if multiple DiskSync scanners are active so
+            // fall back to saving each form individually
+            Timber.i("[%d] %s", instance, e.toString())
+
+            for (form in updatedForms) {
+                formsRepository.save(form)
+            }
+
+            for (form in newForms) {
+                try {
+                    formsRepository.save(form)
+                } catch (e: SQLException) {
+                    Timber.i("[%d] %s", instance, e.toString())
+                }
+            }
+        }
+    }
+
     @JvmStatic
     fun filterFormsToAdd(formDefs: Array<File>?, backgroundInstanceId: Int): MutableList<File?> {
         val formsToAdd: MutableList<File?> = LinkedList()
@@ -1,18 +1,26 @@
 package org.odk.collect.android.formmanagement
 
 import org.odk.collect.android.utilities.WebCredentialsUtils
+import org.odk.collect.openrosa.forms.ManifestCache
 import org.odk.collect.openrosa.forms.OpenRosaClient
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface
 import org.odk.collect.openrosa.parse.Kxml2OpenRosaResponseParser
 import org.odk.collect.projects.ProjectDependencyFactory
 import org.odk.collect.settings.keys.ProjectKeys
 import org.odk.collect.shared.settings.Settings
+import java.util.concurrent.ConcurrentHashMap
 
 class OpenRosaClientProvider(
     private val settingsFactory: ProjectDependencyFactory<Settings>,
     private val openRosaHttpInterface: OpenRosaHttpInterface
 ) {
 
+    /**
+     * A new client is created for each use so manifests are cached here (per project) to let
+     * them be reused between form updates.
+     */
+    private val manifestCaches = ConcurrentHashMap<String, ManifestCache>()
+
     fun create(projectId: String): OpenRosaClient {
         val settings = settingsFactory.create(projectId)
         val serverURL = settings.getString(ProjectKeys.KEY_SERVER_URL)!!
@@ -21,7 +29,8 @@ class OpenRosaClientProvider(
             serverURL,
             openRosaHttpInterface,
             WebCredentialsUtils(settings),
-            Kxml2OpenRosaResponseParser
+            Kxml2OpenRosaResponseParser,
+            manifestCaches.computeIfAbsent(projectId) { ManifestCache() }
         )
     }
 }
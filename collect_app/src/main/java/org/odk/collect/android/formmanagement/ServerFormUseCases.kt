@@ -13,12 +13,17 @@ import org.odk.collect.forms.FormSource
 import org.odk.collect.forms.FormSourceException
 import org.odk.collect.forms.FormsRepository
 import org.odk.collect.forms.MediaFile
+import org.odk.collect.shared.collections.CollectionExtensions.mapConcurrently
+import org.odk.collect.shared.files.FileHashCache
 import org.odk.collect.shared.strings.Md5.getMd5Hash
 import java.io.File
 import java.io.IOException
 
 object ServerFormUseCases {
 
+    const val DEFAULT_MEDIA_DOWNLOAD_CONCURRENCY = 4
+    const val MAX_MEDIA_DOWNLOAD_CONCURRENCY = 8
+
     fun downloadForms(
         forms: List<ServerFormDetails>,
         formDownloader: FormDownloader,
@@ -66,7 +71,13 @@ object ServerFormUseCases {
         }
     }
 
+    /**
+     * Downloads the media files in the form's manifest to [tempMediaPath]. Up to [concurrency]
+     * files are fetched (or copied from a previous version of the form) at the same time. Entity
+     * lists are only updated once every file has been downloaded successfully.
+     */
     @JvmStatic
+    @JvmOverloads
     @Throws(IOException::class, FormSourceException::class, InterruptedException::class)
     fun downloadMediaFiles(
         formToDownload: ServerFormDetails,
@@ -76,38 +87,47 @@ object ServerFormUseCases {
         tempDir: File,
         entitiesRepository: EntitiesRepository,
         entitySource: EntitySource,
-        stateListener: OngoingWorkListener
+        stateListener: OngoingWorkListener,
+        fileHashCache: FileHashCache = FileHashCache(),
+        concurrency: Int = DEFAULT_MEDIA_DOWNLOAD_CONCURRENCY
     ): MediaFilesDownloadResult {
-        var newAttachmentsDownloaded = false
         var entitiesDownloaded = false
 
         val tempMediaDir = File(tempMediaPath).also { it.mkdir() }
-
-        formToDownload.manifest!!.mediaFiles.forEachIndexed { i, mediaFile ->
-            stateListener.progressUpdate(i + 1)
+        val mediaFiles = formToDownload.manifest!!.mediaFiles
+        val existingMediaDirs = getExistingMediaDirs(formsRepository, formToDownload)
+
+        var started = 0
+        val newAttachmentsDownloaded = mediaFiles.mapConcurrently(concurrency) { mediaFile ->
+            synchronized(stateListener) {
+                started += 1
+                stateListener.progressUpdate(started)
+            }
 
             val tempMediaFile = File(tempMediaDir, mediaFile.filename)
-
-            val existingFile = searchForExistingMediaFile(formsRepository, formToDownload, mediaFile)
-            existingFile.also {
-                if (it != null) {
-                    if (it.getMd5Hash().contentEquals(mediaFile.hash)) {
-                        FileUtils.copyFile(it, tempMediaFile)
-                    } else {
-                        val existingFileHash = it.getMd5Hash()
-                        val file = formSource.fetchMediaFile(mediaFile.downloadUrl)
-                        FileUtils.interuptablyWriteFile(file, tempMediaFile, tempDir, stateListener)
-
-                        if (!tempMediaFile.getMd5Hash().contentEquals(existingFileHash)) {
-                            newAttachmentsDownloaded = true
-                        }
-                    }
+            val existingFile = existingMediaDirs
+                .map { File(it, mediaFile.filename) }
+                .firstOrNull { it.exists() }
+
+            if (existingFile != null) {
+                val existingFileHash = fileHashCache.getMd5Hash(existingFile)
+                if (existingFileHash.contentEquals(mediaFile.hash)) {
+                    FileUtils.copyFile(existingFile, tempMediaFile)
+                    false
                 } else {
                     val file = formSource.fetchMediaFile(mediaFile.downloadUrl)
                     FileUtils.interuptablyWriteFile(file, tempMediaFile, tempDir, stateListener)
-                    newAttachmentsDownloaded = true
+                    !tempMediaFile.getMd5Hash().contentEquals(existingFileHash)
                 }
+            } else {
+                val file = formSource.fetchMediaFile(mediaFile.downloadUrl)
+                FileUtils.interuptablyWriteFile(file, tempMediaFile, tempDir, stateListener)
+                true
             }
+        }.any { it }
+
+        mediaFiles.forEach { mediaFile ->
+            val tempMediaFile = File(tempMediaDir, mediaFile.filename)
 
             if (mediaFile.isEntityList) {
                 /**
@@ -149,18 +169,19 @@ object ServerFormUseCases {
     private fun getEntityListFromFileName(mediaFile: MediaFile) =
         mediaFile.filename.substringBefore(".csv")
 
-    private fun searchForExistingMediaFile(
+    /**
+     * Returns the media dirs for every version of the form already on the device (newest first)
+     * which can be searched for existing copies of media files.
+     */
+    private fun getExistingMediaDirs(
         formsRepository: FormsRepository,
-        formToDownload: ServerFormDetails,
-        mediaFile: MediaFile
-    ): File? {
+        formToDownload: ServerFormDetails
+    ): List<String> {
         val allFormVersions = formsRepository.getAllByFormId(formToDownload.formId)
         return allFormVersions.sortedByDescending {
             it.date
         }.map { form: Form ->
-            File(form.formMediaPath, mediaFile.filename)
-        }.firstOrNull { file: File ->
-            file.exists()
+            form.formMediaPath
         }
     }
 }
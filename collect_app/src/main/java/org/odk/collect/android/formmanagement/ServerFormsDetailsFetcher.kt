@@ -24,16 +24,17 @@ import org.odk.collect.forms.FormsRepository
 import org.odk.collect.forms.ManifestFile
 import org.odk.collect.forms.MediaFile
 import org.odk.collect.openrosa.forms.OpenRosaClient
-import org.odk.collect.shared.strings.Md5.getMd5Hash
+import org.odk.collect.shared.collections.CollectionExtensions.mapConcurrently
+import org.odk.collect.shared.files.FileHashCache
 import timber.log.Timber
-import java.io.File
 
 /**
  * Open to allow mocking (used in existing Java tests)
  */
-open class ServerFormsDetailsFetcher(
+open class ServerFormsDetailsFetcher @JvmOverloads constructor(
     private val formsRepository: FormsRepository,
-    private val formSource: FormSource
+    private val formSource: FormSource,
+    private val fileHashCache: FileHashCache = FileHashCache()
 ) {
     open fun updateUrl(url: String) {
         (formSource as OpenRosaClient).updateUrl(url)
@@ -43,21 +44,35 @@ open class ServerFormsDetailsFetcher(
         (formSource as OpenRosaClient).updateWebCredentialsUtils(webCredentialsUtils)
     }
 
+    /**
+     * Manifests are fetched concurrently (up to [MANIFEST_FETCH_CONCURRENCY] at a time) and
+     * forms already on the device are looked up with a single query.
+     */
     @Throws(FormSourceException::class)
     open fun fetchFormDetails(): List<ServerFormDetails> {
         val formList = formSource.fetchFormList()
-        return formList.map { listItem ->
-            val manifestFile = listItem.manifestURL?.let {
+        val manifestFiles = formList.mapConcurrently(MANIFEST_FETCH_CONCURRENCY) { listItem ->
+            listItem.manifestURL?.let {
                 getManifestFile(formSource, it)
             }
+        }
+
+        val formsOnDevice = formsRepository.all
+        val notDeletedFormIds = formsOnDevice.filterNot { it.isDeleted }.map { it.formId }.toSet()
+        val formsByHash = HashMap<String, Form>()
+        formsOnDevice.forEach { form ->
+            form.mD5Hash?.let { formsByHash.putIfAbsent(it, form) }
+        }
 
-            val forms = formsRepository.getAllNotDeletedByFormId(listItem.formID)
-            val thisFormAlreadyDownloaded = forms.isNotEmpty()
+        return formList.mapIndexed { index, listItem ->
+            val manifestFile = manifestFiles[index]
+
+            val thisFormAlreadyDownloaded = notDeletedFormIds.contains(listItem.formID)
             val isNewerFormVersionAvailable = listItem.hash.let {
                 if (it == null) {
                     false
                 } else if (thisFormAlreadyDownloaded) {
-                    val existingForm = getFormByHash(it)
+                    val existingForm = formsByHash[it]
                     if (existingForm == null || existingForm.isDeleted) {
                         true
                     } else if (manifestFile != null) {
@@ -108,18 +123,17 @@ open class ServerFormsDetailsFetcher(
         existingForm: Form,
         newMediaFiles: List<MediaFile>
     ): Boolean {
-        val localMediaFiles = FormUtils.getMediaFiles(existingForm)
+        val localMediaFileHashes = FormUtils.getMediaFiles(existingForm)
+            .mapNotNull { fileHashCache.getMd5Hash(it) }
+            .toSet()
+
         return newMediaFiles.any {
-            !isMediaFileAlreadyDownloaded(localMediaFiles, it)
+            !isMediaFileAlreadyDownloaded(localMediaFileHashes, it)
         }
     }
 
-    private fun getFormByHash(hash: String): Form? {
-        return formsRepository.getOneByMd5Hash(hash)
-    }
-
     private fun isMediaFileAlreadyDownloaded(
-        localMediaFiles: List<File>,
+        localMediaFileHashes: Set<String>,
         newMediaFile: MediaFile
     ): Boolean {
         // TODO Zip files are ignored we should find a way to take them into account too
@@ -127,8 +141,10 @@ open class ServerFormsDetailsFetcher(
             return true
         }
 
-        return localMediaFiles.any {
-            newMediaFile.hash == it.getMd5Hash()
-        }
+        return localMediaFileHashes.contains(newMediaFile.hash)
+    }
+
+    companion object {
+        private const val MANIFEST_FETCH_CONCURRENCY = 4
     }
 }
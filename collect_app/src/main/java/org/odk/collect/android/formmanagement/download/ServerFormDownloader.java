@@ -19,6 +19,7 @@ import org.odk.collect.forms.FormSource;
 import org.odk.collect.forms.FormSourceException;
 import org.odk.collect.forms.FormsRepository;
 import org.odk.collect.shared.files.FileExt;
+import org.odk.collect.shared.files.FileHashCache;
 import org.odk.collect.shared.strings.Md5;
 
 import java.io.File;
@@ -43,8 +44,19 @@ public class ServerFormDownloader implements FormDownloader {
     private final Supplier<Long> clock;
     private final EntitiesRepository entitiesRepository;
     private final EntitySource entitySource;
+    private final FileHashCache fileHashCache;
+    private final int mediaDownloadConcurrency;
 
     public ServerFormDownloader(FormSource formSource, FormsRepository formsRepository, File cacheDir, String formsDirPath, FormMetadataParser formMetadataParser, Supplier<Long> clock, EntitiesRepository entitiesRepository, EntitySource entitySource) {
+        this(formSource, formsRepository, cacheDir, formsDirPath, formMetadataParser, clock, entitiesRepository, entitySource, new FileHashCache(), ServerFormUseCases.DEFAULT_MEDIA_DOWNLOAD_CONCURRENCY);
+    }
+
+    /**
+     * @param fileHashCache            used to hash media files from previous versions of forms
+     * @param mediaDownloadConcurrency the maximum number of a form's media files that will be
+     *                                 downloaded at the same time
+     */
+    public ServerFormDownloader(FormSource formSource, FormsRepository formsRepository, File cacheDir, String formsDirPath, FormMetadataParser formMetadataParser, Supplier<Long> clock, EntitiesRepository entitiesRepository, EntitySource entitySource, FileHashCache fileHashCache, int mediaDownloadConcurrency) {
         this.formSource = formSource;
         this.cacheDir = cacheDir;
         this.formsDirPath = formsDirPath;
@@ -53,6 +65,8 @@ public class ServerFormDownloader implements FormDownloader {
         this.clock = clock;
         this.entitiesRepository = entitiesRepository;
         this.entitySource = entitySource;
+        this.fileHashCache = fileHashCache;
+        this.mediaDownloadConcurrency = mediaDownloadConcurrency;
     }
 
     @Override
@@ -102,7 +116,7 @@ public class ServerFormDownloader implements FormDownloader {
 
             // download media files if there are any
             if (fd.getManifest() != null && !fd.getManifest().getMediaFiles().isEmpty()) {
-                mediaFilesDownloadResult = ServerFormUseCases.downloadMediaFiles(fd, formSource, formsRepository, tempMediaPath, tempDir, entitiesRepository, entitySource, stateListener);
+                mediaFilesDownloadResult = ServerFormUseCases.downloadMediaFiles(fd, formSource, formsRepository, tempMediaPath, tempDir, entitiesRepository, entitySource, stateListener, fileHashCache, mediaDownloadConcurrency);
             } else {
                 mediaFilesDownloadResult = new MediaFilesDownloadResult(false, false);
             }
@@ -1,130 +1,271 @@
 package org.odk.collect.android.formmanagement.metadata
 
-import org.javarosa.xform.parse.XFormParser
-import org.kxml2.kdom.Element
+import org.javarosa.xform.parse.XFormParseException
+import org.kxml2.io.KXmlParser
+import org.xmlpull.v1.XmlPullParser
+import org.xmlpull.v1.XmlPullParserException
 import java.io.File
+import java.io.IOException
 import java.io.InputStream
 
+/**
+ * Reads [FormMetadata] from a form's XML using a pull parser rather than building a DOM. Only
+ * the head's title and model are read and secondary instances (which can be huge for forms with
+ * inline choices) are skipped without being kept in memory. The body is only read (to find
+ * repeats) if the primary instance contains a geopoint and parsing stops as soon as everything
+ * needed has been read.
+ *
+ * As with the rest of JavaRosa, elements and attributes are matched by name regardless of their
+ * namespace.
+ */
 object FormMetadataParser {
     @JvmStatic
     fun readMetadata(formFile: File): FormMetadata {
-        return readMetadata(formFile.inputStream())
+        return formFile.inputStream().use { readMetadata(it) }
     }
 
     @JvmStatic
     fun readMetadata(formFile: InputStream): FormMetadata {
-        val doc = XFormParser.getXMLDocument(formFile.reader())
-        val head = doc.getRootElement().getElement(null, "head")
-        val model = head.getElement(null, "model")
-        val body = doc.getRootElement().getElement(null, "body")
-        val title = head.getElement(null, "title").getChild(0).toString()
-
-        val modelElements = getChildren(model)
-        val mainInstance = modelElements.first { it.name == "instance" }
-        val mainInstanceRoot = getChildren(mainInstance).first()
-        val submission = modelElements.firstOrNull { it.name == "submission" }
-
-        val id = mainInstanceRoot.getAttributeValue(null, "id")
-        val version = mainInstanceRoot.getAttributeValue(null, "version")
-        val submissionUri = submission?.getAttributeValue(null, "action")
-        val base64RsaPublicKey = submission?.getAttributeValue(null, "base64RsaPublicKey")
-        val autoDelete = submission?.getAttributeValue(null, "auto-delete")
-        val autoSend = submission?.getAttributeValue(null, "auto-send")
-        val geometryXPath = getFirstGeopointXPath(model, mainInstanceRoot, body)
-        val isEntityForm = model.getAttributeValue(null, "entities-version") != null
+        val parser = KXmlParser()
+
+        try {
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true)
+            parser.setInput(formFile.reader())
+            return readMetadata(parser)
+        } catch (e: XmlPullParserException) {
+            throw XFormParseException("Unable to parse XML: ${e.message}")
+        } catch (e: IOException) {
+            throw RuntimeException("Unable to read XML", e)
+        }
+    }
+
+    private fun readMetadata(parser: XmlPullParser): FormMetadata {
+        parser.nextTag()
+
+        var head: Head? = null
+        while (parser.nextChild()) {
+            if (parser.name == "head" && head == null) {
+                head = readHead(parser)
+
+                if (head.geopointCandidates.isEmpty()) {
+                    break
+                }
+            } else if (parser.name == "body" && head != null) {
+                head.geometryXPath = getFirstGeopointXPath(head.geopointCandidates, readRepeatXPaths(parser))
+                break
+            } else {
+                parser.skipElement()
+            }
+        }
+
+        if (head == null) {
+            throw XFormParseException("Form has no head")
+        }
 
         return FormMetadata(
-            title,
-            id,
-            if (version.isNullOrBlank()) null else version,
-            submissionUri,
-            base64RsaPublicKey,
-            autoDelete,
-            autoSend,
-            geometryXPath,
-            isEntityForm
+            head.title,
+            head.id,
+            if (head.version.isNullOrBlank()) null else head.version,
+            head.submissionUri,
+            head.base64RsaPublicKey,
+            head.autoDelete,
+            head.autoSend,
+            head.geometryXPath,
+            head.isEntityForm
         )
     }
 
-    private fun getChildren(element: Element): List<Element> {
-        return 0.until(element.childCount).fold(emptyList()) { list, i ->
-            val child = element.getElement(i)
-            if (child != null) {
-                list + listOf(child)
+    private fun readHead(parser: XmlPullParser): Head {
+        val head = Head()
+
+        var readTitle = false
+        var readModel = false
+        while (parser.nextChild()) {
+            if (parser.name == "title" && !readTitle) {
+                head.title = parser.readText()
+                readTitle = true
+            } else if (parser.name == "model" && !readModel) {
+                readModel(parser, head)
+                readModel = true
             } else {
-                list
+                parser.skipElement()
             }
         }
+
+        if (!readModel) {
+            throw XFormParseException("Form has no model")
+        }
+
+        return head
+    }
+
+    private fun readModel(parser: XmlPullParser, head: Head) {
+        head.isEntityForm = parser.getAttribute("entities-version") != null
+
+        val instancePaths = mutableListOf<String>()
+        val geopointXPaths = mutableSetOf<String>()
+
+        var readMainInstance = false
+        var readSubmission = false
+        while (parser.nextChild()) {
+            when {
+                parser.name == "instance" && !readMainInstance -> {
+                    readMainInstance(parser, head, instancePaths)
+                    readMainInstance = true
+                }
+
+                parser.name == "submission" && !readSubmission -> {
+                    head.submissionUri = parser.getAttribute("action")
+                    head.base64RsaPublicKey = parser.getAttribute("base64RsaPublicKey")
+                    head.autoDelete = parser.getAttribute("auto-delete")
+                    head.autoSend = parser.getAttribute("auto-send")
+                    parser.skipElement()
+                    readSubmission = true
+                }
+
+                parser.name == "bind" && parser.getAttribute("type") == "geopoint" -> {
+                    parser.getAttribute("nodeset")?.let { geopointXPaths.add(it) }
+                    parser.skipElement()
+                }
+
+                else -> parser.skipElement()
+            }
+        }
+
+        if (!readMainInstance) {
+            throw XFormParseException("Form has no instance")
+        }
+
+        head.geopointCandidates = instancePaths.filter { geopointXPaths.contains(it) }
+    }
+
+    private fun readMainInstance(parser: XmlPullParser, head: Head, paths: MutableList<String>) {
+        if (!parser.nextChild()) {
+            throw XFormParseException("Form has an empty instance")
+        }
+
+        head.id = parser.getAttribute("id")
+        head.version = parser.getAttribute("version")
+        readInstancePaths(parser, "/${parser.name}", paths)
+
+        // Ignore anything after the root
+        parser.skipElement()
     }
 
     /**
-     * Finds the first geopoint reference in the primary instance by:
-     * 1. Retrieving all geopoint binds from the model.
-     * 2. Iterating through the elements of the primary instance root.
-     * 3. Returning the first reference found in the primary instance that matches one of
-     *    the geopoint binds and is not inside a repeat.
+     * Adds the path of every descendant of the current element to [paths] in document order.
+     */
+    private fun readInstancePaths(parser: XmlPullParser, parentPath: String, paths: MutableList<String>) {
+        while (parser.nextChild()) {
+            val path = "$parentPath/${parser.name}"
+            paths.add(path)
+            readInstancePaths(parser, path, paths)
+        }
+    }
+
+    private fun readRepeatXPaths(parser: XmlPullParser): Set<String> {
+        val repeatXPaths = mutableSetOf<String>()
+
+        val depth = parser.depth
+        while (parser.next() != XmlPullParser.END_TAG || parser.depth > depth) {
+            if (parser.eventType == XmlPullParser.END_DOCUMENT) {
+                break
+            } else if (parser.eventType == XmlPullParser.START_TAG && parser.name == "repeat") {
+                parser.getAttribute("nodeset")?.let { repeatXPaths.add(it) }
+            }
+        }
+
+        return repeatXPaths
+    }
+
+    /**
+     * Finds the first geopoint reference in the primary instance by returning the first of
+     * [candidates] (the primary instance references that match a geopoint bind, in
+     * document order) that is not inside a repeat.
      *
      * This solution is not perfect because it assumes that the references in the model
      * appear in the same order as in the body, which is not guaranteed by XForms.
      * However, in practice, this is typically the case.
-     *
      */
-    private fun getFirstGeopointXPath(model: Element, mainInstanceRoot: Element, body: Element): String? {
-        val geopointXPaths = getGeopointXPaths(model)
-        return if (geopointXPaths.isEmpty()) {
-            null
-        } else {
-            val repeatXPaths = getRepeatXPaths(body)
-            getFirstPrimaryInstanceGeopointXPath(geopointXPaths, repeatXPaths, mainInstanceRoot, null)
+    private fun getFirstGeopointXPath(candidates: List<String>, repeatXPaths: Set<String>): String? {
+        return candidates.firstOrNull { candidate ->
+            // Skip the instance root as a repeat can't be the root
+            var separator = candidate.indexOf('/', candidate.indexOf('/', 1) + 1)
+            while (separator != -1) {
+                if (repeatXPaths.contains(candidate.substring(0, separator))) {
+                    return@firstOrNull false
+                }
+
+                separator = candidate.indexOf('/', separator + 1)
+            }
+
+            true
         }
     }
 
-    private fun getGeopointXPaths(model: Element): List<String> {
-        val geopointXPaths = mutableListOf<String>()
-        for (position in 0 until model.childCount) {
-            val child = model.getElement(position) ?: continue
-            if (child.name == "bind" && child.getAttributeValue(null, "type") == "geopoint") {
-                geopointXPaths.add(child.getAttributeValue(null, "nodeset"))
+    /**
+     * Moves to the start of the current element's next child element returning `false` (and
+     * leaving the parser at the current element's end) if there isn't one. Any child that was
+     * moved to previously must have been read to its end.
+     */
+    private fun XmlPullParser.nextChild(): Boolean {
+        while (true) {
+            when (next()) {
+                XmlPullParser.START_TAG -> return true
+                XmlPullParser.END_TAG, XmlPullParser.END_DOCUMENT -> return false
             }
         }
-        return geopointXPaths
     }
 
-    private fun getRepeatXPaths(body: Element): List<String> {
-        val repeatXPaths = mutableListOf<String>()
-        for (position in 0 until body.childCount) {
-            val child = body.getElement(position) ?: continue
-            if (child.name == "repeat") {
-                repeatXPaths.add(child.getAttributeValue(null, "nodeset"))
-            } else if (child.childCount > 0) {
-                repeatXPaths.addAll(getRepeatXPaths(child))
-            }
+    /**
+     * Skips over the rest of the current element leaving the parser at its end.
+     */
+    private fun XmlPullParser.skipElement() {
+        while (nextChild()) {
+            skipElement()
         }
-        return repeatXPaths
     }
 
-    private fun getFirstPrimaryInstanceGeopointXPath(
-        geopointXPaths: List<String>,
-        repeatXPaths: List<String>,
-        parentRoot: Element,
-        parentXPath: String?
-    ): String? {
-        for (position in 0 until parentRoot.childCount) {
-            val child = parentRoot.getElement(position) ?: continue
-            val currentXPath = if (parentXPath == null) {
-                "/${parentRoot.name}/${child.name}"
-            } else {
-                "$parentXPath/${child.name}"
-            }
-            if (geopointXPaths.contains(currentXPath)) {
-                return currentXPath
-            } else if (child.childCount > 0 && !repeatXPaths.contains(currentXPath)) {
-                val nestedXPath = getFirstPrimaryInstanceGeopointXPath(geopointXPaths, repeatXPaths, child, currentXPath)
-                if (nestedXPath != null) {
-                    return nestedXPath
-                }
+    /**
+     * Reads the text at the start of the current element (up to its first child element) and
+     * then skips to its end. Returns `null` if the element doesn't start with text.
+     */
+    private fun XmlPullParser.readText(): String? {
+        val text = StringBuilder()
+        var hasText = false
+        while (next() == XmlPullParser.TEXT) {
+            text.append(this.text)
+            hasText = true
+        }
+
+        if (eventType == XmlPullParser.START_TAG) {
+            skipElement()
+            skipElement()
+        }
+
+        return if (hasText) text.toString() else null
+    }
+
+    private fun XmlPullParser.getAttribute(name: String): String? {
+        for (i in 0 until attributeCount) {
+            if (getAttributeName(i) == name) {
+                return getAttributeValue(i)
             }
         }
+
         return null
     }
+
+    private class Head {
+        var title: String? = null
+        var id: String? = null
+        var version: String? = null
+        var submissionUri: String? = null
+        var base64RsaPublicKey: String? = null
+        var autoDelete: String? = null
+        var autoSend: String? = null
+        var isEntityForm = false
+        var geopointCandidates: List<String> = emptyList()
+        var geometryXPath: String? = null
+    }
 }
@@ -138,6 +138,7 @@ import org.odk.collect.settings.importing.SettingsChangeHandler;
 import org.odk.collect.settings.keys.AppConfigurationKeys;
 import org.odk.collect.settings.keys.MetaKeys;
 import org.odk.collect.settings.keys.ProjectKeys;
+import org.odk.collect.shared.files.FileHashCache;
 import org.odk.collect.shared.strings.UUIDGenerator;
 import org.odk.collect.utilities.UserAgentProvider;
 import org.odk.collect.webpage.ExternalWebPageHelper;
@@ -333,10 +334,10 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public ServerFormsDetailsFetcher providesServerFormDetailsFetcher(FormsRepositoryProvider formsRepositoryProvider, OpenRosaClientProvider formSourceProvider, ProjectsDataService projectsDataService) {
+    public ServerFormsDetailsFetcher providesServerFormDetailsFetcher(FormsRepositoryProvider formsRepositoryProvider, OpenRosaClientProvider formSourceProvider, ProjectsDataService projectsDataService, FileHashCache fileHashCache) {
         Project.Saved currentProject = projectsDataService.requireCurrentProject();
         FormsRepository formsRepository = formsRepositoryProvider.create(currentProject.getUuid());
-        return new ServerFormsDetailsFetcher(formsRepository, formSourceProvider.create(currentProject.getUuid()));
+        return new ServerFormsDetailsFetcher(formsRepository, formSourceProvider.create(currentProject.getUuid()), fileHashCache);
     }
 
     @Provides
@@ -361,8 +362,8 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public EntitiesRepositoryProvider provideEntitiesRepositoryProvider(Context context, StoragePathProvider storagePathProvider) {
-        return new EntitiesRepositoryProvider(context, storagePathProvider);
+    public EntitiesRepositoryProvider provideEntitiesRepositoryProvider(Context context, StoragePathProvider storagePathProvider, Scheduler scheduler) {
+        return new EntitiesRepositoryProvider(context, storagePathProvider, scheduler);
     }
 
     @Provides
@@ -421,7 +422,7 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public InstancesDataService providesInstancesDataService(Application application, ProjectsDataService projectsDataService, InstanceSubmitScheduler instanceSubmitScheduler, ProjectDependencyModuleFactory projectsDependencyProviderFactory, Notifier notifier, PropertyManager propertyManager, OpenRosaHttpInterface httpInterface) {
+    public InstancesDataService providesInstancesDataService(Application application, ProjectsDataService projectsDataService, InstanceSubmitScheduler instanceSubmitScheduler, ProjectDependencyModuleFactory projectsDependencyProviderFactory, Notifier notifier, PropertyManager propertyManager, OpenRosaHttpInterface httpInterface, FileHashCache fileHashCache) {
         Function0<Unit> onUpdate = () -> {
             application.getContentResolver().notifyChange(
                     InstancesContract.getUri(projectsDataService.requireCurrentProject().getUuid()),
@@ -431,7 +432,7 @@ public class AppDependencyModule {
             return null;
         };
 
-        return new InstancesDataService(getState(application), instanceSubmitScheduler, projectsDependencyProviderFactory, notifier, propertyManager, httpInterface, onUpdate);
+        return new InstancesDataService(getState(application), instanceSubmitScheduler, projectsDependencyProviderFactory, notifier, propertyManager, httpInterface, fileHashCache, onUpdate);
     }
 
     @Provides
@@ -445,8 +446,8 @@ public class AppDependencyModule {
     }
 
     @Provides
-    public FormsRepositoryProvider providesFormsRepositoryProvider(Application application) {
-        return new FormsRepositoryProvider(application);
+    public FormsRepositoryProvider providesFormsRepositoryProvider(Application application, FileHashCache fileHashCache) {
+        return new FormsRepositoryProvider(application, fileHashCache);
     }
 
     @Provides
@@ -485,13 +486,20 @@ public class AppDependencyModule {
     }
 
     @Provides
+    @Singleton
     public OpenRosaClientProvider providesFormSourceProvider(SettingsProvider settingsProvider, OpenRosaHttpInterface openRosaHttpInterface) {
         return new OpenRosaClientProvider(settingsProvider::getUnprotectedSettings, openRosaHttpInterface);
     }
 
     @Provides
-    public FormsDataService providesFormsUpdater(Application application, Notifier notifier, ProjectDependencyModuleFactory projectDependencyModuleFactory) {
-        return new FormsDataService(getState(application), notifier, projectDependencyModuleFactory, System::currentTimeMillis);
+    public FormsDataService providesFormsUpdater(Application application, Notifier notifier, ProjectDependencyModuleFactory projectDependencyModuleFactory, FormUpdateScheduler formUpdateScheduler, FileHashCache fileHashCache) {
+        return new FormsDataService(getState(application), notifier, projectDependencyModuleFactory, System::currentTimeMillis, formUpdateScheduler, fileHashCache);
+    }
+
+    @Provides
+    @Singleton
+    public FileHashCache providesFileHashCache(Application application) {
+        return new FileHashCache(new File(application.getCacheDir(), "file_hashes"));
     }
 
     @Provides
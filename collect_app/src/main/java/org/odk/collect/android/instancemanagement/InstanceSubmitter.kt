@@ -17,8 +17,10 @@ import org.odk.collect.metadata.PropertyManager
 import org.odk.collect.metadata.PropertyManager.Companion.PROPMGR_DEVICE_ID
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface
 import org.odk.collect.settings.keys.ProjectKeys
+import org.odk.collect.shared.collections.CollectionExtensions.mapConcurrently
 import org.odk.collect.shared.settings.Settings
 import timber.log.Timber
+import java.io.File
 
 class InstanceSubmitter(
     private val formsRepository: FormsRepository,
@@ -28,26 +30,43 @@ class InstanceSubmitter(
     private val instancesRepository: InstancesRepository
 ) {
 
+    /**
+     * Submits instances in the order they were last changed. Up to
+     * [ProjectKeys.KEY_SUBMISSION_CONCURRENCY] instances are uploaded at once, but the first is
+     * always uploaded on its own so that the server's submission URL (including any redirect)
+     * is resolved once and then reused by every other upload.
+     */
     fun submitInstances(toUpload: List<Instance>): Map<Instance, FormUploadException?> {
-        val result = mutableMapOf<Instance, FormUploadException?>()
         val deviceId = propertyManager.getSingularProperty(PROPMGR_DEVICE_ID)
+        val concurrency = generalSettings.getInt(ProjectKeys.KEY_SUBMISSION_CONCURRENCY)
+            .coerceIn(1, MAX_CONCURRENCY)
 
         val uploader = setUpODKUploader()
 
-        for (instance in toUpload.sortedBy { it.lastStatusChangeDate }) {
-            try {
-                val destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, null, null)
-                uploader.uploadOneSubmission(instance, destinationUrl)
-                result[instance] = null
-
-                deleteInstance(instance)
-                logUploadedForm(instance)
-            } catch (e: FormUploadException) {
-                Timber.d(e)
-                result[instance] = e
-            }
+        val startTime = System.currentTimeMillis()
+        val sorted = toUpload.sortedBy { it.lastStatusChangeDate }
+        val submissions = sorted.take(1).map { submitInstance(uploader, it, deviceId) } +
+            sorted.drop(1).mapConcurrently(concurrency) { submitInstance(uploader, it, deviceId) }
+
+        logThroughput(submissions, concurrency, System.currentTimeMillis() - startTime)
+        return submissions.associateTo(LinkedHashMap()) { it.instance to it.exception }
+    }
+
+    private fun submitInstance(uploader: InstanceUploader, instance: Instance, deviceId: String?): Submission {
+        // Measured before uploading as the instance's files might be deleted afterwards
+        val size = getSubmissionSize(instance)
+
+        return try {
+            val destinationUrl = uploader.getUrlToSubmitTo(instance, deviceId, null, null)
+            uploader.uploadOneSubmission(instance, destinationUrl)
+
+            deleteInstance(instance)
+            logUploadedForm(instance)
+            Submission(instance, null, size)
+        } catch (e: FormUploadException) {
+            Timber.d(e)
+            Submission(instance, e, 0)
         }
-        return result
     }
 
     private fun setUpODKUploader(): InstanceUploader {
@@ -78,4 +97,37 @@ class InstanceSubmitter(
 
         Analytics.log(AnalyticsEvents.SUBMISSION, "HTTP auto", value)
     }
+
+    private fun getSubmissionSize(instance: Instance): Long {
+        val instanceDir = File(instance.instanceFilePath).parentFile
+        return instanceDir?.listFiles()?.sumOf { it.length() } ?: 0
+    }
+
+    private fun logThroughput(submissions: List<Submission>, concurrency: Int, duration: Long) {
+        if (submissions.isEmpty()) {
+            return
+        }
+
+        val submitted = submissions.count { it.exception == null }
+        val bytes = submissions.sumOf { it.size }
+        Timber.i(
+            "Submitted %d of %d instances (%d KB) in %d ms with %d concurrent uploads: %d KB/s",
+            submitted,
+            submissions.size,
+            bytes / 1024,
+            duration,
+            concurrency,
+            if (duration > 0) bytes * 1000 / 1024 / duration else 0
+        )
+    }
+
+    private data class Submission(
+        val instance: Instance,
+        val exception: FormUploadException?,
+        val size: Long
+    )
+
+    companion object {
+        const val MAX_CONCURRENCY = 8
+    }
 }
@@ -14,15 +14,19 @@ import org.odk.collect.android.notifications.Notifier
 import org.odk.collect.android.projects.ProjectDependencyModule
 import org.odk.collect.android.state.DataKeys
 import org.odk.collect.android.utilities.ExternalizableFormDefCache
+import org.odk.collect.android.utilities.FormUtils
 import org.odk.collect.android.utilities.FormsUploadResultInterpreter
 import org.odk.collect.androidshared.data.AppState
 import org.odk.collect.androidshared.data.DataService
 import org.odk.collect.forms.Form
 import org.odk.collect.forms.instances.Instance
+import org.odk.collect.forms.instances.InstancesRepository
 import org.odk.collect.metadata.PropertyManager
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface
 import org.odk.collect.projects.ProjectDependencyFactory
+import org.odk.collect.shared.files.FileHashCache
 import java.io.File
+import java.util.concurrent.ConcurrentHashMap
 
 class InstancesDataService(
     appState: AppState,
@@ -31,13 +35,20 @@ class InstancesDataService(
     private val notifier: Notifier,
     private val propertyManager: PropertyManager,
     private val httpInterface: OpenRosaHttpInterface,
+    private val fileHashCache: FileHashCache,
     onUpdate: () -> Unit
 ) : DataService(appState, onUpdate) {
 
+    private val statusCountsLoader = InstancesLoader { it.countsByStatus }
+    private val instancesLoader = InstancesLoader { it.all }
+
+    private val statusCounts by qualifiedData(DataKeys.INSTANCES_STATUS_COUNTS, emptyMap<String, Int>()) { projectId ->
+        statusCountsLoader.load(projectId)
+    }
+
     private val editableCount by qualifiedData(DataKeys.INSTANCES_EDITABLE_COUNT, 0) { projectId ->
-        val projectDependencyModule = projectDependencyModuleFactory.create(projectId)
-        val instancesRepository = projectDependencyModule.instancesRepository
-        instancesRepository.getCountByStatus(
+        getCount(
+            projectId,
             Instance.STATUS_INCOMPLETE,
             Instance.STATUS_INVALID,
             Instance.STATUS_VALID
@@ -45,27 +56,23 @@ class InstancesDataService(
     }
 
     private val sendableCount by qualifiedData(DataKeys.INSTANCES_SENDABLE_COUNT, 0) { projectId ->
-        val projectDependencyModule = projectDependencyModuleFactory.create(projectId)
-        val instancesRepository = projectDependencyModule.instancesRepository
-        instancesRepository.getCountByStatus(
+        getCount(
+            projectId,
             Instance.STATUS_COMPLETE,
             Instance.STATUS_SUBMISSION_FAILED
         )
     }
 
     private val sentCount by qualifiedData(DataKeys.INSTANCES_SENT_COUNT, 0) { projectId ->
-        val projectDependencyModule = projectDependencyModuleFactory.create(projectId)
-        val instancesRepository = projectDependencyModule.instancesRepository
-        instancesRepository.getCountByStatus(
+        getCount(
+            projectId,
             Instance.STATUS_SUBMITTED,
             Instance.STATUS_SUBMISSION_FAILED
         )
     }
 
     private val instances by qualifiedData(DataKeys.INSTANCES, emptyList()) { projectId ->
-        val projectDependencyModule = projectDependencyModuleFactory.create(projectId)
-        val instancesRepository = projectDependencyModule.instancesRepository
-        instancesRepository.all
+        instancesLoader.load(projectId)
     }
 
     fun getEditableCount(projectId: String): StateFlow<Int> = editableCount.flow(projectId)
@@ -84,6 +91,7 @@ class InstancesDataService(
         val entitiesRepository = projectDependencyModule.entitiesRepository
 
         val projectRootDir = File(projectDependencyModule.rootDir)
+        val formDefCache = ExternalizableFormDefCache(fileHashCache)
 
         val instances = instancesRepository.getAllByStatus(
             Instance.STATUS_INCOMPLETE,
@@ -92,61 +100,69 @@ class InstancesDataService(
         )
 
         val result = instances.fold(FinalizeAllResult(0, 0, false)) { result, instance ->
-            val formDefAndForm = FormEntryUseCases.loadFormDef(
-                instance,
-                formsRepository,
-                projectRootDir,
-                ExternalizableFormDefCache()
-            )
-
-            if (formDefAndForm == null) {
-                result.copy(failureCount = result.failureCount + 1)
-            } else {
-                val (formDef, form) = formDefAndForm
-
-                val formMediaDir = File(form.formMediaPath)
-                val formEntryController =
-                    CollectFormEntryControllerFactory(
-                        entitiesRepository,
-                        projectDependencyModule.generalSettings
-                    ).create(formDef, formMediaDir)
-                val formController =
-                    FormEntryUseCases.loadDraft(form, instance, formEntryController)
-                if (formController == null) {
+            /**
+             * Loading the form sets the global reference manager up for it so make sure it's
+             * released again, otherwise forms would never be warmed up in the background.
+             */
+            try {
+                val formDefAndForm = FormEntryUseCases.loadFormDef(
+                    instance,
+                    formsRepository,
+                    projectRootDir,
+                    formDefCache
+                )
+
+                if (formDefAndForm == null) {
                     result.copy(failureCount = result.failureCount + 1)
                 } else {
-                    val savePoint = savepointsRepository.get(form.dbId, instance.dbId)
-                    val needsEncrypted = form.basE64RSAPublicKey != null
-                    val newResult = if (savePoint != null) {
-                        Analytics.log(AnalyticsEvents.BULK_FINALIZE_SAVE_POINT)
-                        result.copy(
-                            failureCount = result.failureCount + 1,
-                            unsupportedInstances = true
-                        )
-                    } else if (needsEncrypted) {
-                        Analytics.log(AnalyticsEvents.BULK_FINALIZE_ENCRYPTED_FORM)
-                        result.copy(
-                            failureCount = result.failureCount + 1,
-                            unsupportedInstances = true
-                        )
+                    val (formDef, form) = formDefAndForm
+
+                    val formMediaDir = File(form.formMediaPath)
+                    val formEntryController =
+                        CollectFormEntryControllerFactory(
+                            entitiesRepository,
+                            projectDependencyModule.generalSettings
+                        ).create(formDef, formMediaDir)
+                    val formController =
+                        FormEntryUseCases.loadDraft(form, instance, formEntryController)
+                    if (formController == null) {
+                        result.copy(failureCount = result.failureCount + 1)
                     } else {
-                        val finalizedInstance = FormEntryUseCases.finalizeDraft(
-                            formController,
-                            instancesRepository,
-                            entitiesRepository
-                        )
-
-                        if (finalizedInstance == null) {
-                            result.copy(failureCount = result.failureCount + 1)
+                        val savePoint = savepointsRepository.get(form.dbId, instance.dbId)
+                        val needsEncrypted = form.basE64RSAPublicKey != null
+                        val newResult = if (savePoint != null) {
+                            Analytics.log(AnalyticsEvents.BULK_FINALIZE_SAVE_POINT)
+                            result.copy(
+                                failureCount = result.failureCount + 1,
+                                unsupportedInstances = true
+                            )
+                        } else if (needsEncrypted) {
+                            Analytics.log(AnalyticsEvents.BULK_FINALIZE_ENCRYPTED_FORM)
+                            result.copy(
+                                failureCount = result.failureCount + 1,
+                                unsupportedInstances = true
+                            )
                         } else {
-                            instanceFinalized(projectId, form)
-                            result
+                            val finalizedInstance = FormEntryUseCases.finalizeDraft(
+                                formController,
+                                instancesRepository,
+                                entitiesRepository
+                            )
+
+                            if (finalizedInstance == null) {
+                                result.copy(failureCount = result.failureCount + 1)
+                            } else {
+                                instanceFinalized(projectId, form)
+                                result
+                            }
                         }
-                    }
 
-                    Collect.getInstance().externalDataManager?.close()
-                    newResult
+                        Collect.getInstance().externalDataManager?.close()
+                        newResult
+                    }
                 }
+            } finally {
+                FormUtils.releaseReferenceManager()
             }
         }
 
@@ -252,6 +268,37 @@ class InstancesDataService(
             projectDependencyModule.formsRepository
         )
     }
+
+    /**
+     * Counts are taken from [statusCounts] (which is always updated first) so that all of them
+     * come from one grouped query.
+     */
+    private fun getCount(projectId: String, vararg status: String): Int {
+        val counts = statusCounts.flow(projectId).value
+        return status.sumOf { counts[it] ?: 0 }
+    }
+
+    /**
+     * Only reloads data from a project's [InstancesRepository] if its instances have changed
+     * since they were last loaded so that updates triggered by other changes (or when nothing
+     * changed at all) don't need to query the database again.
+     */
+    private inner class InstancesLoader<T>(private val loader: (InstancesRepository) -> T) {
+
+        private val loaded = ConcurrentHashMap<String, Pair<Long, T>>()
+
+        fun load(projectId: String): T {
+            val instancesRepository = projectDependencyModuleFactory.create(projectId).instancesRepository
+
+            val changeVersion = instancesRepository.changeVersion
+            val previous = loaded[projectId]
+            return if (previous != null && previous.first == changeVersion) {
+                previous.second
+            } else {
+                loader(instancesRepository).also { loaded[projectId] = Pair(changeVersion, it) }
+            }
+        }
+    }
 }
 
 data class FinalizeAllResult(
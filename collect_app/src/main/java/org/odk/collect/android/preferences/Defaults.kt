@@ -3,6 +3,7 @@ package org.odk.collect.android.preferences
 import com.google.android.gms.maps.GoogleMap
 import org.odk.collect.android.BuildConfig
 import org.odk.collect.android.application.Collect
+import org.odk.collect.android.formmanagement.ServerFormUseCases
 import org.odk.collect.android.widgets.utilities.QuestionFontSizeUtils
 import org.odk.collect.settings.keys.ProjectKeys
 import org.odk.collect.settings.keys.ProtectedProjectKeys
@@ -21,6 +22,8 @@ object Defaults {
             hashMap[ProjectKeys.KEY_AUTOSEND] = "off"
             hashMap[ProjectKeys.KEY_GUIDANCE_HINT] = "no"
             hashMap[ProjectKeys.KEY_DELETE_AFTER_SEND] = false
+            hashMap[ProjectKeys.KEY_SUBMISSION_CONCURRENCY] = 1
+            hashMap[ProjectKeys.KEY_MEDIA_DOWNLOAD_CONCURRENCY] = ServerFormUseCases.DEFAULT_MEDIA_DOWNLOAD_CONCURRENCY
             hashMap[ProjectKeys.KEY_CONSTRAINT_BEHAVIOR] = ProjectKeys.CONSTRAINT_BEHAVIOR_ON_SWIPE
             hashMap[ProjectKeys.KEY_HIGH_RESOLUTION] = true
             hashMap[ProjectKeys.KEY_IMAGE_SIZE] = "original_image_size"
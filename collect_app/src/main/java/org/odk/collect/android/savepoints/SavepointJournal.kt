@@ -0,0 +1,186 @@
+package org.odk.collect.android.savepoints
+
+import org.javarosa.core.model.instance.TreeElement
+import org.javarosa.core.model.instance.TreeReference
+import org.javarosa.xform.util.XFormAnswerDataSerializer
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+import org.odk.collect.shared.files.FileExt.saveToFile
+import timber.log.Timber
+import java.io.File
+import java.io.FileOutputStream
+import java.io.InputStream
+import kotlin.math.max
+
+/**
+ * Keeps a savepoint up to date by appending the values that have changed since the last
+ * savepoint to a journal next to it rather than rewriting the whole instance every time. The
+ * savepoint file itself is a full snapshot of the instance that is only rewritten when the
+ * instance's structure changes (repeats are added or removed, or relevance changes) or when the
+ * journal grows to more than half its size.
+ *
+ * The journal starts with a header identifying the snapshot it applies to (so that a journal
+ * left behind by an older snapshot is ignored) followed by a line for each change: a JSON array
+ * of the changed node's path (as used by [InstanceImporter][org.odk.collect.android.formentry.InstanceImporter])
+ * and its serialized value.
+ */
+class SavepointJournal(val savepointFile: File) {
+
+    private val journalFile = getJournalFile(savepointFile)
+
+    /**
+     * The state of every node when the savepoint was last written or `null` if it needs to be
+     * written as a snapshot next time
+     */
+    private var nodes: Map<String, Node>? = null
+    private var snapshotHeader: String? = null
+
+    @Synchronized
+    fun write(root: TreeElement, snapshot: () -> InputStream) {
+        val previous = nodes
+        val current = readNodes(root)
+
+        if (previous == null || current == null || !canAppend(previous, current)) {
+            nodes = null
+            writeSnapshot(snapshot())
+        } else {
+            val changes = current.filter { (path, node) -> previous[path]!!.value != node.value }
+            if (changes.isNotEmpty()) {
+                FileOutputStream(journalFile, true).bufferedWriter().use { writer ->
+                    for ((path, node) in changes) {
+                        writer.write(JSONArray().put(path).put(node.value ?: JSONObject.NULL).toString())
+                        writer.write("\n")
+                    }
+                }
+            }
+        }
+
+        nodes = current
+    }
+
+    private fun canAppend(previous: Map<String, Node>, current: Map<String, Node>): Boolean {
+        val header = snapshotHeader
+        return header != null &&
+            header == getHeader(savepointFile) &&
+            journalFile.length() - (header.length + 1) <= savepointFile.length() / 2 &&
+            previous.keys == current.keys &&
+            current.all { (path, node) -> previous[path]!!.relevant == node.relevant }
+    }
+
+    private fun writeSnapshot(snapshot: InputStream) {
+        savepointFile.saveToFile(snapshot)
+
+        val header = getHeader(savepointFile)
+        journalFile.writeText(header + "\n")
+        snapshotHeader = header
+    }
+
+    /**
+     * Returns `null` if any of the values can't be written to the journal.
+     */
+    private fun readNodes(root: TreeElement): Map<String, Node>? {
+        val nodes = mutableMapOf<String, Node>()
+        return if (readNodes(root, "/${root.name}", XFormAnswerDataSerializer(), nodes)) {
+            nodes
+        } else {
+            null
+        }
+    }
+
+    private fun readNodes(
+        element: TreeElement,
+        path: String,
+        serializer: XFormAnswerDataSerializer,
+        nodes: MutableMap<String, Node>
+    ): Boolean {
+        for (i in 0 until element.attributeCount) {
+            nodes["$path/@${element.getAttributeName(i)}"] = Node(true, element.getAttributeValue(i) ?: "")
+        }
+
+        if (element.isLeaf) {
+            val value = element.value
+            val serializedValue = if (value != null) {
+                serializer.serializeAnswerData(value, element.dataType) as? String ?: return false
+            } else {
+                null
+            }
+
+            nodes[path] = Node(element.isRelevant, serializedValue)
+        } else {
+            nodes[path] = Node(element.isRelevant, null)
+
+            for (i in 0 until element.numChildren) {
+                val child = element.getChildAt(i)
+                if (child.mult == TreeReference.INDEX_TEMPLATE) {
+                    continue
+                }
+
+                val childPath = getChildPath(path, child.name, if (child.isRepeatable) child.mult else null)
+                if (!readNodes(child, childPath, serializer, nodes)) {
+                    return false
+                }
+            }
+        }
+
+        return true
+    }
+
+    private data class Node(val relevant: Boolean, val value: String?)
+
+    companion object {
+        @JvmStatic
+        fun getJournalFile(savepointFile: File): File {
+            return File(savepointFile.parentFile, savepointFile.name + ".journal")
+        }
+
+        @JvmStatic
+        fun getChildPath(parentPath: String, name: String, mult: Int?): String {
+            return if (mult != null) "$parentPath/$name[$mult]" else "$parentPath/$name"
+        }
+
+        /**
+         * Returns the time the savepoint (including its journal) was last written.
+         */
+        @JvmStatic
+        fun getLastModified(savepointFile: File): Long {
+            return max(savepointFile.lastModified(), getJournalFile(savepointFile).lastModified())
+        }
+
+        /**
+         * Returns the latest value for every path in the savepoint's journal. A journal that
+         * doesn't belong to the current snapshot is ignored as is anything after a partially
+         * written line.
+         */
+        @JvmStatic
+        fun readChanges(savepointFile: File): Map<String, String?> {
+            val journalFile = getJournalFile(savepointFile)
+            if (!journalFile.exists()) {
+                return emptyMap()
+            }
+
+            val changes = mutableMapOf<String, String?>()
+            journalFile.bufferedReader().use { reader ->
+                if (reader.readLine() != getHeader(savepointFile)) {
+                    return emptyMap()
+                }
+
+                for (line in reader.lineSequence()) {
+                    try {
+                        val change = JSONArray(line)
+                        changes[change.getString(0)] = if (change.isNull(1)) null else change.getString(1)
+                    } catch (e: JSONException) {
+                        Timber.w(e)
+                        break
+                    }
+                }
+            }
+
+            return changes
+        }
+
+        private fun getHeader(savepointFile: File): String {
+            return "savepoint ${savepointFile.length()} ${savepointFile.lastModified()}"
+        }
+    }
+}
@@ -5,7 +5,6 @@ import org.odk.collect.async.Scheduler
 import org.odk.collect.async.SchedulerAsyncTaskMimic
 import org.odk.collect.forms.savepoints.Savepoint
 import org.odk.collect.forms.savepoints.SavepointsRepository
-import org.odk.collect.shared.files.FileExt.saveToFile
 import timber.log.Timber
 import java.io.File
 
@@ -32,7 +31,9 @@ class SavepointTask(
             val savepoint = Savepoint(formDbId, instanceDbId, savepointFile.absolutePath, formController.getInstanceFile()!!.absolutePath)
 
             if (priority == lastPriorityUsed) {
-                savepointFile.saveToFile(formController.getFilledInFormXml().payloadStream)
+                getJournal(savepointFile).write(formController.getFormDef()!!.mainInstance.root) {
+                    formController.getFilledInFormXml().payloadStream
+                }
                 savepointsRepository.save(savepoint)
             }
 
@@ -56,6 +57,18 @@ class SavepointTask(
 
     companion object {
         private var lastPriorityUsed: Int = 0
+
+        /**
+         * The journal for the savepoint last written. This is kept between tasks so that only
+         * what has changed since then needs to be written.
+         */
+        private var journal: SavepointJournal? = null
+
+        @Synchronized
+        private fun getJournal(savepointFile: File): SavepointJournal {
+            return journal?.takeIf { it.savepointFile == savepointFile }
+                ?: SavepointJournal(savepointFile).also { journal = it }
+        }
     }
 }
 
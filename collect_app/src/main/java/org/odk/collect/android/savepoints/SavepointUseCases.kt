@@ -37,7 +37,7 @@ object SavepointUseCases {
             val savepoint = savepointsRepository.get(form.dbId, instance.dbId)
             if (savepoint != null &&
                 File(savepoint.savepointFilePath).exists() &&
-                File(savepoint.savepointFilePath).lastModified() > instance.lastStatusChangeDate
+                SavepointJournal.getLastModified(File(savepoint.savepointFilePath)) > instance.lastStatusChangeDate
             ) {
                 savepoint
             } else {
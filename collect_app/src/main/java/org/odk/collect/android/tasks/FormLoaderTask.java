@@ -14,43 +14,38 @@
 
 package org.odk.collect.android.tasks;
 
+import static org.odk.collect.android.utilities.FormUtils.releaseReferenceManager;
 import static org.odk.collect.android.utilities.FormUtils.setupReferenceManagerForForm;
 import static org.odk.collect.strings.localization.LocalizedApplicationKt.getLocalizedString;
 
 import android.content.Intent;
-import android.database.Cursor;
-import android.database.SQLException;
 import android.net.Uri;
 
 import androidx.annotation.NonNull;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
 
 import org.javarosa.core.model.FormDef;
 import org.javarosa.core.model.FormIndex;
 import org.javarosa.core.model.FormInitializationMode;
-import org.javarosa.core.model.instance.TreeElement;
-import org.javarosa.core.model.instance.TreeReference;
-import org.javarosa.core.model.instance.utils.DefaultAnswerResolver;
 import org.javarosa.core.reference.ReferenceManager;
 import org.javarosa.form.api.FormEntryController;
 import org.javarosa.xform.parse.XFormParser;
 import org.javarosa.xform.util.XFormUtils;
 import org.javarosa.xpath.XPathTypeMismatchException;
 import org.odk.collect.android.application.Collect;
-import org.odk.collect.android.dynamicpreload.ExternalAnswerResolver;
 import org.odk.collect.android.dynamicpreload.ExternalDataManager;
 import org.odk.collect.android.dynamicpreload.ExternalDataUseCases;
 import org.odk.collect.android.external.FormsContract;
 import org.odk.collect.android.external.InstancesContract;
-import org.odk.collect.android.fastexternalitemset.ItemsetDbAdapter;
+import org.odk.collect.android.fastexternalitemset.ItemsetsImporter;
+import org.odk.collect.android.formentry.FormDefCache;
 import org.odk.collect.android.formentry.FormEntryUseCases;
+import org.odk.collect.android.formentry.InstanceImporter;
 import org.odk.collect.android.javarosawrapper.FormController;
 import org.odk.collect.android.javarosawrapper.JavaRosaFormController;
 import org.odk.collect.android.listeners.FormLoaderListener;
+import org.odk.collect.android.savepoints.SavepointJournal;
 import org.odk.collect.android.utilities.ContentUriHelper;
-import org.odk.collect.android.utilities.ExternalizableFormDefCache;
 import org.odk.collect.android.utilities.FileUtils;
 import org.odk.collect.android.utilities.FormsRepositoryProvider;
 import org.odk.collect.android.utilities.InstancesRepositoryProvider;
@@ -62,15 +57,15 @@ import org.odk.collect.forms.Form;
 import org.odk.collect.forms.instances.Instance;
 import org.odk.collect.forms.savepoints.Savepoint;
 import org.odk.collect.forms.savepoints.SavepointsRepository;
-import org.odk.collect.shared.strings.Md5;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -81,8 +76,6 @@ import timber.log.Timber;
  * @author Yaw Anokwa (yanokwa@gmail.com)
  */
 public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLoaderTask.FECWrapper> {
-    private static final String ITEMSETS_CSV = "itemsets.csv";
-
     private FormLoaderListener stateListener;
     private String errorMsg;
     private String warningMsg;
@@ -102,6 +95,7 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
     private Instance instance;
     private Savepoint savepoint;
     private final SavepointsRepository savepointsRepository;
+    private final FormDefCache formDefCache;
     private final boolean isFinalizedFormEdit;
 
     @Override
@@ -147,7 +141,8 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
 
     public FormLoaderTask(Uri uri, String uriMimeType, String xpath, String waitingXPath,
                           FormEntryControllerFactory formEntryControllerFactory, Scheduler scheduler,
-                          SavepointsRepository savepointsRepository, boolean isFinalizedFormEdit) {
+                          SavepointsRepository savepointsRepository, FormDefCache formDefCache,
+                          boolean isFinalizedFormEdit) {
         super(scheduler);
         this.uri = uri;
         this.uriMimeType = uriMimeType;
@@ -155,6 +150,7 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
         this.waitingXPath = waitingXPath;
         this.formEntryControllerFactory = formEntryControllerFactory;
         this.savepointsRepository = savepointsRepository;
+        this.formDefCache = formDefCache;
         this.isFinalizedFormEdit = isFinalizedFormEdit;
     }
 
@@ -198,6 +194,20 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
         unzipMediaFiles(formMediaDir);
         setupReferenceManagerForForm(ReferenceManager.instance(), formMediaDir);
 
+        FECWrapper wrapper = null;
+        try {
+            wrapper = loadForm(formXml, formMediaDir);
+        } finally {
+            // The form will never be opened so nothing else is going to release the reference manager
+            if (wrapper == null) {
+                releaseReferenceManager();
+            }
+        }
+
+        return wrapper;
+    }
+
+    private FECWrapper loadForm(File formXml, File formMediaDir) {
         logFormDetails(formXml, formMediaDir);
 
         FormDef formDef = null;
@@ -262,7 +272,10 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
             }
         }
 
-        processItemSets(formMediaDir);
+        String itemsetsWarning = ItemsetsImporter.importItemsets(formMediaDir);
+        if (itemsetsWarning != null) {
+            warningMsg = itemsetsWarning;
+        }
 
         final FormController fc = new JavaRosaFormController(formMediaDir, fec, instancePath == null ? null
                 : new File(instancePath));
@@ -339,7 +352,7 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
         publishProgress(
                 getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.survey_loading_reading_form_message));
 
-        final FormDef formDefFromCache = new ExternalizableFormDefCache().readCache(formXml);
+        final FormDef formDefFromCache = formDefCache.readCache(formXml);
         if (formDefFromCache != null) {
             return formDefFromCache;
         }
@@ -357,7 +370,7 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
             formDef = formDefFromXml;
 
             try {
-                new ExternalizableFormDefCache().writeCache(formDef, formXml.getPath());
+                formDefCache.writeCache(formDef, formXml.getPath());
             } catch (IOException e) {
                 Timber.e(e);
             }
@@ -368,45 +381,6 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
         return null;
     }
 
-    private void processItemSets(File formMediaDir) {
-        // for itemsets.csv, we only check to see if the itemset file has been
-        // updated
-        final File csv = new File(formMediaDir.getAbsolutePath() + "/" + ITEMSETS_CSV);
-        String csvmd5;
-        if (csv.exists()) {
-            csvmd5 = Md5.getMd5Hash(csv);
-            boolean readFile = false;
-            final ItemsetDbAdapter ida = new ItemsetDbAdapter();
-            ida.open();
-            // get the database entry (if exists) for this itemsets.csv, based
-            // on the path
-            final Cursor c = ida.getItemsets(csv.getAbsolutePath());
-            if (c != null) {
-                if (c.getCount() == 1) {
-                    c.moveToFirst(); // should be only one, ever, if any
-                    final String oldmd5 = c.getString(c.getColumnIndex("hash"));
-                    if (oldmd5.equals(csvmd5)) {
-                        // they're equal, do nothing
-                    } else {
-                        // the csv has been updated, delete the old entries
-                        ida.dropTable(ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath()),
-                                csv.getAbsolutePath());
-                        // and read the new
-                        readFile = true;
-                    }
-                } else {
-                    // new csv, add it
-                    readFile = true;
-                }
-                c.close();
-            }
-            ida.close();
-            if (readFile) {
-                readCSV(csv, csvmd5, ItemsetDbAdapter.getMd5FromString(csv.getAbsolutePath()));
-            }
-        }
-    }
-
     private boolean initializeForm(FormDef formDef, FormEntryController fec) throws IOException {
         boolean usedSavepoint = false;
 
@@ -425,7 +399,7 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
                 try {
                     Timber.i("Importing data");
                     publishProgress(getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.survey_loading_reading_data_message));
-                    importData(instanceXml, fec);
+                    importData(instanceXml, fec, usedSavepoint ? SavepointJournal.readChanges(instanceXml) : Collections.emptyMap());
                     formDef.initialize(isFinalizedFormEdit ? FormInitializationMode.FINALIZED_FORM_EDIT : FormInitializationMode.DRAFT_FORM_EDIT);
                 } catch (IOException | RuntimeException e) {
                     // Skip a savepoint file that is corrupted or 0-sized
@@ -461,51 +435,15 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
         }
     }
 
-    // Copied from XFormParser.loadXmlInstance in order to set ExternalAnswerResolver for search()
-    public static void importData(File instanceFile, FormEntryController fec) throws IOException, RuntimeException {
-        // convert files into a byte array
-        byte[] fileBytes = org.apache.commons.io.FileUtils.readFileToByteArray(instanceFile);
-
-        // get the root of the saved and template instances
-        TreeElement savedRoot = XFormParser.restoreDataModel(fileBytes, null).getRoot();
-        TreeElement templateRoot = fec.getModel().getForm().getInstance().getRoot().deepCopy(true);
-
-        // add deprecatedID to the templateRoot meta section if the savedRoot contains it
-        TreeElement metaSection = savedRoot.getFirstChild("meta");
-        if (metaSection != null) {
-            TreeElement deprecatedId = metaSection.getFirstChild("deprecatedID");
-            if (deprecatedId != null) {
-                metaSection = templateRoot.getFirstChild("meta");
-                if (metaSection != null) {
-                    metaSection.addChild(new TreeElement("deprecatedID"));
-                }
-            }
-        }
-
-        // weak check for matching forms
-        if (!savedRoot.getName().equals(templateRoot.getName()) || savedRoot.getMult() != 0) {
+    /**
+     * @param changes values to replay on top of the instance file (see {@link SavepointJournal})
+     */
+    public static void importData(File instanceFile, FormEntryController fec, Map<String, String> changes) throws IOException, RuntimeException {
+        if (!InstanceImporter.importInstance(instanceFile, fec.getModel().getForm(), true, changes)) {
             Timber.e(new Error("Saved form instance does not match template form definition"));
             return;
         }
 
-        // populate the data model
-        TreeReference tr = TreeReference.rootRef();
-        tr.add(templateRoot.getName(), TreeReference.INDEX_UNBOUND);
-
-        // Here we set the Collect's implementation of the IAnswerResolver.
-        // We set it back to the default after select choices have been populated.
-        XFormParser.setAnswerResolver(new ExternalAnswerResolver());
-        templateRoot.populate(savedRoot, fec.getModel().getForm());
-        XFormParser.setAnswerResolver(new DefaultAnswerResolver());
-
-        // FormInstanceParser.parseInstance is responsible for initial creation of instances. It explicitly sets the
-        // main instance name to null so we force this again on deserialization because some code paths rely on the main
-        // instance not having a name. Must be before the call on setRoot because setRoot also sets the root's name.
-        fec.getModel().getForm().getInstance().setName(null);
-
-        // populated model to current form
-        fec.getModel().getForm().getInstance().setRoot(templateRoot);
-
         // fix any language issues
         // :
         // http://bitbucket.org/javarosa/main/issue/5/itext-n-appearing-in-restored-instances
@@ -585,49 +523,6 @@ public class FormLoaderTask extends SchedulerAsyncTaskMimic<Void, String, FormLo
         this.intent = intent;
     }
 
-    private void readCSV(File csv, String formHash, String pathHash) {
-
-        CSVReader reader;
-        ItemsetDbAdapter ida = new ItemsetDbAdapter();
-        ida.open();
-        boolean withinTransaction = false;
-
-        try {
-            reader = new CSVReader(new FileReader(csv));
-
-            String[] nextLine;
-            String[] columnHeaders = null;
-            int lineNumber = 0;
-            while ((nextLine = reader.readNext()) != null) {
-                lineNumber++;
-                if (lineNumber == 1) {
-                    // first line of csv is column headers
-                    columnHeaders = nextLine;
-                    ida.createTable(formHash, pathHash, columnHeaders,
-                            csv.getAbsolutePath());
-                    continue;
-                }
-                // add the rest of the lines to the specified database
-                // nextLine[] is an array of values from the line
-                // System.out.println(nextLine[4] + "etc...");
-                if (lineNumber == 2) {
-                    // start a transaction for the inserts
-                    withinTransaction = true;
-                    ida.beginTransaction();
-                }
-                ida.addRow(pathHash, columnHeaders, nextLine);
-
-            }
-        } catch (IOException | SQLException | CsvValidationException e) {
-            warningMsg = e.getMessage();
-        } finally {
-            if (withinTransaction) {
-                ida.commit();
-            }
-            ida.close();
-        }
-    }
-
     public FormDef getFormDef() {
         return formDef;
     }
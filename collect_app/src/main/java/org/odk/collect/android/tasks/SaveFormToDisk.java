@@ -19,6 +19,8 @@ import static org.odk.collect.strings.localization.LocalizedApplicationKt.getLoc
 
 import android.content.ContentValues;
 import android.net.Uri;
+import android.system.ErrnoException;
+import android.system.Os;
 import android.util.Pair;
 
 import androidx.annotation.NonNull;
@@ -344,7 +346,7 @@ public class SaveFormToDisk {
 
         // Write last-saved instance
         String lastSavedPath = formController.getLastSavedPath();
-        writeFile(payload, new File(lastSavedPath));
+        writeLastSavedFile(payload, formController.getInstanceFile(), new File(lastSavedPath));
 
         // update the uri. We have exported the reloadable instance, so update status...
         // Since we saved a reloadable instance, it is flagged as re-openable so that if any error
@@ -365,17 +367,21 @@ public class SaveFormToDisk {
             File instanceXml = formController.getInstanceFile();
             File submissionXml = new File(instanceXml.getParentFile(), "submission.xml");
 
-            payload = formController.getSubmissionXml();
-
-            // write out submission.xml -- the data to actually submit to aggregate
-
             progressListener.onProgressUpdate(
                     getLocalizedString(Collect.getInstance(), org.odk.collect.strings.R.string.survey_saving_finalizing_message));
 
-            writeFile(payload, submissionXml);
-
             // see if the form is encrypted and we can encrypt it...
             EncryptedFormInformation formInfo = EncryptionUtils.getEncryptedFormInformation(uri, formController.getSubmissionMetadata());
+
+            // write out submission.xml -- the data to actually submit to aggregate. If that's the
+            // whole form it's identical to the instance we've already serialized so it's only
+            // needed (as the input for encryption) if the form is encrypted
+            if (!canEditAfterCompleted) {
+                writeFile(formController.getSubmissionXml(), submissionXml);
+            } else if (formInfo != null) {
+                writeFile(payload, submissionXml);
+            }
+
             if (formInfo != null) {
                 // if we are encrypting, the form cannot be reopened afterward
                 canEditAfterCompleted = false;
@@ -405,15 +411,6 @@ public class SaveFormToDisk {
 
             if (!canEditAfterCompleted) {
                 manageFilesAfterSavingEncryptedForm(instanceXml, submissionXml);
-            } else {
-                // try to delete the submissionXml file, since it is
-                // identical to the existing instanceXml file
-                // (we don't need to delete and rename anything).
-                if (!submissionXml.delete()) {
-                    String msg = "Error deleting " + submissionXml.getAbsolutePath()
-                            + " (instance is re-openable)";
-                    Timber.w(msg);
-                }
             }
 
             // if encrypted, delete all plaintext files
@@ -482,6 +479,29 @@ public class SaveFormToDisk {
         }
     }
 
+    /**
+     * Makes the last-saved file a hard link to the instance file that was just written so the
+     * instance doesn't need to be written out twice. Falls back to writing the payload again if
+     * the file system doesn't support links (as is the case for emulated external storage).
+     * <p>
+     * This relies on the instance file always being replaced (rather than written to in place)
+     * when it's saved again so that the last-saved file is never changed underneath a link.
+     */
+    private static void writeLastSavedFile(ByteArrayPayload payload, File instanceFile, File lastSavedFile) throws IOException {
+        if (lastSavedFile.exists() && !lastSavedFile.delete()) {
+            throw new IOException("Cannot overwrite " + lastSavedFile.getAbsolutePath() + ". Perhaps the file is locked?");
+        }
+
+        try {
+            Os.link(instanceFile.getAbsolutePath(), lastSavedFile.getAbsolutePath());
+            return;
+        } catch (ErrnoException | RuntimeException e) {
+            Timber.i("Could not link %s: %s", lastSavedFile.getAbsolutePath(), e.getMessage());
+        }
+
+        writeFile(payload, lastSavedFile);
+    }
+
     /**
      * Writes payload contents to the disk.
      */
@@ -33,14 +33,14 @@ import org.odk.collect.forms.Form;
 import org.odk.collect.forms.instances.Instance;
 import org.odk.collect.shared.strings.Md5;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -55,10 +55,13 @@ import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
@@ -101,6 +104,7 @@ public class EncryptionUtils {
             "base64EncryptedElementSignature";
     private static final String NEW_LINE = "\n";
     private static final String ENCRYPTION_PROVIDER = "BC";
+    private static final int ENCRYPTION_BUFFER_SIZE = 64 * 1024;
 
     private EncryptionUtils() {
     }
@@ -174,9 +178,8 @@ public class EncryptionUtils {
             elementSignatureSource.append(value).append('\n');
         }
 
-        public void appendFileSignatureSource(File file) {
-            String md5Hash = Md5.getMd5Hash(file);
-            appendElementSignatureSource(file.getName() + "::" + md5Hash);
+        public void appendFileSignatureSource(String fileName, String md5Hash) {
+            appendElementSignatureSource(fileName + "::" + md5Hash);
         }
 
         public String getBase64EncryptedElementSignature() {
@@ -346,7 +349,12 @@ public class EncryptionUtils {
         return new EncryptedFormInformation(formId, formVersion, instanceMetadata, pk);
     }
 
-    private static void encryptFile(File file, EncryptedFormInformation formInfo)
+    /**
+     * Encrypts a file into a sibling ".enc" file in a single pass: the plaintext is hashed as it
+     * is read and each chunk is encrypted straight into a buffered file that is synced once at the
+     * end. Returns the plaintext's MD5 hash for the element signature.
+     */
+    private static String encryptFile(File file, Cipher cipher)
             throws IOException, EncryptionException {
         File encryptedFile = new File(file.getParentFile(), file.getName()
                 + ".enc");
@@ -356,42 +364,96 @@ public class EncryptionUtils {
                     + ". Perhaps the file is locked?");
         }
 
-        // add elementSignatureSource for this file...
-        formInfo.appendFileSignatureSource(file);
-
-        RandomAccessFile randomAccessFile = null;
-        CipherOutputStream cipherOutputStream = null;
         try {
-            Cipher c = formInfo.getCipher();
-
-            randomAccessFile = new RandomAccessFile(encryptedFile, "rws");
-            ByteArrayOutputStream encryptedData = new ByteArrayOutputStream();
-            cipherOutputStream = new CipherOutputStream(encryptedData, c);
-            InputStream fin = new FileInputStream(file);
-            byte[] buffer = new byte[2048];
-            int len = fin.read(buffer);
-            while (len != -1) {
-                cipherOutputStream.write(buffer, 0, len);
-                len = fin.read(buffer);
+            MessageDigest md = MessageDigest.getInstance("MD5");
+
+            try (InputStream fin = new FileInputStream(file);
+                 FileOutputStream fout = new FileOutputStream(encryptedFile);
+                 OutputStream out = new BufferedOutputStream(fout, ENCRYPTION_BUFFER_SIZE)) {
+                byte[] buffer = new byte[ENCRYPTION_BUFFER_SIZE];
+                int len = fin.read(buffer);
+                while (len != -1) {
+                    md.update(buffer, 0, len);
+
+                    byte[] encrypted = cipher.update(buffer, 0, len);
+                    if (encrypted != null) {
+                        out.write(encrypted);
+                    }
+
+                    len = fin.read(buffer);
+                }
+
+                out.write(cipher.doFinal());
+                out.flush();
+                fout.getFD().sync();
             }
-            fin.close();
-            cipherOutputStream.flush();
-            cipherOutputStream.close();
-
-            randomAccessFile.write(encryptedData.toByteArray());
 
             Timber.i("Encrpyted:%s -> %s", file.getName(), encryptedFile.getName());
+            return Md5.toMd5Hash(md.digest());
         } catch (Exception e) {
             String msg = "Error encrypting: " + file.getName() + " -> "
                     + encryptedFile.getName();
             Timber.e(e, "%s due to %s ", msg, e.getMessage());
             throw new EncryptionException(msg, e);
-        } finally {
-            IOUtils.closeQuietly(cipherOutputStream);
+        }
+    }
+
+    /**
+     * Encrypts files with their matching cipher using a thread per core (as each file has its
+     * own cipher they don't depend on each other). Returns each file's MD5 hash in order.
+     */
+    private static List<String> encryptFiles(List<File> files, List<Cipher> ciphers)
+            throws IOException, EncryptionException {
+        int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+            List<String> md5Hashes = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                md5Hashes.add(encryptFile(files.get(i), ciphers.get(i)));
+            }
+
+            return md5Hashes;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                Cipher cipher = ciphers.get(i);
+                futures.add(executor.submit(() -> encryptFile(file, cipher)));
+            }
 
-            if (randomAccessFile != null) {
-                randomAccessFile.close();
+            List<String> md5Hashes = new ArrayList<>();
+            for (Future<String> future : futures) {
+                try {
+                    md5Hashes.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof EncryptionException) {
+                        throw (EncryptionException) e.getCause();
+                    } else if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    } else {
+                        throw new EncryptionException("Error encrypting attachments", e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new EncryptionException("Interrupted while encrypting attachments", e);
+                }
             }
+
+            return md5Hashes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Cipher getCipher(File file, EncryptedFormInformation formInfo) throws EncryptionException {
+        try {
+            return formInfo.getCipher();
+        } catch (Exception e) {
+            String msg = "Error encrypting: " + file.getName();
+            Timber.e(e, "%s due to %s ", msg, e.getMessage());
+            throw new EncryptionException(msg, e);
         }
     }
 
@@ -457,13 +519,22 @@ public class EncryptionUtils {
                 filesToProcess.add(f);
             }
         }
-        // encrypt here...
+        // each cipher advances the IV so they have to be created in the same order as the files
+        // appear in the element signature even though the files are encrypted concurrently
+        List<Cipher> ciphers = new ArrayList<>();
         for (File f : filesToProcess) {
-            encryptFile(f, formInfo);
+            ciphers.add(getCipher(f, formInfo));
+        }
+        Cipher submissionCipher = getCipher(submissionXml, formInfo);
+
+        // encrypt here...
+        List<String> md5Hashes = encryptFiles(filesToProcess, ciphers);
+        for (int i = 0; i < filesToProcess.size(); i++) {
+            formInfo.appendFileSignatureSource(filesToProcess.get(i).getName(), md5Hashes.get(i));
         }
 
         // encrypt the submission.xml as the last file...
-        encryptFile(submissionXml, formInfo);
+        formInfo.appendFileSignatureSource(submissionXml.getName(), encryptFile(submissionXml, submissionCipher));
 
         return filesToProcess;
     }
@@ -1,24 +1,73 @@
 package org.odk.collect.android.utilities;
 
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
 import org.javarosa.core.model.FormDef;
 import org.javarosa.core.util.externalizable.ExtUtil;
+import org.odk.collect.android.BuildConfig;
 import org.odk.collect.android.formentry.FormDefCache;
 import org.odk.collect.android.storage.StoragePathProvider;
 import org.odk.collect.android.storage.StorageSubdirectory;
-import org.odk.collect.shared.strings.Md5;
+import org.odk.collect.shared.files.FileHashCache;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import timber.log.Timber;
 
-/** Methods for reading from and writing to the FormDef cache */
+/**
+ * Methods for reading from and writing to the FormDef cache. There are two tiers: serialized
+ * FormDefs are kept in a process wide in-memory LRU (keyed by the form's MD5 hash) in front of
+ * the {@code .formdef} files in the cache directory. As a {@link FormDef} is mutated during
+ * form entry (and can't be copied) each read deserializes a fresh one, but reads from memory
+ * avoid hitting the disk for repeated loads of the same form (like when finalizing many drafts).
+ * Only serialized FormDefs smaller than {@link #MAX_MEMORY_ENTRY_SIZE} are kept in memory: larger
+ * ones are streamed from their file each time so that they don't evict everything else.
+ *
+ * Cache files start with a header including {@link #FORMAT_VERSION} and the app's version
+ * code so that files written with a different (and possibly incompatible) serialization are
+ * detected and discarded without having to attempt to deserialize them.
+ */
 public final class ExternalizableFormDefCache implements FormDefCache {
 
+    private static final int MAGIC = 0x4F444B46;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_MEMORY_CACHE_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_MEMORY_ENTRY_SIZE = 2 * 1024 * 1024;
+
+    private static final LruCache<String, byte[]> MEMORY_CACHE = new LruCache<String, byte[]>(
+            (int) Math.min(Runtime.getRuntime().maxMemory() / 16, MAX_MEMORY_CACHE_SIZE)
+    ) {
+        @Override
+        protected int sizeOf(String key, byte[] value) {
+            return value.length;
+        }
+    };
+
+    private final FileHashCache fileHashCache;
+    private final long maxMemoryEntrySize;
+
+    public ExternalizableFormDefCache(FileHashCache fileHashCache) {
+        this(fileHashCache, MAX_MEMORY_ENTRY_SIZE);
+    }
+
+    @VisibleForTesting
+    ExternalizableFormDefCache(FileHashCache fileHashCache, long maxMemoryEntrySize) {
+        this.fileHashCache = fileHashCache;
+        this.maxMemoryEntrySize = maxMemoryEntrySize;
+    }
+
     /**
      * Serializes a FormDef and saves it in the cache. To avoid problems from two callers
      * trying to cache the same file at the same time, we serialize into a temporary file,
@@ -30,17 +79,16 @@ public final class ExternalizableFormDefCache implements FormDefCache {
     @Override
     public void writeCache(FormDef formDef, String formPath) throws IOException {
         final long formSaveStart = System.currentTimeMillis();
-        File cachedFormDefFile = ExternalizableFormDefCache.getCacheFile(new File(formPath));
+        String hash = getHash(new File(formPath));
+        File cachedFormDefFile = getCacheFile(hash);
         final File tempCacheFile = File.createTempFile("cache", null,
                 new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE)));
         Timber.i("Started saving %s to the cache via temp file %s",
                 formDef.getTitle(), tempCacheFile.getName());
 
         Exception caughtException = null;
-        try {
-            DataOutputStream dos = new DataOutputStream(new FileOutputStream(tempCacheFile));
-            formDef.writeExternal(dos);
-            dos.close();
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempCacheFile)))) {
+            serializeFormDef(formDef, dos);
         } catch (IOException exception) {
             caughtException = exception;
         }
@@ -56,6 +104,10 @@ public final class ExternalizableFormDefCache implements FormDefCache {
             }
         } else {
             if (tempCacheFile.renameTo(cachedFormDefFile)) {
+                if (hash != null && cachedFormDefFile.length() <= maxMemoryEntrySize) {
+                    MEMORY_CACHE.put(hash, org.apache.commons.io.FileUtils.readFileToByteArray(cachedFormDefFile));
+                }
+
                 Timber.i("Renamed %s to %s",
                         tempCacheFile.getName(), cachedFormDefFile.getName());
                 Timber.i("Caching %s took %.3f seconds.", formDef.getTitle(),
@@ -77,17 +129,49 @@ public final class ExternalizableFormDefCache implements FormDefCache {
      */
     @Override
     public FormDef readCache(File formXml) {
-        final File cachedForm = getCacheFile(formXml);
+        final String hash = getHash(formXml);
+        if (hash == null) {
+            return null;
+        }
+
+        final byte[] serializedFormDef = MEMORY_CACHE.get(hash);
+        if (serializedFormDef != null) {
+            try {
+                return deserializeFormDef(new ByteArrayInputStream(serializedFormDef));
+            } catch (Exception e) {
+                Timber.w(e);
+                MEMORY_CACHE.remove(hash);
+            }
+        }
+
+        final File cachedForm = getCacheFile(hash);
         if (cachedForm.exists()) {
             Timber.i("Attempting to load %s from cached file: %s.", formXml.getName(), cachedForm.getName());
             final long start = System.currentTimeMillis();
 
             try {
-                final FormDef deserializedFormDef = deserializeFormDef(cachedForm);
-                if (deserializedFormDef != null) {
-                    Timber.i("Loaded in %.3f seconds.", (System.currentTimeMillis() - start) / 1000F);
-                    return deserializedFormDef;
+                final FormDef deserializedFormDef;
+                if (cachedForm.length() <= maxMemoryEntrySize) {
+                    final byte[] cachedBytes = org.apache.commons.io.FileUtils.readFileToByteArray(cachedForm);
+                    deserializedFormDef = deserializeFormDef(new ByteArrayInputStream(cachedBytes));
+                    if (deserializedFormDef != null) {
+                        MEMORY_CACHE.put(hash, cachedBytes);
+                    }
+                } else {
+                    try (InputStream is = new BufferedInputStream(new FileInputStream(cachedForm))) {
+                        deserializedFormDef = deserializeFormDef(is);
+                    }
+                }
+
+                if (deserializedFormDef == null) {
+                    // New .formdef will be created from XML
+                    Timber.i("Cache file is from a different version. Deleting: %s", cachedForm.getAbsolutePath());
+                    cachedForm.delete();
+                    return null;
                 }
+
+                Timber.i("Loaded in %.3f seconds.", (System.currentTimeMillis() - start) / 1000F);
+                return deserializedFormDef;
             } catch (Exception e) {
                 // New .formdef will be created from XML
                 Timber.w("Deserialization FAILED! Deleting cache file: %s", cachedForm.getAbsolutePath());
@@ -100,21 +184,46 @@ public final class ExternalizableFormDefCache implements FormDefCache {
 
     /**
      * Builds and returns a File object for the cached version of a form.
-     * @param formXml the File containing the XML form
+     * @param hash the MD5 hash of the XML form
      * @return a File object
      */
-    private static File getCacheFile(File formXml) {
+    private static File getCacheFile(String hash) {
         return new File(new StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE) + File.separator +
-                Md5.getMd5Hash(formXml) + ".formdef");
+                hash + ".formdef");
+    }
+
+    @VisibleForTesting
+    static void clearMemoryCache() {
+        MEMORY_CACHE.evictAll();
     }
 
-    private static FormDef deserializeFormDef(File serializedFormDef) throws Exception {
-        FormDef fd;
-        try (DataInputStream dis = new DataInputStream(new FileInputStream(serializedFormDef))) {
-            fd = new FormDef();
+    @Nullable
+    private String getHash(File formXml) {
+        return fileHashCache.getMd5Hash(formXml);
+    }
+
+    private static void serializeFormDef(FormDef formDef, DataOutputStream dos) throws IOException {
+        dos.writeInt(MAGIC);
+        dos.writeInt(FORMAT_VERSION);
+        dos.writeInt(BuildConfig.VERSION_CODE);
+        formDef.writeExternal(dos);
+    }
+
+    /**
+     * Returns {@code null} if the serialized FormDef doesn't start with the current header.
+     */
+    @Nullable
+    private static FormDef deserializeFormDef(InputStream serializedFormDef) throws Exception {
+        try (DataInputStream dis = new DataInputStream(serializedFormDef)) {
+            if (dis.readInt() != MAGIC
+                    || dis.readInt() != FORMAT_VERSION
+                    || dis.readInt() != BuildConfig.VERSION_CODE) {
+                return null;
+            }
+
+            FormDef fd = new FormDef();
             fd.readExternal(dis, ExtUtil.defaultPrototypes());
+            return fd;
         }
-
-        return fd;
     }
 }
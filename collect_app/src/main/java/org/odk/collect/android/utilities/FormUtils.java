@@ -1,6 +1,7 @@
 package org.odk.collect.android.utilities;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.javarosa.core.reference.ReferenceManager;
 import org.javarosa.core.reference.RootTranslator;
@@ -11,9 +12,14 @@ import org.odk.collect.forms.Form;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 public final class FormUtils {
 
+    private static final Object REFERENCE_MANAGER_LOCK = new Object();
+    private static boolean inUseByForm;
+    private static int formConfigurations;
+
     private FormUtils() {
 
     }
@@ -42,6 +48,78 @@ public final class FormUtils {
      * projectRoot/forms/baz.
      */
     public static void setupReferenceManagerForForm(ReferenceManager referenceManager, File projectRootDir, File formMediaDir) {
+        if (referenceManager == ReferenceManager.instance()) {
+            synchronized (REFERENCE_MANAGER_LOCK) {
+                configureReferenceManager(referenceManager, projectRootDir, formMediaDir);
+                inUseByForm = true;
+                formConfigurations++;
+            }
+        } else {
+            configureReferenceManager(referenceManager, projectRootDir, formMediaDir);
+        }
+    }
+
+    /**
+     * Resets the global reference manager once the form it was set up for (with
+     * {@link #setupReferenceManagerForForm(ReferenceManager, File, File)}) is no longer being used.
+     */
+    public static void releaseReferenceManager() {
+        synchronized (REFERENCE_MANAGER_LOCK) {
+            ReferenceManager.instance().reset();
+            inUseByForm = false;
+        }
+    }
+
+    /**
+     * Whether a form is loading or open (the global reference manager has been set up for it
+     * and not released yet). Background work for other forms should yield while this is the case.
+     */
+    public static boolean isReferenceManagerInUseByForm() {
+        synchronized (REFERENCE_MANAGER_LOCK) {
+            return inUseByForm;
+        }
+    }
+
+    /**
+     * Runs {@code block} with the global reference manager set up for a form (as
+     * {@link #setupReferenceManagerForForm(ReferenceManager, File, File)} would) so that forms can
+     * be parsed in the background. Returns {@code null} without running {@code block} if the
+     * reference manager is in use by a form that is loading or open. {@code null} is also returned
+     * if a form sets the reference manager up while {@code block} is running as the result could
+     * have been built with that form's references, so {@code block} should not have side effects.
+     * <p>
+     * The lock is only held while setting the reference manager up so a form that is opened in the
+     * meantime never has to wait for {@code block}.
+     */
+    @Nullable
+    public static <T> T withUnusedReferenceManager(File projectRootDir, File formMediaDir, Supplier<T> block) {
+        int configuration;
+        synchronized (REFERENCE_MANAGER_LOCK) {
+            if (inUseByForm) {
+                return null;
+            }
+
+            configureReferenceManager(ReferenceManager.instance(), projectRootDir, formMediaDir);
+            configuration = formConfigurations;
+        }
+
+        T result = null;
+        try {
+            result = block.get();
+        } finally {
+            synchronized (REFERENCE_MANAGER_LOCK) {
+                if (formConfigurations == configuration) {
+                    ReferenceManager.instance().reset();
+                } else {
+                    result = null;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static void configureReferenceManager(ReferenceManager referenceManager, File projectRootDir, File formMediaDir) {
         referenceManager.reset();
 
         // Always build URIs against the project root, regardless of the absolute path of formMediaDir
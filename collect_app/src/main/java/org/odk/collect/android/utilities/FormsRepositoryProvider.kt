@@ -9,6 +9,7 @@ import org.odk.collect.android.storage.StoragePaths
 import org.odk.collect.forms.FormsRepository
 import org.odk.collect.forms.savepoints.SavepointsRepository
 import org.odk.collect.projects.ProjectDependencyFactory
+import org.odk.collect.shared.files.FileHashCache
 
 class FormsRepositoryProvider @JvmOverloads constructor(
     private val context: Context,
@@ -16,9 +17,17 @@ class FormsRepositoryProvider @JvmOverloads constructor(
     private val savepointsRepositoryProvider: ProjectDependencyFactory<SavepointsRepository> = SavepointsRepositoryProvider(
         context,
         storagePathFactory
-    )
+    ),
+    private val fileHashCache: FileHashCache = FileHashCache()
 ) : ProjectDependencyFactory<FormsRepository> {
 
+    constructor(context: Context, fileHashCache: FileHashCache) : this(
+        context,
+        StoragePathProvider(),
+        SavepointsRepositoryProvider(context, StoragePathProvider()),
+        fileHashCache
+    )
+
     private val clock = { System.currentTimeMillis() }
 
     override fun create(projectId: String): FormsRepository {
@@ -29,7 +38,8 @@ class FormsRepositoryProvider @JvmOverloads constructor(
             storagePaths.formsDir,
             storagePaths.cacheDir,
             clock,
-            savepointsRepositoryProvider.create(projectId)
+            savepointsRepositoryProvider.create(projectId),
+            fileHashCache
         )
     }
 
@@ -16,6 +16,7 @@ import org.odk.collect.android.injection.config.AppDependencyModule
 import org.odk.collect.android.injection.config.ProjectDependencyModuleFactory
 import org.odk.collect.android.notifications.Notifier
 import org.odk.collect.android.support.CollectHelpers
+import org.odk.collect.shared.files.FileHashCache
 
 @RunWith(AndroidJUnit4::class)
 class AutoUpdateTaskSpecTest {
@@ -29,7 +30,9 @@ class AutoUpdateTaskSpecTest {
             override fun providesFormsUpdater(
                 application: Application,
                 notifier: Notifier,
-                projectDependencyModuleFactory: ProjectDependencyModuleFactory
+                projectDependencyModuleFactory: ProjectDependencyModuleFactory,
+                formUpdateScheduler: FormUpdateScheduler,
+                fileHashCache: FileHashCache
             ): FormsDataService {
                 return formUpdateChecker
             }
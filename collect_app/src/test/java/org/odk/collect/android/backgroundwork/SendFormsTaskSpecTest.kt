@@ -19,6 +19,7 @@ import org.odk.collect.android.projects.ProjectsDataService
 import org.odk.collect.android.support.CollectHelpers
 import org.odk.collect.metadata.PropertyManager
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface
+import org.odk.collect.shared.files.FileHashCache
 import org.odk.collect.testshared.RobolectricHelpers
 
 @RunWith(AndroidJUnit4::class)
@@ -37,7 +38,8 @@ class SendFormsTaskSpecTest {
                 projectsDependencyProviderFactory: ProjectDependencyModuleFactory?,
                 notifier: Notifier?,
                 propertyManager: PropertyManager?,
-                httpInterface: OpenRosaHttpInterface
+                httpInterface: OpenRosaHttpInterface,
+                fileHashCache: FileHashCache
             ): InstancesDataService {
                 return instancesDataService
             }
@@ -0,0 +1,79 @@
+package org.odk.collect.android.backgroundwork
+
+import android.app.Application
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.MatcherAssert.assertThat
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.kotlin.any
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+import org.odk.collect.android.formmanagement.FormsDataService
+import org.odk.collect.android.injection.config.AppDependencyModule
+import org.odk.collect.android.injection.config.ProjectDependencyModuleFactory
+import org.odk.collect.android.notifications.Notifier
+import org.odk.collect.android.support.CollectHelpers
+import org.odk.collect.shared.files.FileHashCache
+
+@RunWith(AndroidJUnit4::class)
+class WarmUpFormsTaskSpecTest {
+    private val formsDataService = mock<FormsDataService>()
+
+    @Before
+    fun setup() {
+        CollectHelpers.overrideAppDependencyModule(object : AppDependencyModule() {
+            override fun providesFormsUpdater(
+                application: Application,
+                notifier: Notifier,
+                projectDependencyModuleFactory: ProjectDependencyModuleFactory,
+                formUpdateScheduler: FormUpdateScheduler,
+                fileHashCache: FileHashCache
+            ): FormsDataService {
+                return formsDataService
+            }
+        })
+    }
+
+    @Test
+    fun `task warms up forms for the project`() {
+        val inputData = HashMap<String, String>()
+        inputData[TaskData.DATA_PROJECT_ID] = "projectId"
+
+        val result = WarmUpFormsTaskSpec().getTask(ApplicationProvider.getApplicationContext(), inputData, true).get()
+        verify(formsDataService).warmUpForms(eq("projectId"), any())
+        assertThat(result, `is`(true))
+    }
+
+    @Test
+    fun `task is cancelled after onStopped is called`() {
+        val inputData = HashMap<String, String>()
+        inputData[TaskData.DATA_PROJECT_ID] = "projectId"
+
+        val cancelledStates = mutableListOf<Boolean>()
+        val taskSpec = WarmUpFormsTaskSpec()
+        whenever(formsDataService.warmUpForms(eq("projectId"), any())).then {
+            val isCancelled = it.getArgument<() -> Boolean>(1)
+            cancelledStates.add(isCancelled())
+            taskSpec.onStopped()
+            cancelledStates.add(isCancelled())
+        }
+
+        taskSpec.getTask(ApplicationProvider.getApplicationContext(), inputData, true).get()
+        assertThat(cancelledStates, `is`(listOf(false, true)))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun `task throws an exception if there is no project ID`() {
+        WarmUpFormsTaskSpec().getTask(ApplicationProvider.getApplicationContext(), emptyMap(), true).get()
+    }
+
+    @Test
+    fun `maxRetries should not be limited`() {
+        assertThat(WarmUpFormsTaskSpec().maxRetries, `is`(null as Int?))
+    }
+}
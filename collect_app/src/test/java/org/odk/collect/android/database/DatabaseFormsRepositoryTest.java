@@ -8,6 +8,7 @@ import org.odk.collect.android.database.forms.DatabaseFormsRepository;
 import org.odk.collect.forms.FormsRepository;
 import org.odk.collect.formstest.FormsRepositoryTest;
 import org.odk.collect.shared.TempFiles;
+import org.odk.collect.shared.files.FileHashCache;
 
 import java.io.File;
 import java.util.function.Supplier;
@@ -21,12 +22,12 @@ public class DatabaseFormsRepositoryTest extends FormsRepositoryTest {
 
     @Override
     public FormsRepository buildSubject() {
-        return new DatabaseFormsRepository(ApplicationProvider.getApplicationContext(), dbDir.getAbsolutePath(), formsDir.getAbsolutePath(), cacheDir.getAbsolutePath(), System::currentTimeMillis, savepointsRepository);
+        return new DatabaseFormsRepository(ApplicationProvider.getApplicationContext(), dbDir.getAbsolutePath(), formsDir.getAbsolutePath(), cacheDir.getAbsolutePath(), System::currentTimeMillis, savepointsRepository, new FileHashCache());
     }
 
     @Override
     public FormsRepository buildSubject(Supplier<Long> clock) {
-        return new DatabaseFormsRepository(ApplicationProvider.getApplicationContext(), dbDir.getAbsolutePath(), formsDir.getAbsolutePath(), cacheDir.getAbsolutePath(), clock, savepointsRepository);
+        return new DatabaseFormsRepository(ApplicationProvider.getApplicationContext(), dbDir.getAbsolutePath(), formsDir.getAbsolutePath(), cacheDir.getAbsolutePath(), clock, savepointsRepository, new FileHashCache());
     }
 
     @Override
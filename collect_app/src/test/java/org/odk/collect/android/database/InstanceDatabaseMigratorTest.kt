@@ -32,7 +32,7 @@ class InstanceDatabaseMigratorTest {
 
     @Before
     fun setup() {
-        assertThat("Test expects different Instances DB version", DatabaseConstants.INSTANCES_DATABASE_VERSION, equalTo(8))
+        assertThat("Test expects different Instances DB version", DatabaseConstants.INSTANCES_DATABASE_VERSION, equalTo(9))
     }
 
     @After
@@ -62,6 +62,22 @@ class InstanceDatabaseMigratorTest {
         }
     }
 
+    @Test
+    fun onUpgrade_fromVersion8_addsStatusIndex() {
+        val oldVersion = 8
+        database.version = oldVersion
+        instancesDatabaseMigrator.createInstancesTableV8(database)
+
+        instancesDatabaseMigrator.onUpgrade(database, oldVersion)
+        assertThat(getIndexedColumns(), equalTo(listOf(STATUS)))
+    }
+
+    @Test
+    fun onCreate_addsStatusIndex() {
+        instancesDatabaseMigrator.onCreate(database)
+        assertThat(getIndexedColumns(), equalTo(listOf(STATUS)))
+    }
+
     @Test
     fun onUpgrade_fromVersion7() {
         val oldVersion = 7
@@ -126,6 +142,21 @@ class InstanceDatabaseMigratorTest {
         }
     }
 
+    private fun getIndexedColumns(): List<String> {
+        val indexes = database.rawQuery(
+            "SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ? AND sql IS NOT NULL;",
+            arrayOf(DatabaseConstants.INSTANCES_TABLE_NAME)
+        ).use { cursor ->
+            generateSequence { if (cursor.moveToNext()) cursor.getString(0) else null }.toList()
+        }
+
+        return indexes.flatMap { index ->
+            database.rawQuery("PRAGMA index_info($index);", null).use { cursor ->
+                generateSequence { if (cursor.moveToNext()) cursor.getString(cursor.getColumnIndex("name")) else null }.toList()
+            }
+        }
+    }
+
     private fun getContentValuesForInstanceV6(): ContentValues {
         return ContentValues().apply {
             put(DISPLAY_NAME, "DisplayName")
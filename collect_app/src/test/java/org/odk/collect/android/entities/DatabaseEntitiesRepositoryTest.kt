@@ -3,12 +3,15 @@ package org.odk.collect.android.entities
 import androidx.test.core.app.ApplicationProvider
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.equalTo
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.odk.collect.android.database.entities.DatabaseEntitiesRepository
 import org.odk.collect.android.entities.support.EntitySameAsMatcher.Companion.sameEntityAs
 import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.entities.storage.Entity
+import org.odk.collect.shared.Query
 import org.odk.collect.shared.TempFiles
 
 @RunWith(AndroidJUnit4::class)
@@ -36,4 +39,84 @@ class DatabaseEntitiesRepositoryTest : EntitiesRepositoryTest() {
         repository.save("things", savedEntity)
         assertThat(repository.query("things")[0], sameEntityAs(savedEntity))
     }
+
+    @Test
+    fun `#query builds indexes for queried properties using the index builder`() {
+        val indexBuilds = mutableListOf<Runnable>()
+        val repository = DatabaseEntitiesRepository(
+            ApplicationProvider.getApplicationContext(),
+            TempFiles.createTempDir().absolutePath
+        ) { indexBuilds.add(it) }
+
+        val leoville = Entity.New("1", "Léoville Barton 2008", properties = listOf("vintage" to "2008"))
+        val canet = Entity.New("2", "Pontet-Canet 2014", properties = listOf("vintage" to "2014"))
+        repository.save("wines", leoville, canet)
+
+        val stringQuery = Query.StringEq("vintage", "2008")
+        val numericQuery = Query.NumericEq("vintage", 2014.0)
+        repository.query("wines", Query.Or(stringQuery, numericQuery))
+        assertThat(indexBuilds.size, equalTo(1))
+
+        indexBuilds.forEach { it.run() }
+        assertThat(repository.query("wines", stringQuery), contains(sameEntityAs(leoville)))
+        assertThat(repository.query("wines", numericQuery), contains(sameEntityAs(canet)))
+
+        repository.query("wines", stringQuery)
+        assertThat(indexBuilds.size, equalTo(1))
+    }
+
+    @Test
+    fun `#query only builds an index once while it is waiting to be built`() {
+        val dbDir = TempFiles.createTempDir().absolutePath
+        val indexBuilds = mutableListOf<Runnable>()
+        val repository = DatabaseEntitiesRepository(
+            ApplicationProvider.getApplicationContext(),
+            dbDir
+        ) { indexBuilds.add(it) }
+
+        val leoville = Entity.New("1", "Léoville Barton 2008", properties = listOf("vintage" to "2008"))
+        repository.save("wines", leoville)
+
+        val query = Query.StringEq("vintage", "2008")
+        repository.query("wines", query)
+        repository.query("wines", query)
+        assertThat(indexBuilds.size, equalTo(1))
+
+        val otherIndexBuilds = mutableListOf<Runnable>()
+        val otherRepository = DatabaseEntitiesRepository(
+            ApplicationProvider.getApplicationContext(),
+            dbDir
+        ) { otherIndexBuilds.add(it) }
+
+        otherRepository.query("wines", query)
+        assertThat(otherIndexBuilds.size, equalTo(1))
+    }
+
+    @Test
+    fun `lists, columns and hashes saved by one instance are visible to other instances for the same DB`() {
+        val dbPath = TempFiles.createTempDir().absolutePath
+        val repository = DatabaseEntitiesRepository(ApplicationProvider.getApplicationContext(), dbPath)
+        val otherRepository = DatabaseEntitiesRepository(ApplicationProvider.getApplicationContext(), dbPath)
+        assertThat(otherRepository.getLists(), equalTo(emptySet()))
+
+        val entity = Entity.New("1", "One", properties = listOf("color" to "red"))
+        repository.save("things", entity)
+        repository.updateListHash("things", "hash")
+
+        assertThat(otherRepository.getLists(), equalTo(setOf("things")))
+        assertThat(otherRepository.getListHash("things"), equalTo("hash"))
+        assertThat(otherRepository.queryFirstValue("things", Query.StringEq("name", "1"), "color"), equalTo("red"))
+    }
+
+    @Test
+    fun `lists are not returned after the DB has been deleted`() {
+        val dbDir = TempFiles.createTempDir()
+        val repository = DatabaseEntitiesRepository(ApplicationProvider.getApplicationContext(), dbDir.absolutePath)
+        repository.save("things", Entity.New("1", "One"))
+
+        dbDir.deleteRecursively()
+        dbDir.mkdirs()
+
+        assertThat(repository.getLists(), equalTo(emptySet()))
+    }
 }
@@ -339,6 +339,32 @@ abstract class EntitiesRepositoryTest {
         assertThat(repository.query("wines")[0].index, equalTo(0))
     }
 
+    @Test
+    fun `#saveAll creates new entities and updates existing ones`() {
+        val repository = buildSubject()
+
+        val leoville = Entity.New("1", "Léoville Barton 2008", state = Entity.State.OFFLINE)
+        repository.save("wines", leoville)
+
+        val updatedLeoville = leoville.copy(
+            label = null,
+            version = 2,
+            properties = listOf("score" to "92"),
+            state = Entity.State.ONLINE
+        )
+        val canet = Entity.New("2", "Pontet-Canet 2014", properties = listOf("window" to "2024-2040"))
+        repository.saveAll("wines", listOf(updatedLeoville, canet))
+
+        val wines = repository.query("wines")
+        assertThat(wines.size, equalTo(2))
+        assertThat(wines[0].label, equalTo(leoville.label))
+        assertThat(wines[0].version, equalTo(2))
+        assertThat(wines[0].state, equalTo(Entity.State.ONLINE))
+        assertThat(wines[0].properties, containsInAnyOrder("score" to "92", "window" to ""))
+        assertThat(wines[1].label, equalTo(canet.label))
+        assertThat(wines[1].properties, containsInAnyOrder("score" to "", "window" to "2024-2040"))
+    }
+
     @Test
     fun `#addList adds a list with no entities`() {
         val repository = buildSubject()
@@ -505,6 +531,43 @@ abstract class EntitiesRepositoryTest {
         assertThat(repository.getByIndex("other.favourite.wines", canetIndex), sameEntityAs(canet))
     }
 
+    @Test
+    fun `#getByIndexes returns matching entities`() {
+        val repository = buildSubject()
+
+        val springbank = Entity.New("1", "Springbank 10")
+        val aultmore = Entity.New("2", "Aultmore 12")
+        val glenlossie = Entity.New("3", "Glenlossie 10")
+        repository.save("whiskys", springbank, aultmore, glenlossie)
+
+        val indexes = repository.query("whiskys")
+            .filter { it.id != aultmore.id }
+            .map { it.index }
+
+        val entities = repository.getByIndexes("whiskys", indexes)
+        assertThat(entities.size, equalTo(2))
+        assertThat(entities.first { it.id == springbank.id }, sameEntityAs(springbank))
+        assertThat(entities.first { it.id == glenlossie.id }, sameEntityAs(glenlossie))
+    }
+
+    @Test
+    fun `#getByIndexes ignores indexes that do not exist`() {
+        val repository = buildSubject()
+
+        val springbank = Entity.New("1", "Springbank 10")
+        repository.save("whiskys", springbank)
+
+        val entities = repository.getByIndexes("whiskys", listOf(0, 1, 2))
+        assertThat(entities.size, equalTo(1))
+        assertThat(entities[0], sameEntityAs(springbank))
+    }
+
+    @Test
+    fun `#getByIndexes returns an empty list when the list does not exist`() {
+        val repository = buildSubject()
+        assertThat(repository.getByIndexes("wine", listOf(0)), equalTo(emptyList()))
+    }
+
     @Test
     fun `#getListVersion returns list version`() {
         val repository = buildSubject()
@@ -721,6 +784,32 @@ abstract class EntitiesRepositoryTest {
         assertThat(wines, containsInAnyOrder(sameEntityAs(dows)))
     }
 
+    @Test
+    fun `#query with numeric comparisons does not treat non-numeric values as numbers`() {
+        val repository = buildSubject()
+
+        val leoville = Entity.New("1", "Léoville Barton 2008", properties = listOf("score" to "5"))
+        val canet = Entity.New("2", "Pontet-Canet 2014", properties = listOf("score" to "unrated"))
+        val dows = Entity.New("3", "Dow's 1983", properties = listOf("score" to "12 points"))
+        val yquem = Entity.New("4", "Château d'Yquem 2001", properties = listOf("score" to ""))
+        repository.save("wines", leoville, canet, dows, yquem)
+
+        assertThat(
+            repository.query("wines", Query.NumericLessThan("score", 20.0)),
+            containsInAnyOrder(sameEntityAs(leoville))
+        )
+        assertThat(
+            repository.query("wines", Query.NumericGreaterThanOrEq("score", 0.0)),
+            containsInAnyOrder(sameEntityAs(leoville))
+        )
+        assertThat(repository.query("wines", Query.NumericEq("score", 0.0)), equalTo(emptyList()))
+        assertThat(repository.query("wines", Query.NumericEq("score", 12.0)), equalTo(emptyList()))
+        assertThat(
+            repository.query("wines", Query.NumericNotEq("score", 5.0)),
+            containsInAnyOrder(sameEntityAs(canet), sameEntityAs(dows), sameEntityAs(yquem))
+        )
+    }
+
     @Test
     fun `#query without query returns empty list when there are not entities`() {
         val repository = buildSubject()
@@ -62,6 +62,7 @@ import org.odk.collect.settings.InMemSettingsProvider
 import org.odk.collect.settings.SettingsProvider
 import org.odk.collect.settings.keys.ProtectedProjectKeys
 import org.odk.collect.shared.TempFiles
+import org.odk.collect.shared.files.FileHashCache
 import org.odk.collect.shared.locks.BooleanChangeLock
 import org.odk.collect.shared.strings.UUIDGenerator
 import org.odk.collect.testshared.FakeScheduler
@@ -116,7 +117,10 @@ class FormUriActivityTest {
                 return projectsDataService
             }
 
-            override fun providesFormsRepositoryProvider(application: Application): FormsRepositoryProvider {
+            override fun providesFormsRepositoryProvider(
+                application: Application,
+                fileHashCache: FileHashCache
+            ): FormsRepositoryProvider {
                 return mock<FormsRepositoryProvider>().apply {
                     whenever(create()).thenReturn(formsRepository)
                 }
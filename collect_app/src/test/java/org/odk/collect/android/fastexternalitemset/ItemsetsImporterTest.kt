@@ -0,0 +1,103 @@
+package org.odk.collect.android.fastexternalitemset
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.android.storage.StoragePathProvider
+import org.odk.collect.android.storage.StorageSubdirectory
+import org.odk.collect.android.support.CollectHelpers
+import java.io.File
+
+@RunWith(AndroidJUnit4::class)
+class ItemsetsImporterTest {
+
+    private lateinit var mediaDir: File
+    private lateinit var csv: File
+
+    @Before
+    fun setup() {
+        CollectHelpers.setupDemoProject()
+
+        mediaDir = File(StoragePathProvider().getOdkDirPath(StorageSubdirectory.FORMS), "itemsets-media").also {
+            it.mkdirs()
+        }
+        csv = File(mediaDir, "itemsets.csv")
+    }
+
+    @Test
+    fun `importItemsets does nothing if there is no itemsets csv`() {
+        assertThat(ItemsetsImporter.importItemsets(mediaDir), equalTo(null))
+        assertThat(getItemsetsCount(), equalTo(0))
+    }
+
+    @Test
+    fun `importItemsets imports the rows from the itemsets csv`() {
+        csv.writeText("list_name,name,label\nfruits,mango,Mango\nfruits,kiwi,Kiwi")
+
+        assertThat(ItemsetsImporter.importItemsets(mediaDir), equalTo(null))
+        assertThat(getItemsetsCount(), equalTo(1))
+        assertThat(getNames(), equalTo(listOf("mango", "kiwi")))
+    }
+
+    @Test
+    fun `importItemsets does not import the same csv twice`() {
+        csv.writeText("list_name,name,label\nfruits,mango,Mango")
+
+        ItemsetsImporter.importItemsets(mediaDir)
+        ItemsetsImporter.importItemsets(mediaDir)
+        assertThat(getItemsetsCount(), equalTo(1))
+        assertThat(getNames(), equalTo(listOf("mango")))
+    }
+
+    @Test
+    fun `importItemsets replaces the previous import when the csv changes`() {
+        csv.writeText("list_name,name,label\nfruits,mango,Mango")
+        ItemsetsImporter.importItemsets(mediaDir)
+
+        csv.writeText("list_name,name,label\nfruits,kiwi,Kiwi")
+        ItemsetsImporter.importItemsets(mediaDir)
+
+        assertThat(getItemsetsCount(), equalTo(1))
+        assertThat(getNames(), equalTo(listOf("kiwi")))
+    }
+
+    @Test
+    fun `importItemsets discards a cancelled import so that it is imported again next time`() {
+        csv.writeText("list_name,name,label\nfruits,mango,Mango\nfruits,kiwi,Kiwi")
+
+        var rows = 0
+        ItemsetsImporter.importItemsets(mediaDir) { ++rows > 2 }
+        assertThat(getItemsetsCount(), equalTo(0))
+
+        ItemsetsImporter.importItemsets(mediaDir)
+        assertThat(getItemsetsCount(), equalTo(1))
+        assertThat(getNames(), equalTo(listOf("mango", "kiwi")))
+    }
+
+    private fun getItemsetsCount(): Int {
+        val adapter = ItemsetDbAdapter().open()
+        return try {
+            adapter.getItemsets().use { it.count }
+        } finally {
+            adapter.close()
+        }
+    }
+
+    private fun getNames(): List<String> {
+        val adapter = ItemsetDbAdapter().open()
+        return try {
+            adapter.query(ItemsetDbAdapter.getMd5FromString(csv.absolutePath), null, null).use { cursor ->
+                val names = mutableListOf<String>()
+                while (cursor.moveToNext()) {
+                    names.add(cursor.getString(cursor.getColumnIndexOrThrow("name")))
+                }
+                names
+            }
+        } finally {
+            adapter.close()
+        }
+    }
+}
@@ -110,6 +110,33 @@ class FormEntryUseCasesTest {
         assertThat(draftController, equalTo(null))
     }
 
+    @Test
+    fun loadDraft_populatesRepeatsAndAnswersFromTheInstanceFile() {
+        val (form, formDef) = createForm(copyTestForm("forms/one-question-repeat.xml"))
+        val instance = createDraft(form!!, formDef!!, instancesRepository)
+        File(instance.instanceFilePath).writeText(
+            """
+            <data id="one_question_repeat">
+                <person><age>12</age></person>
+                <person><age> 34 </age></person>
+                <unknown>ignored</unknown>
+            </data>
+            """.trimIndent()
+        )
+
+        FormEntryUseCases.loadDraft(
+            form,
+            instance,
+            FormEntryController(FormEntryModel(formDef))
+        )!!
+
+        val root = formDef.mainInstance.root
+        assertThat(root.getChildrenWithName("person").size, equalTo(2))
+        assertThat(root.getChild("person", 0).getChild("age", 0).value!!.displayText, equalTo("12"))
+        assertThat(root.getChild("person", 1).getChild("age", 0).value!!.displayText, equalTo("34"))
+        assertThat(root.getChild("unknown", 0), equalTo(null))
+    }
+
     @Test
     fun finalizeDraft_whenValidationFails_marksInstanceAsHavingErrors() {
         val (form, formDef) = createForm(copyTestForm("forms/two-question-required.xml"))
@@ -365,6 +365,12 @@ public class FormEntryViewModelTest {
         assertThat(getOrAwaitValue(viewModel.isLoading()), equalTo(false));
     }
 
+    @Test
+    public void exit_closesAuditEventLogger() {
+        viewModel.exit();
+        verify(auditEventLogger).close();
+    }
+
     @Test
     public void validate_whenThereIsAnErrorValidating_setsError() {
         formController.setValidationError(new JavaRosaException(new IOException("OH NO")));
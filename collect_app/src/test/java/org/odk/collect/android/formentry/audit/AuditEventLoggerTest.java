@@ -241,7 +241,7 @@ public class AuditEventLoggerTest {
         List<AuditEvent> auditEvents = new ArrayList<>();
 
         @Override
-        public void writeEvents(List<AuditEvent> auditEvents) {
+        public void writeEvents(List<AuditEvent> auditEvents, boolean beforeSave) {
             this.auditEvents.addAll(auditEvents);
         }
 
@@ -249,5 +249,10 @@ public class AuditEventLoggerTest {
         public boolean isWriting() {
             return false;
         }
+
+        @Override
+        public void close() {
+
+        }
     }
 }
@@ -24,7 +24,6 @@ import org.javarosa.core.model.instance.TreeReference;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.robolectric.annotation.LooperMode;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -48,8 +47,7 @@ import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.
 import static org.odk.collect.android.formentry.audit.AuditEvent.AuditEventType.QUESTION;
 
 @RunWith(AndroidJUnit4.class)
-@LooperMode(LooperMode.Mode.LEGACY)
-public class AsyncTaskAuditEventWriterTest {
+public class BufferedAuditEventWriterTest {
 
     private File auditFile;
 
@@ -60,8 +58,8 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithLocation() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, true, false, false, false);
-        writer.writeEvents(getSampleAuditEventsWithLocations());
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, true, false, false, false, Runnable::run);
+        writer.writeEvents(getSampleAuditEventsWithLocations(), false);
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,latitude,longitude,accuracy\n" +
@@ -84,8 +82,8 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithLocationAndTrackingChanges() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, true, true, false, false);
-        writer.writeEvents(getSampleAuditEventsWithLocationsAndTrackingChanges());
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, true, true, false, false, Runnable::run);
+        writer.writeEvents(getSampleAuditEventsWithLocationsAndTrackingChanges(), false);
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value\n" +
@@ -104,8 +102,8 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithUser() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, true, false);
-        writer.writeEvents(getSampleAuditEventsWithUser());
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, true, false, Runnable::run);
+        writer.writeEvents(getSampleAuditEventsWithUser(), false);
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,user\n" +
@@ -126,11 +124,11 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void saveAuditWithChangeReason() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, true);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, true, Runnable::run);
         writer.writeEvents(asList(
                 new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null),
                 new AuditEvent(1548108900606L, CHANGE_REASON, null, null, null, "A good reason")
-        ));
+        ), false);
 
         String auditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,change-reason\n" +
@@ -141,11 +139,11 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void whenChangeReasonHasCommaOrQuotes_escapesThem() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, true);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, true, Runnable::run);
         writer.writeEvents(asList(
                 new AuditEvent(1548108900606L, FORM_RESUME, null, null, null, null),
                 new AuditEvent(1548108900606L, CHANGE_REASON, null, null, null, "A \"good\", reason")
-        ));
+        ), false);
 
         String auditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,change-reason\n" +
@@ -156,11 +154,11 @@ public class AsyncTaskAuditEventWriterTest {
 
     @Test
     public void whenUserHasCommaOrQuotes_escapesThem() throws Exception {
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, true, false);
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, true, false, Runnable::run);
 
         List<AuditEvent> auditEvents = getSampleAuditEventsWithUser().subList(0, 1);
         auditEvents.get(0).setUser("User,\"1\"");
-        writer.writeEvents(auditEvents);
+        writer.writeEvents(auditEvents, false);
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end,user\n" +
@@ -168,6 +166,38 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData, expectedAuditContent);
     }
 
+    @Test
+    public void close_closesLogAfterQueuedBatchesAndReopensItForLaterEvents() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, false, queued::add);
+        writer.writeEvents(asList(new AuditEvent(1548106927319L, FORM_START)), false);
+        writer.close();
+        writer.writeEvents(asList(new AuditEvent(1548108900606L, FORM_RESUME)), false);
+
+        assertEquals(3, queued.size());
+        for (Runnable runnable : queued) {
+            runnable.run();
+        }
+
+        String expectedData = "event,node,start,end\n" +
+                "form start,,1548106927319,\n" +
+                "form resume,,1548108900606,\n";
+        assertEquals(expectedData, FileUtils.readFileToString(auditFile));
+    }
+
+    @Test
+    public void whenEventsAreWrittenAfterFormExit_appendsThemWithoutRewritingHeader() throws Exception {
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, false, Runnable::run);
+        writer.writeEvents(asList(new AuditEvent(1548106927319L, FORM_START), new AuditEvent(1548106953601L, FORM_EXIT)), false);
+        writer.writeEvents(asList(new AuditEvent(1548108900606L, FORM_RESUME)), true);
+
+        String expectedData = "event,node,start,end\n" +
+                "form start,,1548106927319,\n" +
+                "form exit,,1548106953601,\n" +
+                "form resume,,1548108900606,\n";
+        assertEquals(expectedData, FileUtils.readFileToString(auditFile));
+    }
+
     /**
      * A user could update the app and then resume form entry. In this case it would be possible
      * for the form to have an audit config that wasn't supported by the old app. In this case
@@ -176,8 +206,8 @@ public class AsyncTaskAuditEventWriterTest {
     @Test
     public void whenAppUpdatedBetweenInstances_updatesHeader() throws Exception {
         // Use a form with enabled audit but without location
-        AsyncTaskAuditEventWriter writer = new AsyncTaskAuditEventWriter(auditFile, false, false, false, false);
-        writer.writeEvents(getSampleAuditEventsWithoutLocations());
+        BufferedAuditEventWriter writer = new BufferedAuditEventWriter(auditFile, false, false, false, false, Runnable::run);
+        writer.writeEvents(getSampleAuditEventsWithoutLocations(), false);
 
         String expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData = "event,node,start,end\n" +
@@ -195,8 +225,8 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData, expectedAuditContent);
 
         // Upgrade a form to use location
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, false, false, false);
-        writer.writeEvents(getMoreSampleAuditEventsWithLocations());
+        writer = new BufferedAuditEventWriter(auditFile, true, false, false, false, Runnable::run);
+        writer.writeEvents(getMoreSampleAuditEventsWithLocations(), false);
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData2 = "event,node,start,end,latitude,longitude,accuracy\n" +
@@ -223,8 +253,8 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData2, expectedAuditContent);
 
         // Upgrade a form to use location and tracking changes
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, true, false, false);
-        writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChanges());
+        writer = new BufferedAuditEventWriter(auditFile, true, true, false, false, Runnable::run);
+        writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChanges(), false);
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData3 = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value\n" +
@@ -259,8 +289,8 @@ public class AsyncTaskAuditEventWriterTest {
         assertEquals(expectedData3, expectedAuditContent);
 
         // Upgrade a form to use location and tracking changes and user
-        writer = new AsyncTaskAuditEventWriter(auditFile, true, true, true, false);
-        writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChangesAndUser());
+        writer = new BufferedAuditEventWriter(auditFile, true, true, true, false, Runnable::run);
+        writer.writeEvents(getMoreSampleAuditEventsWithLocationsAndTrackingChangesAndUser(), false);
 
         expectedAuditContent = FileUtils.readFileToString(auditFile);
         String expectedData4 = "event,node,start,end,latitude,longitude,accuracy,old-value,new-value,user\n" +
@@ -161,7 +161,7 @@ public class FormSaveViewModelTest {
         whenFormSaverFinishes(SaveFormToDisk.SAVED);
 
         InOrder verifier = inOrder(logger);
-        verifier.verify(logger).flush();
+        verifier.verify(logger).flushBeforeSave();
         verifier.verify(logger).logEvent(
                 AuditEvent.AuditEventType.FORM_SAVE,
                 false,
@@ -177,7 +177,7 @@ public class FormSaveViewModelTest {
         whenFormSaverFinishes(SaveFormToDisk.SAVED);
 
         InOrder verifier = inOrder(logger);
-        verifier.verify(logger).flush();
+        verifier.verify(logger).flushBeforeSave();
         verifier.verify(logger).logEvent(
                 AuditEvent.AuditEventType.FORM_SAVE,
                 false,
@@ -213,7 +213,7 @@ public class FormSaveViewModelTest {
         whenFormSaverFinishes(SaveFormToDisk.SAVE_ERROR);
 
         InOrder verifier = inOrder(logger);
-        verifier.verify(logger).flush();
+        verifier.verify(logger).flushBeforeSave();
         verifier.verify(logger).logEvent(AuditEvent.AuditEventType.SAVE_ERROR, true, CURRENT_TIME);
     }
 
@@ -234,7 +234,7 @@ public class FormSaveViewModelTest {
         whenFormSaverFinishes(SaveFormToDisk.ENCRYPTION_ERROR);
 
         InOrder verifier = inOrder(logger);
-        verifier.verify(logger).flush();
+        verifier.verify(logger).flushBeforeSave();
         verifier.verify(logger).logEvent(AuditEvent.AuditEventType.FINALIZE_ERROR, true, CURRENT_TIME);
     }
 
@@ -254,7 +254,7 @@ public class FormSaveViewModelTest {
         whenFormSaverFinishes(FormEntryController.ANSWER_CONSTRAINT_VIOLATED);
 
         InOrder verifier = inOrder(logger);
-        verifier.verify(logger).flush();
+        verifier.verify(logger).flushBeforeSave();
         verifier.verify(logger).logEvent(AuditEvent.AuditEventType.CONSTRAINT_ERROR, true, CURRENT_TIME);
     }
 
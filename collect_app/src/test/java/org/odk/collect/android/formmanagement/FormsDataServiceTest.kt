@@ -6,6 +6,7 @@ import androidx.test.core.app.ApplicationProvider
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import org.hamcrest.MatcherAssert.assertThat
 import org.hamcrest.Matchers.equalTo
+import org.javarosa.core.reference.ReferenceManager
 import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
@@ -23,17 +24,22 @@ import org.odk.collect.android.notifications.Notifier
 import org.odk.collect.android.projects.ProjectDependencyModule
 import org.odk.collect.android.storage.StorageSubdirectory
 import org.odk.collect.android.utilities.ChangeLockProvider
+import org.odk.collect.android.utilities.ExternalizableFormDefCache
+import org.odk.collect.android.utilities.FormUtils as CollectFormUtils
 import org.odk.collect.androidshared.data.AppState
 import org.odk.collect.androidtest.getOrAwaitValue
 import org.odk.collect.androidtest.recordValues
+import org.odk.collect.forms.Form
 import org.odk.collect.forms.FormListItem
 import org.odk.collect.forms.FormSource
 import org.odk.collect.forms.FormSourceException
 import org.odk.collect.formstest.FormUtils
 import org.odk.collect.projects.Project
 import org.odk.collect.settings.keys.ProjectKeys
+import org.odk.collect.shared.files.FileHashCache
 import org.odk.collect.shared.locks.BooleanChangeLock
 import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.io.File
 
 @RunWith(AndroidJUnit4::class)
 class FormsDataServiceTest {
@@ -62,6 +68,7 @@ class FormsDataServiceTest {
 
     @Before
     fun setup() {
+        CollectFormUtils.releaseReferenceManager()
         project = setupProject()
 
         val projectDependencyModule = ProjectDependencyModule(
@@ -83,8 +90,10 @@ class FormsDataServiceTest {
         formsDataService = FormsDataService(
             appState = AppState(),
             notifier = notifier,
-            projectDependencyModuleFactory = projectDependencyModuleFactory
-        ) { 0 }
+            projectDependencyModuleFactory = projectDependencyModuleFactory,
+            clock = { 0 },
+            formUpdateScheduler = mock()
+        )
     }
 
     @Test
@@ -244,6 +253,71 @@ class FormsDataServiceTest {
         }
     }
 
+    @Test
+    fun `warmUpForms() records forms that have been warmed up in the project's cache dir`() {
+        val form = addFormToWarmUp("formId")
+
+        formsDataService.warmUpForms(project.uuid) { false }
+        assertThat(getWarmedUpFormsFile().readLines(), equalTo(listOf(getWarmUpKey(form))))
+    }
+
+    @Test
+    fun `warmUpForms() caches the FormDef for each form`() {
+        val form = addFormToWarmUp("formId")
+
+        formsDataService.warmUpForms(project.uuid) { false }
+        assertThat(ExternalizableFormDefCache(FileHashCache()).readCache(File(form.formFilePath)) != null, equalTo(true))
+    }
+
+    @Test
+    fun `warmUpForms() skips forms that have already been warmed up`() {
+        val form = addFormToWarmUp("formId")
+        formsDataService.warmUpForms(project.uuid) { false }
+
+        // Warming up the form again would fail now and remove it from the warmed up forms
+        File(form.formFilePath).delete()
+        formsDataService.warmUpForms(project.uuid) { false }
+        assertThat(getWarmedUpFormsFile().readLines(), equalTo(listOf(getWarmUpKey(form))))
+    }
+
+    @Test
+    fun `warmUpForms() forgets forms that have been deleted`() {
+        val form = addFormToWarmUp("formId")
+        formsDataService.warmUpForms(project.uuid) { false }
+
+        formsRepositoryProvider.create(project.uuid).delete(form.dbId)
+        val otherForm = addFormToWarmUp("otherFormId")
+        formsDataService.warmUpForms(project.uuid) { false }
+        assertThat(getWarmedUpFormsFile().readLines(), equalTo(listOf(getWarmUpKey(otherForm))))
+    }
+
+    @Test
+    fun `warmUpForms() does nothing when cancelled`() {
+        addFormToWarmUp("formId")
+
+        formsDataService.warmUpForms(project.uuid) { true }
+        assertThat(getWarmedUpFormsFile().exists(), equalTo(false))
+    }
+
+    @Test
+    fun `warmUpForms() does not warm up forms while the reference manager is in use by a form`() {
+        val form = addFormToWarmUp("formId")
+
+        val projectRootDir = File(storagePathProvider.getProjectRootDirPath(project.uuid))
+        CollectFormUtils.setupReferenceManagerForForm(
+            ReferenceManager.instance(),
+            projectRootDir,
+            File(form.formMediaPath)
+        )
+
+        formsDataService.warmUpForms(project.uuid) { false }
+        assertThat(getWarmedUpFormsFile().exists(), equalTo(false))
+
+        CollectFormUtils.releaseReferenceManager()
+        formsDataService.warmUpForms(project.uuid) { false }
+        assertThat(getWarmedUpFormsFile().readLines(), equalTo(listOf(getWarmUpKey(form))))
+    }
+
     private fun addFormToServer(updatedXForm: String, formId: String, formVersion: String) {
         whenever(formSource.fetchFormList()).doReturn(
             listOf(
@@ -268,6 +342,26 @@ class FormsDataServiceTest {
         )
     }
 
+    private fun addFormToWarmUp(formId: String): Form {
+        component.currentProjectProvider().setCurrentProject(project.uuid)
+
+        val formsDir = storagePathProvider.getOdkDirPath(StorageSubdirectory.FORMS, project.uuid)
+        val formMediaDir = File(formsDir, "$formId-media").also { it.mkdirs() }
+        return formsRepositoryProvider.create(project.uuid).save(
+            FormUtils.buildForm(formId, "1", formsDir)
+                .formMediaPath(formMediaDir.absolutePath)
+                .build()
+        )
+    }
+
+    private fun getWarmedUpFormsFile(): File {
+        return File(storagePathProvider.getOdkDirPath(StorageSubdirectory.CACHE, project.uuid), "warmed_up_forms")
+    }
+
+    private fun getWarmUpKey(form: Form): String {
+        return "${form.mD5Hash}:${form.lastDetectedAttachmentsUpdateDate}"
+    }
+
     private fun setupProject(): Project.Saved {
         val projectsRepository = component.projectsRepository()
         return projectsRepository.save(Project.New("blah", "B", "#ffffff"))
@@ -23,6 +23,10 @@ import org.odk.collect.formstest.InMemFormsRepository
 import org.odk.collect.shared.TempFiles
 import org.odk.collect.shared.strings.Md5.getMd5Hash
 import java.io.File
+import java.io.InputStream
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 
 class ServerFormUseCasesTest {
 
@@ -226,4 +230,56 @@ class ServerFormUseCasesTest {
 
         assertThat(result, equalTo(MediaFilesDownloadResult(false, false)))
     }
+
+    @Test
+    fun `downloadMediaFiles downloads media files concurrently`() {
+        val mediaFiles = listOf(
+            MediaFile("file1", "hash1", "downloadUrl1"),
+            MediaFile("file2", "hash2", "downloadUrl2")
+        )
+        val serverFormDetails = ServerFormDetails(
+            null,
+            null,
+            "formId",
+            "1",
+            null,
+            false,
+            true,
+            ManifestFile(null, mediaFiles)
+        )
+
+        val fetchesStarted = CountDownLatch(2)
+        val fetchesOverlapped = AtomicBoolean(true)
+        val fetch = Answer<InputStream> {
+            fetchesStarted.countDown()
+            if (!fetchesStarted.await(5, TimeUnit.SECONDS)) {
+                fetchesOverlapped.set(false)
+            }
+
+            "contents".toByteArray().inputStream()
+        }
+
+        val formSource = mock<FormSource> {
+            on { fetchMediaFile("downloadUrl1") }.thenAnswer(fetch)
+            on { fetchMediaFile("downloadUrl2") }.thenAnswer(fetch)
+        }
+
+        val tempMediaPath = File(TempFiles.createTempDir(), "temp").absolutePath
+        val result = ServerFormUseCases.downloadMediaFiles(
+            serverFormDetails,
+            formSource,
+            InMemFormsRepository(),
+            tempMediaPath,
+            TempFiles.createTempDir(),
+            InMemEntitiesRepository(),
+            mock(),
+            mock(),
+            concurrency = 2
+        )
+
+        assertThat(fetchesOverlapped.get(), equalTo(true))
+        assertThat(result, equalTo(MediaFilesDownloadResult(true, false)))
+        assertThat(File(tempMediaPath, "file1").readText(), equalTo("contents"))
+        assertThat(File(tempMediaPath, "file2").readText(), equalTo("contents"))
+    }
 }
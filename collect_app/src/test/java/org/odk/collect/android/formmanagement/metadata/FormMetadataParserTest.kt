@@ -421,4 +421,36 @@ class FormMetadataParserTest {
 
         assertThat(formMetadata.geometryXPath, equalTo("/data/location2"))
     }
+
+    @Test
+    fun readMetadata_withoutGeopointsInMainInstance_doesNotReadPastHead() {
+        val formMetadata = readMetadata(
+            """
+                <?xml version="1.0"?>
+                <h:html xmlns:h="http://www.w3.org/1999/xhtml"
+                        xmlns="http://www.w3.org/2002/xforms">
+                    <h:head>
+                        <h:title>Secondary instance</h:title>
+                        <model>
+                            <instance>
+                                <data id="secondary-instance">
+                                    <name />
+                                </data>
+                            </instance>
+                            <instance id="locations">
+                                <data>
+                                    <location />
+                                </data>
+                            </instance>
+                            <bind nodeset="/data/location" type="geopoint" />
+                        </model>
+                    </h:head>
+                    <h:body>
+                        <input ref="/data/name">
+            """.trimIndent().byteInputStream()
+        )
+
+        assertThat(formMetadata.id, equalTo("secondary-instance"))
+        assertThat(formMetadata.geometryXPath, equalTo(null))
+    }
 }
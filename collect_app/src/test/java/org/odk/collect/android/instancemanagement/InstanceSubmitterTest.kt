@@ -0,0 +1,168 @@
+package org.odk.collect.android.instancemanagement
+
+import android.app.Application
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.notNullValue
+import org.hamcrest.Matchers.nullValue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+import org.odk.collect.android.storage.StoragePathProvider
+import org.odk.collect.android.storage.StorageSubdirectory
+import org.odk.collect.android.support.CollectHelpers
+import org.odk.collect.android.utilities.FormsRepositoryProvider
+import org.odk.collect.android.utilities.InstancesRepositoryProvider
+import org.odk.collect.forms.FormsRepository
+import org.odk.collect.forms.instances.Instance
+import org.odk.collect.forms.instances.InstancesRepository
+import org.odk.collect.formstest.FormFixtures
+import org.odk.collect.formstest.InstanceFixtures
+import org.odk.collect.openrosa.http.CaseInsensitiveHeaders
+import org.odk.collect.openrosa.http.HttpHeadResult
+import org.odk.collect.openrosa.http.HttpPostResult
+import org.odk.collect.openrosa.http.OpenRosaHttpInterface
+import org.odk.collect.settings.keys.ProjectKeys
+import org.odk.collect.shared.settings.InMemSettings
+import java.io.File
+import java.net.URI
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+@RunWith(AndroidJUnit4::class)
+class InstanceSubmitterTest {
+
+    private val httpInterface = mock<OpenRosaHttpInterface>()
+    private val generalSettings = InMemSettings().also {
+        it.save(ProjectKeys.KEY_SERVER_URL, "http://example.com")
+        it.save(ProjectKeys.KEY_DELETE_AFTER_SEND, true)
+        it.save(ProjectKeys.KEY_SUBMISSION_CONCURRENCY, 3)
+    }
+
+    private lateinit var formsRepository: FormsRepository
+    private lateinit var instancesRepository: InstancesRepository
+    private lateinit var instancesDir: File
+
+    private val uploadedTo = Collections.synchronizedList(mutableListOf<URI>())
+
+    @Before
+    fun setup() {
+        val projectId = CollectHelpers.setupDemoProject()
+        val application = ApplicationProvider.getApplicationContext<Application>()
+        formsRepository = FormsRepositoryProvider(application).create(projectId)
+        instancesRepository = InstancesRepositoryProvider(application).create(projectId)
+        instancesDir = File(StoragePathProvider().getOdkDirPath(StorageSubdirectory.INSTANCES))
+
+        formsRepository.save(FormFixtures.form())
+
+        val redirectHeaders = mock<CaseInsensitiveHeaders> {
+            on { containsHeader("Location") } doReturn true
+            on { getAnyValue("Location") } doReturn "https://example.com/submission"
+        }
+        whenever(httpInterface.executeHeadRequest(any(), any())).thenReturn(HttpHeadResult(204, redirectHeaders))
+    }
+
+    @Test
+    fun `submitInstances uploads, marks and auto-deletes each instance when uploading concurrently`() {
+        val instances = (1..5).map { saveInstance(it.toLong()) }
+        val first = instances.first()
+
+        val concurrentUploads = CountDownLatch(2)
+        val overlapped = Collections.synchronizedList(mutableListOf<Boolean>())
+        stubUploads { submissionFile ->
+            if (submissionFile.absolutePath != first.instanceFilePath) {
+                concurrentUploads.countDown()
+                overlapped.add(concurrentUploads.await(5, TimeUnit.SECONDS))
+            }
+
+            201
+        }
+
+        val result = createSubmitter().submitInstances(instances)
+
+        assertThat(result.values.toList(), equalTo(List(5) { null }))
+        assertThat(overlapped.all { it }, equalTo(true))
+        instances.forEach {
+            val instance = instancesRepository[it.dbId]!!
+            assertThat(instance.status, equalTo(Instance.STATUS_SUBMITTED))
+            assertThat(instance.deletedDate, notNullValue())
+        }
+    }
+
+    @Test
+    fun `submitInstances returns results in last changed order`() {
+        val instances = listOf(3L, 1L, 5L, 2L, 4L).map { saveInstance(it) }
+        stubUploads { 201 }
+
+        val result = createSubmitter().submitInstances(instances)
+
+        assertThat(
+            result.keys.map { it.lastStatusChangeDate },
+            contains(1L, 2L, 3L, 4L, 5L)
+        )
+    }
+
+    @Test
+    fun `submitInstances continues uploading other instances when one fails`() {
+        val instances = (1..5).map { saveInstance(it.toLong()) }
+        val failing = instances[2]
+        stubUploads { submissionFile ->
+            if (submissionFile.absolutePath == failing.instanceFilePath) 500 else 201
+        }
+
+        val result = createSubmitter().submitInstances(instances)
+
+        assertThat(result[failing], notNullValue())
+        assertThat(instancesRepository[failing.dbId]!!.status, equalTo(Instance.STATUS_SUBMISSION_FAILED))
+        assertThat(instancesRepository[failing.dbId]!!.deletedDate, nullValue())
+
+        instances.filter { it != failing }.forEach {
+            assertThat(result[it], nullValue())
+            assertThat(instancesRepository[it.dbId]!!.status, equalTo(Instance.STATUS_SUBMITTED))
+        }
+    }
+
+    @Test
+    fun `submitInstances only makes one HEAD request and reuses the redirected URL for every upload`() {
+        val instances = (1..5).map { saveInstance(it.toLong()) }
+        stubUploads { 201 }
+
+        createSubmitter().submitInstances(instances)
+
+        verify(httpInterface, times(1)).executeHeadRequest(any(), any())
+        assertThat(uploadedTo.size, equalTo(5))
+        assertThat(uploadedTo.toSet(), equalTo(setOf(URI("https://example.com/submission?deviceID="))))
+    }
+
+    private fun createSubmitter(): InstanceSubmitter {
+        return InstanceSubmitter(formsRepository, generalSettings, mock(), httpInterface, instancesRepository)
+    }
+
+    private fun saveInstance(lastStatusChangeDate: Long): Instance {
+        return instancesRepository.save(
+            InstanceFixtures.instance(
+                status = Instance.STATUS_COMPLETE,
+                lastStatusChangeDate = lastStatusChangeDate,
+                instancesDir = instancesDir,
+                formVersion = "1"
+            )
+        )
+    }
+
+    private fun stubUploads(responseCode: (File) -> Int) {
+        whenever(httpInterface.uploadSubmissionAndFiles(any(), any(), any(), any(), any())).thenAnswer {
+            uploadedTo.add(it.getArgument(2))
+            HttpPostResult("", responseCode(it.getArgument(0)), "")
+        }
+    }
+}
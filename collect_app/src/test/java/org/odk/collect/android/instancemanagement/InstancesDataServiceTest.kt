@@ -10,10 +10,16 @@ import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.verifyNoInteractions
 import org.mockito.kotlin.whenever
+import org.odk.collect.android.formentry.FormEntryUseCases
 import org.odk.collect.android.notifications.Notifier
 import org.odk.collect.android.projects.ProjectDependencyModule
+import org.odk.collect.android.storage.StoragePaths
+import org.odk.collect.android.support.CollectHelpers
 import org.odk.collect.android.utilities.ChangeLocks
+import org.odk.collect.android.utilities.ExternalizableFormDefCache
 import org.odk.collect.androidshared.data.AppState
+import org.odk.collect.entities.storage.InMemEntitiesRepository
+import org.odk.collect.forms.instances.Instance
 import org.odk.collect.forms.instances.Instance.STATUS_COMPLETE
 import org.odk.collect.forms.instances.Instance.STATUS_INCOMPLETE
 import org.odk.collect.forms.instances.Instance.STATUS_INVALID
@@ -23,11 +29,14 @@ import org.odk.collect.forms.instances.Instance.STATUS_VALID
 import org.odk.collect.formstest.FormFixtures
 import org.odk.collect.formstest.InMemFormsRepository
 import org.odk.collect.formstest.InMemInstancesRepository
+import org.odk.collect.formstest.InMemSavepointsRepository
 import org.odk.collect.formstest.InstanceFixtures
 import org.odk.collect.openrosa.http.HttpGetResult
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface
 import org.odk.collect.projects.ProjectDependencyFactory
 import org.odk.collect.settings.keys.ProjectKeys
+import org.odk.collect.shared.TempFiles
+import org.odk.collect.shared.files.FileHashCache
 import org.odk.collect.shared.locks.BooleanChangeLock
 import org.odk.collect.shared.settings.InMemSettings
 import java.io.File
@@ -44,11 +53,14 @@ class InstancesDataServiceTest {
             },
             { InMemFormsRepository() },
             { InMemInstancesRepository() },
-            mock(),
+            {
+                val rootDir = TempFiles.createTempDir().absolutePath
+                StoragePaths(rootDir, rootDir, rootDir, rootDir, rootDir, rootDir, rootDir)
+            },
             { ChangeLocks(BooleanChangeLock(), BooleanChangeLock()) },
             mock(),
-            mock(),
-            mock(),
+            { InMemSavepointsRepository() },
+            { InMemEntitiesRepository() },
             mock()
         )
     }
@@ -66,6 +78,7 @@ class InstancesDataServiceTest {
             notifier,
             mock(),
             httpInterface,
+            FileHashCache(),
             mock()
         )
 
@@ -116,6 +129,27 @@ class InstancesDataServiceTest {
         assertThat(result, equalTo(false))
     }
 
+    @Test
+    fun `finalizeAllDrafts() releases the reference manager so that forms can still be warmed up`() {
+        CollectHelpers.setupDemoProject()
+
+        val formsRepository = projectDependencyModule.formsRepository
+        val form = formsRepository.save(FormFixtures.form())
+
+        val instancesRepository = projectDependencyModule.instancesRepository
+        val instance = instancesRepository.save(InstanceFixtures.instance(form = form, status = STATUS_INCOMPLETE))
+        File(instance.instanceFilePath).delete()
+
+        instancesDataService.finalizeAllDrafts(projectId)
+
+        val warmedUp = FormEntryUseCases.warmUpForm(
+            form,
+            File(projectDependencyModule.rootDir),
+            ExternalizableFormDefCache(FileHashCache())
+        ) { false }
+        assertThat(warmedUp, equalTo(true))
+    }
+
     @Test
     fun `#reset does not reset instances that can't be deleted before sending`() {
         val formsRepository = projectDependencyModule.formsRepository
@@ -194,6 +228,22 @@ class InstancesDataServiceTest {
         assertThat(instancesDataService.getEditableCount("otherProjectId").value, equalTo(0))
         assertThat(instancesDataService.getSendableCount("otherProjectId").value, equalTo(0))
     }
+
+    @Test
+    fun `#update picks up instances saved since the last update`() {
+        val instancesRepository = projectDependencyModule.instancesRepository
+        val instance = instancesRepository.save(InstanceFixtures.instance(status = STATUS_INCOMPLETE))
+        instancesDataService.update(projectId)
+
+        instancesRepository.save(Instance.Builder(instance).status(STATUS_COMPLETE).build())
+        instancesDataService.update(projectId)
+        assertThat(
+            instancesDataService.getInstances(projectId).value,
+            equalTo(instancesRepository.all)
+        )
+        assertThat(instancesDataService.getEditableCount(projectId).value, equalTo(0))
+        assertThat(instancesDataService.getSendableCount(projectId).value, equalTo(1))
+    }
 }
 
 class CachingProjectDependencyModuleFactory(private val moduleFactory: (String) -> ProjectDependencyModule) :
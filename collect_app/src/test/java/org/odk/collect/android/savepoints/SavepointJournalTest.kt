@@ -0,0 +1,139 @@
+package org.odk.collect.android.savepoints
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.javarosa.core.model.data.StringData
+import org.javarosa.core.model.instance.TreeElement
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.shared.TempFiles
+import java.io.File
+
+@RunWith(AndroidJUnit4::class)
+class SavepointJournalTest {
+
+    private val savepointFile = File(TempFiles.createTempDir(), "instance.xml.save")
+    private var snapshots = 0
+
+    private val root = TreeElement("data").apply {
+        addChild(TreeElement("name").apply { setValue(StringData("Alice")) })
+        addChild(TreeElement("age"))
+    }
+
+    @Test
+    fun `first write writes a snapshot`() {
+        val journal = SavepointJournal(savepointFile)
+        journal.write(root, ::snapshot)
+
+        assertThat(snapshots, equalTo(1))
+        assertThat(savepointFile.readText().trim(), equalTo("snapshot 1"))
+        assertThat(SavepointJournal.readChanges(savepointFile), equalTo(emptyMap()))
+    }
+
+    @Test
+    fun `changed values are appended to the journal without rewriting the snapshot`() {
+        val journal = SavepointJournal(savepointFile)
+        journal.write(root, ::snapshot)
+
+        root.getChild("age", 0).setValue(StringData("32"))
+        journal.write(root, ::snapshot)
+        root.getChild("name", 0).setValue(null)
+        journal.write(root, ::snapshot)
+
+        assertThat(snapshots, equalTo(1))
+        assertThat(
+            SavepointJournal.readChanges(savepointFile),
+            equalTo(mapOf("/data/age" to "32", "/data/name" to null))
+        )
+    }
+
+    @Test
+    fun `the snapshot is rewritten when the structure of the instance changes`() {
+        val journal = SavepointJournal(savepointFile)
+        journal.write(root, ::snapshot)
+        root.getChild("age", 0).setValue(StringData("32"))
+        journal.write(root, ::snapshot)
+
+        root.addChild(TreeElement("email"))
+        journal.write(root, ::snapshot)
+
+        assertThat(snapshots, equalTo(2))
+        assertThat(SavepointJournal.readChanges(savepointFile), equalTo(emptyMap()))
+    }
+
+    @Test
+    fun `the snapshot is rewritten when relevance changes`() {
+        val journal = SavepointJournal(savepointFile)
+        journal.write(root, ::snapshot)
+
+        root.getChild("age", 0).setRelevant(false)
+        journal.write(root, ::snapshot)
+
+        assertThat(snapshots, equalTo(2))
+    }
+
+    @Test
+    fun `the snapshot is rewritten when it has been deleted`() {
+        val journal = SavepointJournal(savepointFile)
+        journal.write(root, ::snapshot)
+
+        savepointFile.delete()
+        root.getChild("age", 0).setValue(StringData("32"))
+        journal.write(root, ::snapshot)
+
+        assertThat(snapshots, equalTo(2))
+        assertThat(savepointFile.exists(), equalTo(true))
+    }
+
+    @Test
+    fun `the snapshot is rewritten when the journal gets too big`() {
+        val journal = SavepointJournal(savepointFile)
+        journal.write(root, ::snapshot)
+
+        // Each change is 18 bytes and the snapshot is 200 so it should be rewritten on the 7th
+        for (i in 0 until 7) {
+            root.getChild("age", 0).setValue(StringData(i.toString()))
+            journal.write(root, ::snapshot)
+        }
+
+        assertThat(snapshots, equalTo(2))
+        assertThat(SavepointJournal.readChanges(savepointFile), equalTo(emptyMap()))
+    }
+
+    @Test
+    fun `readChanges ignores a journal that does not belong to the snapshot`() {
+        val journal = SavepointJournal(savepointFile)
+        journal.write(root, ::snapshot)
+        root.getChild("age", 0).setValue(StringData("32"))
+        journal.write(root, ::snapshot)
+
+        savepointFile.writeText("a different snapshot")
+
+        assertThat(SavepointJournal.readChanges(savepointFile), equalTo(emptyMap()))
+    }
+
+    @Test
+    fun `readChanges ignores a partially written change`() {
+        val journal = SavepointJournal(savepointFile)
+        journal.write(root, ::snapshot)
+        root.getChild("age", 0).setValue(StringData("32"))
+        journal.write(root, ::snapshot)
+
+        SavepointJournal.getJournalFile(savepointFile).appendText("[\"/data/name\", \"Bo")
+
+        assertThat(SavepointJournal.readChanges(savepointFile), equalTo(mapOf<String, String?>("/data/age" to "32")))
+    }
+
+    @Test
+    fun `getLastModified returns the time the journal was last written if it is newer than the snapshot`() {
+        val journal = SavepointJournal(savepointFile)
+        journal.write(root, ::snapshot)
+        savepointFile.setLastModified(1000)
+        SavepointJournal.getJournalFile(savepointFile).setLastModified(2000)
+
+        assertThat(SavepointJournal.getLastModified(savepointFile), equalTo(2000L))
+    }
+
+    private fun snapshot() = "snapshot ${++snapshots}".padEnd(200).byteInputStream()
+}
@@ -0,0 +1,122 @@
+package org.odk.collect.android.utilities
+
+import android.util.Base64
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.android.javarosawrapper.InstanceMetadata
+import org.odk.collect.android.utilities.EncryptionUtils.EncryptedFormInformation
+import org.odk.collect.shared.TempFiles
+import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.io.File
+import java.security.KeyPairGenerator
+import java.security.MessageDigest
+import java.security.NoSuchProviderException
+import javax.crypto.Cipher
+import javax.crypto.spec.IvParameterSpec
+import kotlin.random.Random
+
+@RunWith(AndroidJUnit4::class)
+class EncryptionUtilsTest {
+
+    private val keyPair = KeyPairGenerator.getInstance(EncryptionUtils.RSA_ALGORITHM).apply {
+        initialize(2048)
+    }.generateKeyPair()
+
+    private val instanceDir = TempFiles.createTempDir()
+    private val instanceXml = File(instanceDir, "instance.xml").also { it.writeText("<data><name>Alice</name></data>") }
+    private val submissionXml = File(instanceDir, "submission.xml").also { it.writeText("<data><name>Alice</name></data>") }
+
+    @Test
+    fun `generateEncryptedSubmission encrypts each attachment and the submission with the next IV`() {
+        val originals = createAttachments() + (submissionXml.name to submissionXml.readBytes())
+        val formInfo = EncryptedFormInformation("form", "1", InstanceMetadata("uuid:1", null, null), keyPair.public)
+        val ivSeed = formInfo.ivSeedArray.copyOf()
+
+        EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, formInfo)
+
+        val manifest = submissionXml.readText()
+        val encryptedFiles = getMediaFiles(manifest) + "submission.xml.enc"
+        assertThat(encryptedFiles.size, equalTo(originals.size))
+
+        val symmetricKey = decryptWithPrivateKey(getElement(manifest, "base64EncryptedKey"))
+        assertThat(symmetricKey, equalTo(formInfo.symmetricKey.encoded))
+
+        encryptedFiles.forEachIndexed { index, encryptedFile ->
+            ++ivSeed[index % ivSeed.size]
+
+            val cipher = getSymmetricCipher()
+            cipher.init(Cipher.DECRYPT_MODE, formInfo.symmetricKey, IvParameterSpec(ivSeed))
+            val decrypted = cipher.doFinal(File(instanceDir, encryptedFile).readBytes())
+
+            assertThat(decrypted, equalTo(originals[encryptedFile.removeSuffix(".enc")]))
+        }
+    }
+
+    @Test
+    fun `generateEncryptedSubmission signs the same source as before attachments were encrypted in parallel`() {
+        createAttachments()
+        val plaintextHashes = instanceDir.listFiles()!!
+            .filter { it != instanceXml }
+            .associate { it.name to it.getMd5Hash()!! }
+
+        val formInfo = EncryptedFormInformation("form", "1", InstanceMetadata("uuid:1", null, null), keyPair.public)
+        EncryptionUtils.generateEncryptedSubmission(instanceXml, submissionXml, formInfo)
+
+        val manifest = submissionXml.readText()
+        val expectedSource = StringBuilder()
+            .append("form\n")
+            .append("1\n")
+            .append(formInfo.base64RsaEncryptedSymmetricKey).append('\n')
+            .append("uuid:1\n")
+        for (mediaFile in getMediaFiles(manifest)) {
+            val name = mediaFile.removeSuffix(".enc")
+            expectedSource.append(name).append("::").append(plaintextHashes[name]).append('\n')
+        }
+        expectedSource.append("submission.xml::").append(plaintextHashes["submission.xml"]).append('\n')
+
+        assertThat(formInfo.elementSignatureSource.toString(), equalTo(expectedSource.toString()))
+
+        val signature = decryptWithPrivateKey(getElement(manifest, "base64EncryptedElementSignature"))
+        val expectedSignature = MessageDigest.getInstance("MD5").digest(expectedSource.toString().toByteArray())
+        assertThat(signature, equalTo(expectedSignature))
+    }
+
+    private fun createAttachments(): Map<String, ByteArray> {
+        val random = Random(0)
+        return listOf(
+            "photo.jpg" to 200 * 1024,
+            "audio.m4a" to 70 * 1024,
+            "empty.txt" to 0,
+            "drawing.png" to 17
+        ).associate { (name, size) ->
+            val bytes = random.nextBytes(size)
+            File(instanceDir, name).writeBytes(bytes)
+            name to bytes
+        }
+    }
+
+    private fun getMediaFiles(manifest: String): List<String> {
+        return Regex("<file>(.+?)</file>").findAll(manifest).map { it.groupValues[1] }.toList()
+    }
+
+    private fun getElement(manifest: String, name: String): String {
+        return Regex("<$name>(.+?)</$name>").find(manifest)!!.groupValues[1]
+    }
+
+    private fun decryptWithPrivateKey(base64: String): ByteArray {
+        val cipher = Cipher.getInstance(EncryptionUtils.ASYMMETRIC_ALGORITHM)
+        cipher.init(Cipher.DECRYPT_MODE, keyPair.private)
+        return cipher.doFinal(Base64.decode(base64, Base64.NO_WRAP))
+    }
+
+    private fun getSymmetricCipher(): Cipher {
+        return try {
+            Cipher.getInstance(EncryptionUtils.SYMMETRIC_ALGORITHM, "BC")
+        } catch (e: NoSuchProviderException) {
+            Cipher.getInstance(EncryptionUtils.SYMMETRIC_ALGORITHM)
+        }
+    }
+}
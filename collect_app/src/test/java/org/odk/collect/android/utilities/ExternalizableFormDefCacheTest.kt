@@ -0,0 +1,131 @@
+package org.odk.collect.android.utilities
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.nullValue
+import org.javarosa.core.model.FormDef
+import org.javarosa.xform.util.XFormUtils
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.odk.collect.android.BuildConfig
+import org.odk.collect.android.storage.StoragePathProvider
+import org.odk.collect.android.storage.StorageSubdirectory
+import org.odk.collect.android.support.CollectHelpers
+import org.odk.collect.formstest.FormUtils
+import org.odk.collect.shared.files.FileHashCache
+import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.io.DataInputStream
+import java.io.File
+import java.io.RandomAccessFile
+
+@RunWith(AndroidJUnit4::class)
+class ExternalizableFormDefCacheTest {
+
+    private lateinit var formXml: File
+    private lateinit var formDef: FormDef
+    private lateinit var cacheFile: File
+
+    @Before
+    fun setup() {
+        CollectHelpers.setupDemoProject()
+        ExternalizableFormDefCache.clearMemoryCache()
+
+        formXml = FormUtils.createXFormFile("formId", "1", "Cached Form")
+        formDef = formXml.inputStream().use { XFormUtils.getFormFromInputStream(it) }
+        cacheFile = File(
+            StoragePathProvider().getOdkDirPath(StorageSubdirectory.CACHE),
+            formXml.getMd5Hash() + ".formdef"
+        )
+    }
+
+    @Test
+    fun `writeCache writes a header with the format and app version`() {
+        ExternalizableFormDefCache(FileHashCache()).writeCache(formDef, formXml.absolutePath)
+
+        DataInputStream(cacheFile.inputStream()).use {
+            assertThat(it.readInt(), equalTo(0x4F444B46))
+            assertThat(it.readInt(), equalTo(1))
+            assertThat(it.readInt(), equalTo(BuildConfig.VERSION_CODE))
+        }
+    }
+
+    @Test
+    fun `readCache returns the cached FormDef from the cache file`() {
+        val formDefCache = ExternalizableFormDefCache(FileHashCache())
+        formDefCache.writeCache(formDef, formXml.absolutePath)
+        ExternalizableFormDefCache.clearMemoryCache()
+
+        assertThat(formDefCache.readCache(formXml).title, equalTo("Cached Form"))
+    }
+
+    @Test
+    fun `readCache deletes and ignores a cache file written by a different app version`() {
+        val formDefCache = ExternalizableFormDefCache(FileHashCache())
+        formDefCache.writeCache(formDef, formXml.absolutePath)
+        ExternalizableFormDefCache.clearMemoryCache()
+
+        RandomAccessFile(cacheFile, "rw").use {
+            it.seek(8)
+            it.writeInt(BuildConfig.VERSION_CODE - 1)
+        }
+
+        assertThat(formDefCache.readCache(formXml), nullValue())
+        assertThat(cacheFile.exists(), equalTo(false))
+    }
+
+    @Test
+    fun `readCache deletes and ignores a cache file with a different format`() {
+        val formDefCache = ExternalizableFormDefCache(FileHashCache())
+        formDefCache.writeCache(formDef, formXml.absolutePath)
+        ExternalizableFormDefCache.clearMemoryCache()
+
+        cacheFile.writeText("not a formdef")
+
+        assertThat(formDefCache.readCache(formXml), nullValue())
+        assertThat(cacheFile.exists(), equalTo(false))
+    }
+
+    @Test
+    fun `readCache returns a FormDef that was written from memory`() {
+        val formDefCache = ExternalizableFormDefCache(FileHashCache())
+        formDefCache.writeCache(formDef, formXml.absolutePath)
+
+        cacheFile.delete()
+        assertThat(formDefCache.readCache(formXml).title, equalTo("Cached Form"))
+    }
+
+    @Test
+    fun `readCache keeps a FormDef read from the cache file in memory`() {
+        val formDefCache = ExternalizableFormDefCache(FileHashCache())
+        formDefCache.writeCache(formDef, formXml.absolutePath)
+        ExternalizableFormDefCache.clearMemoryCache()
+
+        formDefCache.readCache(formXml)
+
+        cacheFile.delete()
+        assertThat(formDefCache.readCache(formXml).title, equalTo("Cached Form"))
+    }
+
+    @Test
+    fun `FormDefs larger than the max memory entry size are streamed from the cache file instead of kept in memory`() {
+        val formDefCache = ExternalizableFormDefCache(FileHashCache(), 0)
+        formDefCache.writeCache(formDef, formXml.absolutePath)
+
+        assertThat(formDefCache.readCache(formXml).title, equalTo("Cached Form"))
+
+        cacheFile.delete()
+        assertThat(formDefCache.readCache(formXml), nullValue())
+    }
+
+    @Test
+    fun `readCache returns a new FormDef for each read`() {
+        val formDefCache = ExternalizableFormDefCache(FileHashCache())
+        formDefCache.writeCache(formDef, formXml.absolutePath)
+
+        val first = formDefCache.readCache(formXml)
+        val second = formDefCache.readCache(formXml)
+        assertThat(first === second, equalTo(false))
+    }
+}
@@ -1,9 +1,19 @@
 package org.odk.collect.db.sqlite
 
 import android.database.Cursor
+import org.odk.collect.db.sqlite.CursorExt.first
 import org.odk.collect.db.sqlite.SQLiteColumns.ROW_ID
 import org.odk.collect.db.sqlite.SQLiteColumns.ROW_NUMBER
 
+/**
+ * Maintains a "row numbers" table alongside a table so that rows can be queried with a
+ * sequential [ROW_NUMBER] (in `_id` order) without having to count rows at query time.
+ *
+ * Rows added to the table are appended to the row numbers table incrementally the next time row
+ * numbers are queried. Removing rows leaves gaps in the numbering so callers need to use
+ * [invalidateRowNumbers] after deletes, which causes the row numbers table to be rebuilt on the
+ * next query.
+ */
 object RowNumbers {
     fun SynchronizedDatabaseConnection.rawQueryWithRowNumber(table: String, selection: String? = null, selectionArgs: Array<String>? = null): Cursor {
         this.ensureRowIdTable(table)
@@ -50,12 +60,62 @@ object RowNumbers {
     }
 
     private fun SynchronizedDatabaseConnection.ensureRowIdTable(table: String) {
-        resetTransaction {
-            execSQL(
+        val rowIdTable = getRowIdTableName(table)
+        val rowIdIndex = "${rowIdTable}_id_index"
+
+        /**
+         * The index allows queries that filter using an index on [table] to join to
+         * [rowIdTable] without having to scan it.
+         */
+        val exists = withConnection {
+            readableDatabase.rawQuery(
+                "SELECT name FROM sqlite_master WHERE type = 'index' AND name = ?",
+                arrayOf(rowIdIndex)
+            ).use { it.count > 0 }
+        }
+
+        if (!exists) {
+            resetTransaction {
+                execSQL(
+                    """
+                    CREATE TABLE IF NOT EXISTS "$rowIdTable" AS SELECT _id FROM "$table" ORDER BY _id;
+                    """.trimIndent()
+                )
+
+                execSQL(
+                    """
+                    CREATE UNIQUE INDEX IF NOT EXISTS "$rowIdIndex" ON "$rowIdTable" (_id);
+                    """.trimIndent()
+                )
+            }
+        }
+
+        if (hasUnnumberedRows(table)) {
+            transaction {
+                execSQL(
+                    """
+                    INSERT INTO "$rowIdTable" (_id)
+                    SELECT _id FROM "$table"
+                    WHERE _id > IFNULL((SELECT _id FROM "$rowIdTable" ORDER BY $ROW_ID DESC LIMIT 1), 0)
+                    ORDER BY _id;
+                    """.trimIndent()
+                )
+            }
+        }
+    }
+
+    /**
+     * Both lookups here use the tables' primary keys so this is cheap regardless of table size.
+     */
+    private fun SynchronizedDatabaseConnection.hasUnnumberedRows(table: String): Boolean {
+        return withConnection {
+            readableDatabase.rawQuery(
                 """
-                CREATE TABLE IF NOT EXISTS "${getRowIdTableName(table)}" AS SELECT _id FROM "$table" ORDER BY _id;
-                """.trimIndent()
-            )
+                SELECT IFNULL((SELECT MAX(_id) FROM "$table"), 0) >
+                    IFNULL((SELECT _id FROM "${getRowIdTableName(table)}" ORDER BY $ROW_ID DESC LIMIT 1), 0)
+                """.trimIndent(),
+                null
+            ).first { it.getInt(0) == 1 } ?: false
         }
     }
 
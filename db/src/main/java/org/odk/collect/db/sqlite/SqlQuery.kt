@@ -11,8 +11,23 @@ fun Query.toSql(): SqlQuery {
     return when (this) {
         is Query.StringEq -> SqlQuery("$column = ?", arrayOf(value))
         is Query.StringNotEq -> SqlQuery("$column != ?", arrayOf(value))
-        is Query.NumericEq -> SqlQuery("CAST($column AS REAL) = CAST(? AS REAL)", arrayOf(value.toString()))
-        is Query.NumericNotEq -> SqlQuery("CAST($column AS REAL) != CAST(? AS REAL)", arrayOf(value.toString()))
+        is Query.StringIn -> SqlQuery(
+            "$column IN (${values.joinToString(", ") { "?" }})",
+            values.toTypedArray()
+        )
+        /**
+         * GLOB (unlike LIKE) is case-sensitive and can still use an index on the column.
+         */
+        is Query.StringStartsWith -> SqlQuery("$column GLOB ?", arrayOf(escapeGlob(value) + "*"))
+        is Query.StringContains -> SqlQuery("INSTR($column, ?) > 0", arrayOf(value))
+        is Query.NumericEq -> numericComparison(column, "=", value)
+        is Query.NumericNotEq -> numericComparison(column, "=", value).let {
+            SqlQuery("NOT ${it.selection}", it.selectionArgs)
+        }
+        is Query.NumericLessThan -> numericComparison(column, "<", value)
+        is Query.NumericLessThanOrEq -> numericComparison(column, "<=", value)
+        is Query.NumericGreaterThan -> numericComparison(column, ">", value)
+        is Query.NumericGreaterThanOrEq -> numericComparison(column, ">=", value)
         is Query.And -> {
             val sqlA = queryA.toSql()
             val sqlB = queryB.toSql()
@@ -31,3 +46,26 @@ fun Query.toSql(): SqlQuery {
         }
     }
 }
+
+/**
+ * `CAST` converts text that isn't a number to `0` (or to its leading number, like `12` for
+ * `12abc`), so values are only compared if they are entirely numeric (rather than being treated
+ * like `NaN`, which is never equal to, less than or greater than anything). Comparing the column
+ * to a `NUMERIC` cast of itself applies numeric affinity to the column's text, which (unlike
+ * `CAST`) only converts well-formed numbers, so the two sides are only equal for those.
+ */
+private fun numericComparison(column: String, operator: String, value: Double): SqlQuery {
+    return SqlQuery(
+        "($column = CAST($column AS NUMERIC) AND CAST($column AS REAL) $operator CAST(? AS REAL))",
+        arrayOf(value.toString())
+    )
+}
+
+private fun escapeGlob(value: String): String {
+    return value.fold(StringBuilder()) { builder, char ->
+        when (char) {
+            '*', '?', '[' -> builder.append('[').append(char).append(']')
+            else -> builder.append(char)
+        }
+    }.toString()
+}
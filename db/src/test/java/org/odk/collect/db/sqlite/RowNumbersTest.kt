@@ -92,6 +92,47 @@ class RowNumbersTest {
         assertThat(afterRows[1]["position"], equalTo("third"))
         assertThat(afterRows[1][ROW_NUMBER], equalTo("2"))
     }
+
+    @Test
+    fun `#rawQueryWithRowNumber includes rows inserted after the last query without invalidate`() {
+        val dbConnection = SynchronizedDatabaseConnection(
+            context,
+            TempFiles.createTempDir().absolutePath,
+            "temp.db",
+            NoopMigrator(),
+            1
+        )
+
+        dbConnection.resetTransaction {
+            execSQL("CREATE TABLE test_table ($_ID integer PRIMARY KEY, position text)")
+        }
+
+        dbConnection.transaction {
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "first") })
+        }
+
+        val beforeRows =
+            dbConnection.rawQueryWithRowNumber("test_table").foldAndClose { it.rowToMap() }
+        assertThat(beforeRows.size, equalTo(1))
+
+        dbConnection.transaction {
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "second") })
+            insertOrThrow("test_table", null, ContentValues().also { it.put("position", "third") })
+        }
+
+        val afterRows =
+            dbConnection.rawQueryWithRowNumber("test_table").foldAndClose { it.rowToMap() }
+        assertThat(afterRows.size, equalTo(3))
+
+        assertThat(afterRows[0]["position"], equalTo("first"))
+        assertThat(afterRows[0][ROW_NUMBER], equalTo("1"))
+
+        assertThat(afterRows[1]["position"], equalTo("second"))
+        assertThat(afterRows[1][ROW_NUMBER], equalTo("2"))
+
+        assertThat(afterRows[2]["position"], equalTo("third"))
+        assertThat(afterRows[2][ROW_NUMBER], equalTo("3"))
+    }
 }
 
 private class NoopMigrator : DatabaseMigrator {
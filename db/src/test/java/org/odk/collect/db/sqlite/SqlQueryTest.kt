@@ -22,6 +22,54 @@ class SqlQueryTest {
         assertThat(query.selectionArgs, equalTo(arrayOf("30")))
     }
 
+    @Test
+    fun `In query generates correct selection and arguments`() {
+        val query = Query.StringIn("name", listOf("John", "Jane")).toSql()
+
+        assertThat(query.selection, equalTo("name IN (?, ?)"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("John", "Jane")))
+    }
+
+    @Test
+    fun `StartsWith query generates correct selection and escaped arguments`() {
+        val query = Query.StringStartsWith("name", "J*n?[").toSql()
+
+        assertThat(query.selection, equalTo("name GLOB ?"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("J[*]n[?][[]*")))
+    }
+
+    @Test
+    fun `Contains query generates correct selection and arguments`() {
+        val query = Query.StringContains("name", "oh").toSql()
+
+        assertThat(query.selection, equalTo("INSTR(name, ?) > 0"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("oh")))
+    }
+
+    @Test
+    fun `LessThan query generates correct selection and arguments`() {
+        val query = Query.NumericLessThan("age", 30.0).toSql()
+
+        assertThat(query.selection, equalTo("(age = CAST(age AS NUMERIC) AND CAST(age AS REAL) < CAST(? AS REAL))"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("30.0")))
+    }
+
+    @Test
+    fun `GreaterThanOrEq query generates correct selection and arguments`() {
+        val query = Query.NumericGreaterThanOrEq("age", 30.0).toSql()
+
+        assertThat(query.selection, equalTo("(age = CAST(age AS NUMERIC) AND CAST(age AS REAL) >= CAST(? AS REAL))"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("30.0")))
+    }
+
+    @Test
+    fun `NumericNotEq query generates correct selection and arguments`() {
+        val query = Query.NumericNotEq("age", 30.0).toSql()
+
+        assertThat(query.selection, equalTo("NOT (age = CAST(age AS NUMERIC) AND CAST(age AS REAL) = CAST(? AS REAL))"))
+        assertThat(query.selectionArgs, equalTo(arrayOf("30.0")))
+    }
+
     @Test
     fun `And query generates correct selection and arguments`() {
         val queryA = Query.StringEq("name", "John")
@@ -1,5 +1,6 @@
 package org.odk.collect.entities
 
+import org.apache.commons.csv.CSVParser
 import org.apache.commons.csv.CSVRecord
 import org.javarosa.core.model.instance.SecondaryInstanceCSVParserBuilder
 import org.odk.collect.entities.javarosa.finalization.EntitiesExtra
@@ -10,10 +11,17 @@ import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.entities.storage.Entity
 import org.odk.collect.shared.Query
 import java.io.File
+import java.util.BitSet
 import java.util.UUID
 
 object LocalEntityUseCases {
 
+    /**
+     * The number of server entities that are reconciled (and saved) at once. This needs to stay
+     * below SQLite's limit on query parameters as local entities are looked up by ID in batches.
+     */
+    private const val BATCH_SIZE = 500
+
     @JvmStatic
     fun updateLocalEntitiesFromForm(
         formEntities: EntitiesExtra?,
@@ -73,59 +81,99 @@ object LocalEntityUseCases {
             return
         }
 
-        val csvParser = try {
-            SecondaryInstanceCSVParserBuilder()
-                .path(serverList.absolutePath)
-                .build()
-        } catch (_: Exception) {
+        /**
+         * The whole list is checked before anything is saved so that an invalid entity doesn't
+         * leave the local list partially updated.
+         */
+        val isValid = buildParser(serverList)?.use { parser ->
+            parser.iterator().asSequence().all { parseEntityFromRecord(it) != null }
+        } ?: false
+
+        if (!isValid) {
             return
         }
 
-        val localEntities = entitiesRepository.query(list)
-
-        val missingFromServer = localEntities.associateBy { it.id }.toMutableMap()
-        val newAndUpdated = ArrayList<Entity>()
-        csvParser.use {
-            it.forEach { record ->
-                val serverEntity = parseEntityFromRecord(record) ?: return
-                val existing = missingFromServer.remove(serverEntity.id)
-
-                if (existing == null) {
-                    newAndUpdated.add(
-                        Entity.New(
-                            serverEntity.id,
-                            serverEntity.label,
-                            serverEntity.version,
-                            serverEntity.properties.toList(),
-                            state = Entity.State.ONLINE,
-                            trunkVersion = serverEntity.version,
-                            branchId = UUID.randomUUID().toString()
-                        )
-                    )
-                } else if (existing.version < serverEntity.version) {
-                    newAndUpdated.add(serverEntity.updateLocal(existing))
-                } else if (existing.version == serverEntity.version) {
-                    if (existing.isDirty()) {
-                        newAndUpdated.add(serverEntity.updateLocal(existing))
-                    }
-                } else if (existing.state == Entity.State.OFFLINE) {
-                    val update = existing.copy(state = Entity.State.ONLINE)
-                    newAndUpdated.add(update)
+        /**
+         * Server entities are processed in batches so that memory use doesn't grow with the size
+         * of the list. Local entities that are also on the server are tracked by their index
+         * (which won't change as we're only appending and updating here) so we can find the ones
+         * that are missing from the server afterwards.
+         */
+        val localCount = entitiesRepository.getCount(list)
+        val onServer = BitSet(localCount)
+        buildParser(serverList)?.use {
+            it.iterator().asSequence().chunked(BATCH_SIZE).forEach { records ->
+                val serverEntities = records.map { record -> parseEntityFromRecord(record)!! }
+
+                val localEntities = entitiesRepository.query(
+                    list,
+                    Query.StringIn(EntitySchema.ID, serverEntities.map { it.id })
+                ).associateBy { it.id }
+
+                val newAndUpdated = serverEntities.mapNotNull { serverEntity ->
+                    val existing = localEntities[serverEntity.id]
+                    existing?.let { local -> onServer.set(local.index) }
+
+                    reconcile(serverEntity, existing)
+                }
+
+                if (newAndUpdated.isNotEmpty()) {
+                    entitiesRepository.saveAll(list, newAndUpdated)
                 }
             }
+        } ?: return
+
+        /**
+         * Missing entities are also handled in batches. Deleting an entity shifts the index of
+         * every entity after it, so batches are taken from the end of the list backwards to make
+         * sure the indexes that are still to be looked up don't change.
+         */
+        var index = onServer.previousClearBit(localCount - 1)
+        while (index >= 0) {
+            val indexes = ArrayList<Int>(BATCH_SIZE)
+            while (index >= 0 && indexes.size < BATCH_SIZE) {
+                indexes.add(index)
+                index = onServer.previousClearBit(index - 1)
+            }
+
+            handleMissingEntities(
+                list,
+                entitiesRepository.getByIndexes(list, indexes),
+                entitiesRepository,
+                entitySource,
+                integrityUrl
+            )
         }
 
-        handleMissingEntities(
-            list,
-            missingFromServer.values,
-            entitiesRepository,
-            entitySource,
-            integrityUrl
-        )
-        entitiesRepository.save(list, *newAndUpdated.toTypedArray())
         entitiesRepository.updateListHash(list, newListHash)
     }
 
+    private fun reconcile(serverEntity: ServerEntity, existing: Entity.Saved?): Entity? {
+        return if (existing == null) {
+            Entity.New(
+                serverEntity.id,
+                serverEntity.label,
+                serverEntity.version,
+                serverEntity.properties.toList(),
+                state = Entity.State.ONLINE,
+                trunkVersion = serverEntity.version,
+                branchId = UUID.randomUUID().toString()
+            )
+        } else if (existing.version < serverEntity.version) {
+            serverEntity.updateLocal(existing)
+        } else if (existing.version == serverEntity.version) {
+            if (existing.isDirty()) {
+                serverEntity.updateLocal(existing)
+            } else {
+                null
+            }
+        } else if (existing.state == Entity.State.OFFLINE) {
+            existing.copy(state = Entity.State.ONLINE)
+        } else {
+            null
+        }
+    }
+
     private fun handleMissingEntities(
         list: String,
         missingFromServer: Collection<Entity.Saved>,
@@ -149,6 +197,16 @@ object LocalEntityUseCases {
         }
     }
 
+    private fun buildParser(serverList: File): CSVParser? {
+        return try {
+            SecondaryInstanceCSVParserBuilder()
+                .path(serverList.absolutePath)
+                .build()
+        } catch (_: Exception) {
+            null
+        }
+    }
+
     private fun parseEntityFromRecord(record: CSVRecord): ServerEntity? {
         val map = record.toMap()
 
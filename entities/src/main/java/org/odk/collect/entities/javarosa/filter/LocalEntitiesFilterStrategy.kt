@@ -4,10 +4,17 @@ import org.javarosa.core.model.CompareToNodeExpression
 import org.javarosa.core.model.condition.EvaluationContext
 import org.javarosa.core.model.condition.FilterStrategy
 import org.javarosa.core.model.instance.DataInstance
+import org.javarosa.core.model.instance.TreeElement
 import org.javarosa.core.model.instance.TreeReference
 import org.javarosa.xpath.expr.XPathBoolExpr
+import org.javarosa.xpath.expr.XPathCmpExpr
 import org.javarosa.xpath.expr.XPathEqExpr
 import org.javarosa.xpath.expr.XPathExpression
+import org.javarosa.xpath.expr.XPathFuncExpr
+import org.javarosa.xpath.expr.XPathNumericLiteral
+import org.javarosa.xpath.expr.XPathPathExpr
+import org.javarosa.xpath.expr.XPathStep
+import org.javarosa.xpath.expr.XPathStringLiteral
 import org.odk.collect.entities.javarosa.intance.LocalEntitiesInstanceAdapter
 import org.odk.collect.entities.javarosa.intance.LocalEntitiesInstanceProvider
 import org.odk.collect.entities.storage.EntitiesRepository
@@ -21,11 +28,15 @@ import java.util.function.Supplier
  * which requires loading the whole secondary instance into memory (assuming that
  * [LocalEntitiesInstanceProvider] or similar is used to take advantage of JavaRosa's partial
  * parsing).
+ *
+ * Results are cached (until the list is next written to) so that re-evaluating the same filter
+ * (when navigating back and forth in a form for example) doesn't require querying again.
  */
-class LocalEntitiesFilterStrategy(entitiesRepository: EntitiesRepository) :
+class LocalEntitiesFilterStrategy(private val entitiesRepository: EntitiesRepository) :
     FilterStrategy {
 
     private val instanceAdapter = LocalEntitiesInstanceAdapter(entitiesRepository)
+    private val queryResultCache = QueryResultCache<List<TreeElement>>(CACHE_SIZE)
 
     override fun filter(
         sourceInstance: DataInstance<*>,
@@ -60,6 +71,8 @@ class LocalEntitiesFilterStrategy(entitiesRepository: EntitiesRepository) :
         return when (predicate) {
             is XPathBoolExpr -> xPathBoolExprToQuery(predicate, sourceInstance, evaluationContext)
             is XPathEqExpr -> xPathEqExprToQuery(predicate, sourceInstance, evaluationContext)
+            is XPathCmpExpr -> xPathCmpExprToQuery(predicate, sourceInstance, evaluationContext)
+            is XPathFuncExpr -> xPathFuncExprToQuery(predicate, sourceInstance, evaluationContext)
             else -> null
         }
     }
@@ -112,12 +125,119 @@ class LocalEntitiesFilterStrategy(entitiesRepository: EntitiesRepository) :
         }
     }
 
+    private fun xPathCmpExprToQuery(
+        predicate: XPathCmpExpr,
+        sourceInstance: DataInstance<*>,
+        evaluationContext: EvaluationContext,
+    ): Query? {
+        val candidate = CompareToNodeExpression.parse(predicate) ?: return null
+
+        val child = candidate.nodeSide.steps[0].name.name
+        val value = XPathFuncExpr.toNumeric(candidate.evalContextSide(sourceInstance, evaluationContext))
+        if (value.isNaN()) {
+            return null
+        }
+
+        val nodeOnLeft = candidate.nodeSide === predicate.a
+        return when (predicate.op) {
+            XPathCmpExpr.LT -> if (nodeOnLeft) Query.NumericLessThan(child, value) else Query.NumericGreaterThan(child, value)
+            XPathCmpExpr.LTE -> if (nodeOnLeft) Query.NumericLessThanOrEq(child, value) else Query.NumericGreaterThanOrEq(child, value)
+            XPathCmpExpr.GT -> if (nodeOnLeft) Query.NumericGreaterThan(child, value) else Query.NumericLessThan(child, value)
+            XPathCmpExpr.GTE -> if (nodeOnLeft) Query.NumericGreaterThanOrEq(child, value) else Query.NumericLessThanOrEq(child, value)
+            else -> null
+        }
+    }
+
+    /**
+     * Supports `starts-with(child, value)`, `contains(child, value)` and
+     * `selected(value, child)` where `value` doesn't depend on the node being filtered.
+     */
+    private fun xPathFuncExprToQuery(
+        predicate: XPathFuncExpr,
+        sourceInstance: DataInstance<*>,
+        evaluationContext: EvaluationContext,
+    ): Query? {
+        val args = predicate.args
+        if (args.size != 2) {
+            return null
+        }
+
+        return when (predicate.id.toString()) {
+            "starts-with", "contains" -> {
+                val child = getChildName(args[0])
+                if (child == null || !isContextExpression(args[1])) {
+                    return null
+                }
+
+                val value = XPathFuncExpr.toString(args[1].eval(sourceInstance, evaluationContext))
+                if (predicate.id.toString() == "starts-with") {
+                    Query.StringStartsWith(child, value)
+                } else {
+                    Query.StringContains(child, value)
+                }
+            }
+
+            "selected" -> {
+                val child = getChildName(args[1])
+                if (child == null || !isContextExpression(args[0])) {
+                    return null
+                }
+
+                val values = XPathFuncExpr.toString(args[0].eval(sourceInstance, evaluationContext))
+                    .split(" ")
+                    .filter { it.isNotBlank() }
+                Query.StringIn(child, values)
+            }
+
+            else -> null
+        }
+    }
+
+    private fun getChildName(expression: XPathExpression): String? {
+        return if (expression is XPathPathExpr &&
+            expression.init_context == XPathPathExpr.INIT_CONTEXT_RELATIVE &&
+            expression.steps.size == 1 &&
+            expression.steps[0].axis == XPathStep.AXIS_CHILD &&
+            expression.steps[0].test == XPathStep.TEST_NAME &&
+            expression.steps[0].predicates.isEmpty()
+        ) {
+            expression.steps[0].name.name
+        } else {
+            null
+        }
+    }
+
+    /**
+     * Checks that an expression can be evaluated once for the whole filter rather than once per
+     * node (it doesn't contain any paths relative to the node).
+     */
+    private fun isContextExpression(expression: XPathExpression): Boolean {
+        return when (expression) {
+            is XPathStringLiteral, is XPathNumericLiteral -> true
+            is XPathPathExpr -> expression.init_context != XPathPathExpr.INIT_CONTEXT_RELATIVE
+            is XPathFuncExpr -> {
+                val name = expression.id.toString()
+                name != "position" && name != "last" && expression.args.all { isContextExpression(it) }
+            }
+            else -> false
+        }
+    }
+
     private fun queryToTreeReferences(query: Query, sourceInstance: DataInstance<*>): List<TreeReference> {
-        val results = instanceAdapter.query(sourceInstance.instanceId, query)
+        val list = sourceInstance.instanceId
+        val revision = entitiesRepository.getListRevision(list)
+        val results = queryResultCache.getOrPut(list, revision, query) {
+            instanceAdapter.query(list, query)
+        }
+
         sourceInstance.replacePartialElements(results)
         return results.map {
             it.parent = sourceInstance.root
             it.ref
         }
     }
+
+    companion object {
+        private const val CACHE_SIZE = 50
+    }
 }
@@ -7,12 +7,18 @@ import org.odk.collect.entities.javarosa.intance.LocalEntitiesInstanceAdapter
 import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.shared.Query
 
+/**
+ * Handles `pulldata` calls for entity lists by querying just the requested value from an
+ * [EntitiesRepository]. Values are cached (until the list is next written to) as calculations
+ * using `pulldata` will be recomputed many times while filling a form.
+ */
 class PullDataFunctionHandler(
-    entitiesRepository: EntitiesRepository,
+    private val entitiesRepository: EntitiesRepository,
     private val fallback: IFunctionHandler? = null
 ) : IFunctionHandler {
 
     private val instanceAdapter = LocalEntitiesInstanceAdapter(entitiesRepository)
+    private val valueCache = QueryResultCache<String>(CACHE_SIZE)
 
     override fun getName(): String {
         return NAME
@@ -38,8 +44,11 @@ class PullDataFunctionHandler(
             val filterChild = XPathFuncExpr.toString(args[2])
             val filterValue = XPathFuncExpr.toString(args[3])
 
-            instanceAdapter.query(instanceId, Query.StringEq(filterChild, filterValue)).firstOrNull()
-                ?.getFirstChild(child)?.value?.value ?: ""
+            val query = Query.StringEq(filterChild, filterValue)
+            val revision = entitiesRepository.getListRevision(instanceId)
+            valueCache.getOrPut(instanceId, revision, query, child) {
+                entitiesRepository.queryFirstValue(instanceId, query, child) ?: ""
+            }
         } else {
             fallback?.eval(args, ec) ?: ""
         }
@@ -47,5 +56,6 @@ class PullDataFunctionHandler(
 
     companion object {
         private const val NAME = "pulldata"
+        private const val CACHE_SIZE = 100
     }
 }
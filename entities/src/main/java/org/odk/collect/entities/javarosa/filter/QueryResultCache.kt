@@ -0,0 +1,38 @@
+package org.odk.collect.entities.javarosa.filter
+
+import org.odk.collect.entities.storage.EntitiesRepository
+import org.odk.collect.shared.Query
+
+/**
+ * A bounded LRU cache of query results for entity lists. Results are keyed by the list's
+ * revision (see [EntitiesRepository.getListRevision]) as well as the [Query] so any write to a
+ * list means its previous results will no longer be returned (and they'll eventually be evicted).
+ * Results for a single column can be cached separately by passing `column`.
+ */
+internal class QueryResultCache<T>(private val maxSize: Int) {
+
+    private val results = object : LinkedHashMap<Key, T>(maxSize, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, T>?): Boolean {
+            return size > maxSize
+        }
+    }
+
+    @Synchronized
+    fun getOrPut(
+        list: String,
+        revision: Long,
+        query: Query,
+        column: String? = null,
+        result: () -> T
+    ): T {
+        val key = Key(list, revision, query, column)
+        return results[key] ?: result().also { results[key] = it }
+    }
+
+    private data class Key(
+        val list: String,
+        val revision: Long,
+        val query: Query,
+        val column: String?
+    )
+}
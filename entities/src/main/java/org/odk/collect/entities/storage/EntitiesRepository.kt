@@ -4,12 +4,36 @@ import org.odk.collect.shared.Query
 
 interface EntitiesRepository {
     fun save(list: String, vararg entities: Entity)
+
+    /**
+     * Equivalent to [save], but intended for saving large numbers of entities at once (like when
+     * updating from a server list).
+     */
+    fun saveAll(list: String, entities: List<Entity>)
     fun getLists(): Set<String>
     fun getCount(list: String): Int
     fun addList(list: String)
     fun delete(list: String, id: String)
     fun query(list: String, query: Query? = null): List<Entity.Saved>
     fun getByIndex(list: String, index: Int): Entity.Saved?
+
+    /**
+     * Equivalent to calling [getByIndex] for each of [indexes], but intended for looking up large
+     * numbers of entities at once. Indexes that don't exist are ignored.
+     */
+    fun getByIndexes(list: String, indexes: List<Int>): List<Entity.Saved>
+
+    /**
+     * Returns the value of [column] for the first entity matching [query] without loading the
+     * rest of the entity. Returns `null` if there are no matches or if the column doesn't exist.
+     */
+    fun queryFirstValue(list: String, query: Query, column: String): String?
     fun updateListHash(list: String, hash: String)
     fun getListHash(list: String): String?
+
+    /**
+     * Returns a value that changes whenever entities in [list] are saved or deleted, which means
+     * it can be used to check whether previous query results are still valid.
+     */
+    fun getListRevision(list: String): Long
 }
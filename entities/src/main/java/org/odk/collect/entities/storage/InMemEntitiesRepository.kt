@@ -9,6 +9,7 @@ class InMemEntitiesRepository : EntitiesRepository {
     private val listProperties = mutableMapOf<String, MutableSet<String>>()
     private val listVersions = mutableMapOf<String, String>()
     private val entities = mutableMapOf<String, MutableList<Entity.New>>()
+    private val listRevisions = mutableMapOf<String, Long>()
 
     override fun getLists(): Set<String> {
         return lists
@@ -24,6 +25,7 @@ class InMemEntitiesRepository : EntitiesRepository {
 
     override fun delete(list: String, id: String) {
         entities[list]?.removeIf { it.id == id }
+        incrementRevision(list)
     }
 
     override fun query(list: String, query: Query?): List<Entity.Saved> {
@@ -48,11 +50,24 @@ class InMemEntitiesRepository : EntitiesRepository {
                 ?: throw QueryException("No such column: $column")
         }
 
+        /**
+         * Non-numeric values are treated as NaN (which fails every comparison) like in XPath
+         */
+        fun Entity.getNumericFieldValue(column: String): Double =
+            getFieldValue(column).toDoubleOrNull() ?: Double.NaN
+
         return when (query) {
             is Query.StringEq -> entities.filter { it.getFieldValue(query.column) == query.value }
             is Query.StringNotEq -> entities.filter { it.getFieldValue(query.column) != query.value }
+            is Query.StringIn -> entities.filter { query.values.contains(it.getFieldValue(query.column)) }
+            is Query.StringStartsWith -> entities.filter { it.getFieldValue(query.column).startsWith(query.value) }
+            is Query.StringContains -> entities.filter { it.getFieldValue(query.column).contains(query.value) }
             is Query.NumericEq -> entities.filter { it.getFieldValue(query.column).toDoubleOrNull() == query.value }
             is Query.NumericNotEq -> entities.filter { it.getFieldValue(query.column).toDoubleOrNull() != query.value }
+            is Query.NumericLessThan -> entities.filter { it.getNumericFieldValue(query.column) < query.value }
+            is Query.NumericLessThanOrEq -> entities.filter { it.getNumericFieldValue(query.column) <= query.value }
+            is Query.NumericGreaterThan -> entities.filter { it.getNumericFieldValue(query.column) > query.value }
+            is Query.NumericGreaterThanOrEq -> entities.filter { it.getNumericFieldValue(query.column) >= query.value }
             is Query.And -> query(list, query.queryA).intersect(query(list, query.queryB)).toList()
             is Query.Or -> query(list, query.queryA).union(query(list, query.queryB)).toList()
             null -> entities
@@ -63,6 +78,24 @@ class InMemEntitiesRepository : EntitiesRepository {
         return query(list).firstOrNull { it.index == index }
     }
 
+    override fun getByIndexes(list: String, indexes: List<Int>): List<Entity.Saved> {
+        val indexSet = indexes.toSet()
+        return query(list).filter { indexSet.contains(it.index) }
+    }
+
+    override fun queryFirstValue(list: String, query: Query, column: String): String? {
+        val entity = query(list, query).firstOrNull() ?: return null
+
+        return when (column) {
+            EntitySchema.ID -> entity.id
+            EntitySchema.LABEL -> entity.label
+            EntitySchema.VERSION -> entity.version.toString()
+            EntitySchema.TRUNK_VERSION -> entity.trunkVersion?.toString()
+            EntitySchema.BRANCH_ID -> entity.branchId
+            else -> entity.properties.find { it.first == column }?.second
+        }
+    }
+
     override fun updateListHash(list: String, hash: String) {
         listVersions[list] = hash
     }
@@ -71,8 +104,13 @@ class InMemEntitiesRepository : EntitiesRepository {
         return listVersions[list]
     }
 
+    override fun getListRevision(list: String): Long {
+        return listRevisions[list] ?: 0
+    }
+
     override fun save(list: String, vararg entities: Entity) {
         val entityList = this.entities.getOrPut(list) { mutableListOf() }
+        incrementRevision(list)
 
         entities.forEach { entity ->
             updateLists(list, entity)
@@ -84,8 +122,7 @@ class InMemEntitiesRepository : EntitiesRepository {
                     Entity.State.ONLINE -> Entity.State.ONLINE
                 }
 
-                entityList.remove(existing)
-                entityList.add(
+                entityList[entityList.indexOf(existing)] =
                     Entity.New(
                         entity.id,
                         entity.label ?: existing.label,
@@ -95,7 +132,6 @@ class InMemEntitiesRepository : EntitiesRepository {
                         trunkVersion = entity.trunkVersion,
                         branchId = entity.branchId
                     )
-                )
             } else {
                 entityList.add(
                     Entity.New(
@@ -112,6 +148,14 @@ class InMemEntitiesRepository : EntitiesRepository {
         }
     }
 
+    override fun saveAll(list: String, entities: List<Entity>) {
+        save(list, *entities.toTypedArray())
+    }
+
+    private fun incrementRevision(list: String) {
+        listRevisions[list] = getListRevision(list) + 1
+    }
+
     private fun updateLists(list: String, entity: Entity) {
         lists.add(list)
         val properties = listProperties.getOrPut(list) {
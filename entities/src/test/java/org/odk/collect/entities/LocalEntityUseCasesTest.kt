@@ -662,6 +662,97 @@ class LocalEntityUseCasesTest {
         assertThat(songs.isEmpty(), equalTo(true))
     }
 
+    @Test
+    fun `updateLocalEntitiesFromServer updates and removes entities across large lists`() {
+        val serverEntities = (0 until 1200).map {
+            Entity.New("song-$it", "Song $it", version = 1)
+        }
+
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            createEntityList(*serverEntities.toTypedArray()),
+            entitiesRepository,
+            entitySource,
+            UUID.randomUUID().toString(),
+            null
+        )
+        assertThat(entitiesRepository.getCount("songs"), equalTo(1200))
+
+        val updatedServerEntities = serverEntities
+            .filterNot { it.id == "song-10" || it.id == "song-1100" }
+            .map { it.copy(label = "${it.label} (Remix)", version = 2) }
+
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            createEntityList(*updatedServerEntities.toTypedArray()),
+            entitiesRepository,
+            entitySource,
+            UUID.randomUUID().toString(),
+            null
+        )
+
+        val songs = entitiesRepository.query("songs")
+        assertThat(songs.size, equalTo(1198))
+        assertThat(songs.none { it.id == "song-10" || it.id == "song-1100" }, equalTo(true))
+        assertThat(songs.all { it.version == 2 && it.label!!.endsWith("(Remix)") }, equalTo(true))
+    }
+
+    @Test
+    fun `updateLocalEntitiesFromServer removes more missing entities than are processed in one batch`() {
+        val serverEntities = (0 until 1200).map {
+            Entity.New("song-$it", "Song $it", version = 1)
+        }
+
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            createEntityList(*serverEntities.toTypedArray()),
+            entitiesRepository,
+            entitySource,
+            UUID.randomUUID().toString(),
+            null
+        )
+        assertThat(entitiesRepository.getCount("songs"), equalTo(1200))
+
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            createEntityList(*serverEntities.filter { it.id.endsWith("0") }.toTypedArray()),
+            entitiesRepository,
+            entitySource,
+            UUID.randomUUID().toString(),
+            null
+        )
+
+        val songs = entitiesRepository.query("songs")
+        assertThat(songs.size, equalTo(120))
+        assertThat(songs.all { it.id.endsWith("0") }, equalTo(true))
+    }
+
+    @Test
+    fun `updateLocalEntitiesFromServer does nothing if an entity after the first batch is invalid`() {
+        entitiesRepository.save("songs", Entity.New("grisaille", "Grisaille", version = 1))
+        entitiesRepository.updateListHash("songs", "server:old")
+
+        val rows = (0 until 1200).map {
+            listOf("song-$it", "Song $it", "1")
+        } + listOf(listOf("song-1200", "Song 1200"))
+
+        LocalEntityUseCases.updateLocalEntitiesFromServer(
+            "songs",
+            createCsv(
+                listOf(EntitySchema.ID, EntitySchema.LABEL, EntitySchema.VERSION),
+                *rows.toTypedArray()
+            ),
+            entitiesRepository,
+            entitySource,
+            "new",
+            null
+        )
+
+        val songs = entitiesRepository.query("songs")
+        assertThat(songs.map { it.id }, equalTo(listOf("grisaille")))
+        assertThat(entitiesRepository.getListHash("songs"), equalTo("server:old"))
+    }
+
     @Test
     fun `updateLocalEntitiesFromServer updates the list hash with server prefix`() {
         val csv = createEntityList()
@@ -736,6 +827,12 @@ private class MeasurableEntitiesRepository(private val wrapped: EntitiesReposito
         wrapped.save(list, *entities)
     }
 
+    override fun saveAll(list: String, entities: List<Entity>) {
+        accesses += 1
+        savedEntities += entities.size
+        wrapped.saveAll(list, entities)
+    }
+
     override fun getLists(): Set<String> {
         accesses += 1
         return wrapped.getLists()
@@ -765,6 +862,16 @@ private class MeasurableEntitiesRepository(private val wrapped: EntitiesReposito
         return wrapped.getByIndex(list, index)
     }
 
+    override fun getByIndexes(list: String, indexes: List<Int>): List<Entity.Saved> {
+        accesses += 1
+        return wrapped.getByIndexes(list, indexes)
+    }
+
+    override fun queryFirstValue(list: String, query: Query, column: String): String? {
+        accesses += 1
+        return wrapped.queryFirstValue(list, query, column)
+    }
+
     override fun updateListHash(list: String, hash: String) {
         accesses += 1
         wrapped.updateListHash(list, hash)
@@ -774,6 +881,11 @@ private class MeasurableEntitiesRepository(private val wrapped: EntitiesReposito
         accesses += 1
         return wrapped.getListHash(list)
     }
+
+    override fun getListRevision(list: String): Long {
+        accesses += 1
+        return wrapped.getListRevision(list)
+    }
 }
 
 private class FakeEntitySource : EntitySource {
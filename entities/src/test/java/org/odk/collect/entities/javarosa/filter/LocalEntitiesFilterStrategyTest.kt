@@ -34,8 +34,10 @@ import org.junit.After
 import org.junit.Before
 import org.junit.Test
 import org.odk.collect.entities.javarosa.intance.LocalEntitiesInstanceProvider
+import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.entities.storage.Entity
 import org.odk.collect.entities.storage.InMemEntitiesRepository
+import org.odk.collect.shared.Query
 import java.util.function.Supplier
 
 class LocalEntitiesFilterStrategyTest {
@@ -227,7 +229,7 @@ class LocalEntitiesFilterStrategyTest {
                         t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
                         bind("/data/question").type("string"),
                         bind("/data/calculate").type("string")
-                            .calculate("instance('things')/root/item[starts-with(name, 'thing')]/label")
+                            .calculate("instance('things')/root/item[string-length(name) = 5]/label")
                     )
                 ),
                 body(
@@ -420,6 +422,226 @@ class LocalEntitiesFilterStrategyTest {
         assertThat(instanceProvider.fullParsePerformed, equalTo(false))
     }
 
+    @Test
+    fun `works correctly in the optimized way with property greater than number`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("age" to "25", "tags" to "red big")),
+            Entity.New("thing2", "Thing2", properties = listOf("age" to "30", "tags" to "blue")),
+            Entity.New("other", "Other", properties = listOf("age" to "", "tags" to "red"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("filter", "thing1 other"),
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/filter").type("string"),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[age > 25]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing2"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way with number less than or equal to property`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("age" to "25", "tags" to "red big")),
+            Entity.New("thing2", "Thing2", properties = listOf("age" to "30", "tags" to "blue")),
+            Entity.New("other", "Other", properties = listOf("age" to "", "tags" to "red"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("filter", "thing1 other"),
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/filter").type("string"),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[25 <= age]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing1", "thing2"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way with starts-with`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("age" to "25", "tags" to "red big")),
+            Entity.New("thing2", "Thing2", properties = listOf("age" to "30", "tags" to "blue")),
+            Entity.New("other", "Other", properties = listOf("age" to "", "tags" to "red"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("filter", "thing1 other"),
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/filter").type("string"),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[starts-with(name, 'thing')]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing1", "thing2"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way with contains`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("age" to "25", "tags" to "red big")),
+            Entity.New("thing2", "Thing2", properties = listOf("age" to "30", "tags" to "blue")),
+            Entity.New("other", "Other", properties = listOf("age" to "", "tags" to "red"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("filter", "thing1 other"),
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/filter").type("string"),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[contains(tags, 'red')]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing1", "other"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
+    @Test
+    fun `works correctly in the optimized way with selected`() {
+        entitiesRepository.save(
+            "things",
+            Entity.New("thing1", "Thing1", properties = listOf("age" to "25", "tags" to "red big")),
+            Entity.New("thing2", "Thing2", properties = listOf("age" to "30", "tags" to "blue")),
+            Entity.New("other", "Other", properties = listOf("age" to "", "tags" to "red"))
+        )
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("filter", "thing1 other"),
+                                t("question"),
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/filter").type("string"),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[selected(/data/filter, name)]",
+                        "name",
+                        "label"
+                    )
+                )
+            ),
+            controllerSupplier
+        )
+
+        val choices = scenario.choicesOf("/data/question").map { it.value }
+        assertThat(choices, containsInAnyOrder("thing1", "other"))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+
     @Test
     fun `replaces partial elements when entity matches property`() {
         entitiesRepository.save(
@@ -754,6 +976,66 @@ class LocalEntitiesFilterStrategyTest {
 
         assertThat(fallthroughFilterStrategy.fellThrough, equalTo(true))
     }
+    @Test
+    fun `does not query the repository again for the same filter until the list changes`() {
+        entitiesRepository.save("things", Entity.New("thing1", "Thing1"))
+        val countingRepository = QueryCountingEntitiesRepository(entitiesRepository)
+
+        val scenario = Scenario.init(
+            "Secondary instance form",
+            html(
+                head(
+                    title("Secondary instance form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"create-entity-form\"",
+                                t("question")
+                            )
+                        ),
+                        t("instance id=\"things\" src=\"jr://file-csv/things.csv\""),
+                        bind("/data/question").type("string")
+                    )
+                ),
+                body(
+                    select1Dynamic(
+                        "/data/question",
+                        "instance('things')/root/item[label='Thing1']",
+                        "name",
+                        "label"
+                    )
+                )
+            )
+        ) { formDef ->
+            FormEntryController(FormEntryModel(formDef)).also {
+                it.addFilterStrategy(LocalEntitiesFilterStrategy(countingRepository))
+                it.addFilterStrategy(fallthroughFilterStrategy)
+            }
+        }
+
+        assertThat(scenario.choicesOf("/data/question").map { it.value }, containsInAnyOrder("thing1"))
+        val queries = countingRepository.queries
+
+        assertThat(scenario.choicesOf("/data/question").map { it.value }, containsInAnyOrder("thing1"))
+        assertThat(countingRepository.queries, equalTo(queries))
+
+        entitiesRepository.save("things", Entity.New("thing1", "Thing One"))
+        assertThat(scenario.choicesOf("/data/question").isEmpty(), equalTo(true))
+        assertThat(countingRepository.queries, equalTo(queries + 1))
+        assertThat(fallthroughFilterStrategy.fellThrough, equalTo(false))
+    }
+}
+
+private class QueryCountingEntitiesRepository(private val wrapped: EntitiesRepository) :
+    EntitiesRepository by wrapped {
+
+    var queries = 0
+        private set
+
+    override fun query(list: String, query: Query?): List<Entity.Saved> {
+        queries += 1
+        return wrapped.query(list, query)
+    }
 }
 
 private class FallthroughFilterStrategy : FilterStrategy {
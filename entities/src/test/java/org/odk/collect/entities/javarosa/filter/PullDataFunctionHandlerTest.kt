@@ -16,8 +16,10 @@ import org.javarosa.test.XFormsElement.model
 import org.javarosa.test.XFormsElement.t
 import org.javarosa.test.XFormsElement.title
 import org.junit.Test
+import org.odk.collect.entities.storage.EntitiesRepository
 import org.odk.collect.entities.storage.Entity
 import org.odk.collect.entities.storage.InMemEntitiesRepository
+import org.odk.collect.shared.Query
 
 class PullDataFunctionHandlerTest {
 
@@ -101,4 +103,59 @@ class PullDataFunctionHandlerTest {
 
         assertThat(scenario.answerOf<StringData>("/data/calculate").value, equalTo("One"))
     }
+
+    @Test
+    fun `only queries the repository once for repeated calls`() {
+        val entitiesRepository = ValueQueryCountingEntitiesRepository(InMemEntitiesRepository())
+        entitiesRepository.save(
+            "things",
+            Entity.New("one", "One", properties = listOf(Pair("property", "value")))
+        )
+
+        val scenario = Scenario.init(
+            "Pull data form",
+            html(
+                head(
+                    title("Pull data form"),
+                    model(
+                        mainInstance(
+                            t(
+                                "data id=\"pull-data-form\"",
+                                t("calculate1"),
+                                t("calculate2")
+                            )
+                        ),
+                        bind("/data/calculate1").type("string")
+                            .calculate("pulldata('things', 'label', 'property', 'value')"),
+                        bind("/data/calculate2").type("string")
+                            .calculate("pulldata('things', 'label', 'property', 'value')")
+                    )
+                ),
+                body(
+                    input("/data/calculate1"),
+                    input("/data/calculate2")
+                )
+            )
+        ) { formDef ->
+            FormEntryController(FormEntryModel(formDef)).also {
+                it.addFunctionHandler(PullDataFunctionHandler(entitiesRepository))
+            }
+        }
+
+        assertThat(scenario.answerOf<StringData>("/data/calculate1").value, equalTo("One"))
+        assertThat(scenario.answerOf<StringData>("/data/calculate2").value, equalTo("One"))
+        assertThat(entitiesRepository.valueQueries, equalTo(1))
+    }
+}
+
+private class ValueQueryCountingEntitiesRepository(private val wrapped: EntitiesRepository) :
+    EntitiesRepository by wrapped {
+
+    var valueQueries = 0
+        private set
+
+    override fun queryFirstValue(list: String, query: Query, column: String): String? {
+        valueQueries += 1
+        return wrapped.queryFirstValue(list, query, column)
+    }
 }
@@ -13,6 +13,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.function.Supplier;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
@@ -232,6 +233,24 @@ public abstract class FormsRepositoryTest {
         assertThat(formsRepository.get(originalForm.getDbId()).getDisplayName(), is("changed"));
     }
 
+    @Test
+    public void saveAll_addsNewFormsAndUpdatesExisting() {
+        FormsRepository formsRepository = buildSubject();
+        Form originalForm = formsRepository.save(FormUtils.buildForm("id", "version", getFormFilesPath())
+                .displayName("original")
+                .build());
+
+        List<Form> savedForms = formsRepository.saveAll(asList(
+                new Form.Builder(originalForm).displayName("changed").build(),
+                FormUtils.buildForm("other", "version", getFormFilesPath()).build()
+        ));
+
+        assertThat(savedForms.size(), is(2));
+        assertThat(formsRepository.getAll().size(), is(2));
+        assertThat(formsRepository.get(originalForm.getDbId()).getDisplayName(), is("changed"));
+        assertThat(formsRepository.get(savedForms.get(1).getDbId()).getFormId(), is("other"));
+    }
+
     @Test
     public void save_whenFormHasId_updatesHash() throws IOException {
         FormsRepository formsRepository = buildSubject();
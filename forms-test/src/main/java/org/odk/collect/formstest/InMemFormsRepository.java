@@ -154,6 +154,16 @@ public class InMemFormsRepository implements FormsRepository {
         }
     }
 
+    @Override
+    public List<Form> saveAll(@NotNull List<Form> forms) {
+        List<Form> saved = new ArrayList<>();
+        for (Form form : forms) {
+            saved.add(save(form));
+        }
+
+        return saved;
+    }
+
     @Override
     public void delete(Long id) {
         Optional<Form> formToRemove = forms.stream().filter(f -> f.getDbId().equals(id)).findFirst();
@@ -7,7 +7,9 @@ import org.odk.collect.shared.files.FileExt;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -18,6 +20,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
     private final Supplier<Long> clock;
 
     private long idCounter = 1L;
+    private long changeVersion;
 
     public InMemInstancesRepository() {
         this(System::currentTimeMillis, new ArrayList<>());
@@ -95,6 +98,21 @@ public final class InMemInstancesRepository implements InstancesRepository {
         return getAllByStatus(status).size();
     }
 
+    @Override
+    public Map<String, Integer> getCountsByStatus() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Instance instance : instances) {
+            counts.merge(instance.getStatus(), 1, Integer::sum);
+        }
+
+        return counts;
+    }
+
+    @Override
+    public long getChangeVersion() {
+        return changeVersion;
+    }
+
     @Override
     public List<Instance> getAllByFormId(String formId) {
         List<Instance> result = new ArrayList<>();
@@ -123,6 +141,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
         deleteInstanceFiles(instance);
 
         instances.remove(instance);
+        changeVersion++;
     }
 
     @Override
@@ -132,6 +151,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
         }
 
         instances.clear();
+        changeVersion++;
     }
 
     @Override
@@ -154,6 +174,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
                     .dbId(idCounter++)
                     .build();
             instances.add(newInstance);
+            changeVersion++;
             return newInstance;
         } else {
             if (instance.getDeletedDate() == null) {
@@ -164,6 +185,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
 
             instances.removeIf(i -> i.getDbId().equals(id));
             instances.add(instance);
+            changeVersion++;
             return instance;
         }
     }
@@ -178,6 +200,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
 
         instances.removeIf(i -> i.getDbId().equals(id));
         instances.add(instance);
+        changeVersion++;
         deleteInstanceFiles(instance);
     }
 
@@ -185,6 +208,7 @@ public final class InMemInstancesRepository implements InstancesRepository {
         for (int i = 0; i < instances.size(); i++) {
             if (instances.get(i).getDbId().equals(databaseId)) {
                 instances.remove(i);
+                changeVersion++;
                 return;
             }
         }
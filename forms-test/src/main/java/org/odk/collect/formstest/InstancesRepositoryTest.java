@@ -19,7 +19,9 @@ import org.odk.collect.forms.instances.Instance;
 import org.odk.collect.forms.instances.InstancesRepository;
 
 import java.io.File;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -119,6 +121,54 @@ public abstract class InstancesRepositoryTest {
         assertThat(instancesRepository.getCountByStatus(Instance.STATUS_INCOMPLETE, Instance.STATUS_SUBMITTED), is(4));
     }
 
+    @Test
+    public void getCountsByStatus_returnsCountForEachStatusWithInstances() {
+        InstancesRepository instancesRepository = buildSubject();
+
+        instancesRepository.save(InstanceUtils.buildInstance("incomplete", "1", getInstancesDir())
+                .status(Instance.STATUS_INCOMPLETE)
+                .build());
+        instancesRepository.save(InstanceUtils.buildInstance("incomplete", "1", getInstancesDir())
+                .status(Instance.STATUS_INCOMPLETE)
+                .build());
+        instancesRepository.save(InstanceUtils.buildInstance("complete", "1", getInstancesDir())
+                .status(Instance.STATUS_COMPLETE)
+                .build());
+
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put(Instance.STATUS_INCOMPLETE, 2);
+        expected.put(Instance.STATUS_COMPLETE, 1);
+        assertThat(instancesRepository.getCountsByStatus(), equalTo(expected));
+    }
+
+    @Test
+    public void getChangeVersion_changesWhenInstancesAreSavedOrDeleted() {
+        InstancesRepository instancesRepository = buildSubject();
+
+        long initial = instancesRepository.getChangeVersion();
+        Instance instance = instancesRepository.save(InstanceUtils.buildInstance("formid", "1", getInstancesDir()).build());
+        long afterInsert = instancesRepository.getChangeVersion();
+        assertThat(afterInsert, is(not(initial)));
+
+        instancesRepository.save(new Instance.Builder(instance).status(Instance.STATUS_COMPLETE).build());
+        long afterUpdate = instancesRepository.getChangeVersion();
+        assertThat(afterUpdate, is(not(afterInsert)));
+
+        instancesRepository.delete(instance.getDbId());
+        assertThat(instancesRepository.getChangeVersion(), is(not(afterUpdate)));
+    }
+
+    @Test
+    public void getChangeVersion_doesNotChangeWhenInstancesAreOnlyRead() {
+        InstancesRepository instancesRepository = buildSubject();
+        instancesRepository.save(InstanceUtils.buildInstance("formid", "1", getInstancesDir()).build());
+
+        long version = instancesRepository.getChangeVersion();
+        instancesRepository.getAll();
+        instancesRepository.getCountsByStatus();
+        assertThat(instancesRepository.getChangeVersion(), is(version));
+    }
+
     @Test
     public void getAllByFormId_includesAllVersionsForFormId() {
         InstancesRepository instancesRepository = buildSubject();
@@ -31,6 +31,12 @@ public interface FormsRepository {
 
     Form save(@NotNull Form form);
 
+    /**
+     * Saves each form as {@link #save(Form)} would but as a single batch: either all the forms
+     * are saved or (if saving any of them fails) none are.
+     */
+    List<Form> saveAll(@NotNull List<Form> forms);
+
     void delete(Long id);
 
     void softDelete(Long id);
@@ -3,6 +3,7 @@ package org.odk.collect.forms.instances;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Gives access to {@link Instance} objects representing filled form instances on the device.
@@ -32,6 +33,18 @@ public interface InstancesRepository {
 
     int getCountByStatus(String... status);
 
+    /**
+     * The number of instances with each status (including deleted instances, as with
+     * {@link #getCountByStatus(String...)}). Statuses that no instances have are left out.
+     */
+    Map<String, Integer> getCountsByStatus();
+
+    /**
+     * A value that changes whenever instances are saved or deleted so that callers can avoid
+     * reloading data that can't have changed. It should only ever be compared for equality.
+     */
+    long getChangeVersion();
+
     List<Instance> getAllByFormId(String formId);
 
     List<Instance> getAllNotDeletedByFormIdAndVersion(String formId, String version);
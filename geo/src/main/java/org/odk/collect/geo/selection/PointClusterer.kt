@@ -0,0 +1,86 @@
+package org.odk.collect.geo.selection
+
+import org.odk.collect.maps.MapBounds
+import org.odk.collect.maps.MapPoint
+import kotlin.math.PI
+import kotlin.math.cos
+import kotlin.math.floor
+import kotlin.math.ln
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.tan
+
+/**
+ * Groups points that would be drawn on top of each other at a given zoom level into clusters so
+ * that only one marker needs to be added to the map for each group.
+ *
+ * Points are indexed into a grid of cells (each [CLUSTER_SIZE] pixels wide in Web Mercator
+ * at that zoom level) which is built the first time a zoom level is used and then reused. Getting
+ * the clusters in a viewport then only needs to look at the occupied cells rather than
+ * every point. Above [MAX_CLUSTER_ZOOM] every point gets its own cluster.
+ */
+internal class PointClusterer(private val points: List<MappableSelectItem.MappableSelectPoint>) {
+
+    private val grids = mutableMapOf<Int, List<Cluster>>()
+
+    fun getClusters(zoom: Double, bounds: MapBounds?): List<Cluster> {
+        val zoomLevel = floor(zoom).toInt().coerceIn(0, MAX_CLUSTER_ZOOM + 1)
+        val clusters = grids.getOrPut(zoomLevel) { buildGrid(zoomLevel) }
+
+        return if (bounds == null) {
+            clusters
+        } else {
+            clusters.filter { bounds.contains(it.point) }
+        }
+    }
+
+    private fun buildGrid(zoomLevel: Int): List<Cluster> {
+        if (zoomLevel > MAX_CLUSTER_ZOOM) {
+            return points.map { Cluster(it.point, listOf(it)) }
+        }
+
+        val cellsPerSide = (1L shl zoomLevel) * TILE_SIZE / CLUSTER_SIZE
+        val cells = linkedMapOf<Long, MutableList<MappableSelectItem.MappableSelectPoint>>()
+        points.forEach {
+            val x = cellIndex(mercatorX(it.point.longitude), cellsPerSide)
+            val y = cellIndex(mercatorY(it.point.latitude), cellsPerSide)
+            cells.getOrPut(x * cellsPerSide + y) { mutableListOf() }.add(it)
+        }
+
+        return cells.values.map { items ->
+            if (items.size == 1) {
+                Cluster(items[0].point, items)
+            } else {
+                Cluster(
+                    MapPoint(
+                        items.sumOf { it.point.latitude } / items.size,
+                        items.sumOf { it.point.longitude } / items.size
+                    ),
+                    items
+                )
+            }
+        }
+    }
+
+    data class Cluster(val point: MapPoint, val items: List<MappableSelectItem.MappableSelectPoint>)
+
+    companion object {
+        const val MAX_CLUSTER_ZOOM = 16
+        private const val TILE_SIZE = 256
+        private const val CLUSTER_SIZE = 64
+
+        private fun mercatorX(longitude: Double): Double {
+            return (longitude + 180) / 360
+        }
+
+        private fun mercatorY(latitude: Double): Double {
+            val clamped = max(min(latitude, 85.0511), -85.0511)
+            val radians = clamped * PI / 180
+            return (1 - ln(tan(radians) + 1 / cos(radians)) / PI) / 2
+        }
+
+        private fun cellIndex(position: Double, cellsPerSide: Long): Long {
+            return floor(position * cellsPerSide).toLong().coerceIn(0, cellsPerSide - 1)
+        }
+    }
+}
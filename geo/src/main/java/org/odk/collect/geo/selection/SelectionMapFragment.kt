@@ -24,6 +24,7 @@ import org.odk.collect.androidshared.ui.ToastUtils
 import org.odk.collect.androidshared.ui.multiclicksafe.setMultiClickSafeOnClickListener
 import org.odk.collect.async.Scheduler
 import org.odk.collect.geo.GeoDependencyComponentProvider
+import org.odk.collect.geo.R
 import org.odk.collect.geo.databinding.SelectionMapLayoutBinding
 import org.odk.collect.maps.LineDescription
 import org.odk.collect.maps.MapFragment
@@ -80,6 +81,16 @@ class SelectionMapFragment(
 
     private val itemsByFeatureId: MutableMap<Int, MappableSelectItem> = mutableMapOf()
     private val featureIdsByItemId: MutableMap<Long, Int> = mutableMapOf()
+    private val clustersByFeatureId: MutableMap<Int, PointClusterer.Cluster> = mutableMapOf()
+
+    /**
+     * Used instead of adding every point to the map when there are more than
+     * [CLUSTERING_THRESHOLD] of them.
+     */
+    private var clusterer: PointClusterer? = null
+    private var clusteredLines: List<MappableSelectItem.MappableSelectLine> = emptyList()
+    private var clusteredPolygons: List<MappableSelectItem.MappableSelectPolygon> = emptyList()
+    private var renderedClusters: List<PointClusterer.Cluster>? = null
 
     /**
      * Points to be mapped. Note: kept separately from [.itemsByFeatureId] so we can
@@ -289,6 +300,12 @@ class SelectionMapFragment(
     }
 
     private fun onFeatureSelected(featureId: Int, maintainZoom: Boolean = true, selectedByUser: Boolean = true) {
+        val cluster = clustersByFeatureId[featureId]
+        if (cluster != null) {
+            map.zoomToBoundingBox(cluster.items.map { it.point }, 0.8, true)
+            return
+        }
+
         val item = itemsByFeatureId[featureId]
         val selectedItem = selectedItemViewModel.getSelectedItem()
 
@@ -352,17 +369,22 @@ class SelectionMapFragment(
 
         updateFeatures(items)
 
-        val previouslySelectedItem =
-            itemsByFeatureId.filter { it.value.selected }.map { it.key }.firstOrNull()
-        val selectedItem = selectedItemViewModel.getSelectedItem()
+        val previouslySelectedItem = items.firstOrNull { it.selected }
+        val selectedItem = selectedItemViewModel.getSelectedItem()?.let { selected ->
+            items.firstOrNull { it.id == selected.id }
+        }
 
         if (selectedItem != null) {
-            val featureId = featureIdsByItemId[selectedItem.id]
+            val featureId = getFeatureId(selectedItem)
             if (featureId != null) {
                 onFeatureSelected(featureId, selectedByUser = false)
             }
         } else if (previouslySelectedItem != null) {
-            onFeatureSelected(previouslySelectedItem, maintainZoom = false, selectedByUser = false)
+            val featureId = getFeatureId(previouslySelectedItem)
+            if (featureId != null) {
+                // Zooming out to the default point zoom could put the item back in a cluster
+                onFeatureSelected(featureId, maintainZoom = clusterer != null, selectedByUser = false)
+            }
         } else if (!map.hasCenter()) {
             if (zoomToFitItems && points.isNotEmpty()) {
                 map.zoomToBoundingBox(points, 0.8, false)
@@ -375,6 +397,19 @@ class SelectionMapFragment(
         }
     }
 
+    /**
+     * Returns the ID of the feature for [item]. If [item] is a point that is currently part of a
+     * cluster (or out of view), the map is zoomed in on it first so that it gets its own marker.
+     */
+    private fun getFeatureId(item: MappableSelectItem): Int? {
+        if (clusterer != null && item is MappableSelectItem.MappableSelectPoint && !featureIdsByItemId.containsKey(item.id)) {
+            map.zoomToPoint(item.point, (PointClusterer.MAX_CLUSTER_ZOOM + 1).toDouble(), false)
+            updateClusters()
+        }
+
+        return featureIdsByItemId[item.id]
+    }
+
     private fun resetIcon(selectedItem: MappableSelectItem.MappableSelectPoint) {
         val featureId = featureIdsByItemId[selectedItem.id]
         if (featureId != null) {
@@ -392,11 +427,35 @@ class SelectionMapFragment(
         points.clear()
         map.clearFeatures()
         itemsByFeatureId.clear()
+        featureIdsByItemId.clear()
+        clustersByFeatureId.clear()
 
         val singlePoints = items.filterIsInstance<MappableSelectItem.MappableSelectPoint>()
         val lines = items.filterIsInstance<MappableSelectItem.MappableSelectLine>()
         val polygons = items.filterIsInstance<MappableSelectItem.MappableSelectPolygon>()
 
+        if (singlePoints.size > CLUSTERING_THRESHOLD) {
+            singlePoints.forEach { points.add(it.point) }
+            lines.forEach { points.addAll(it.points) }
+            polygons.forEach { points.addAll(it.points) }
+
+            clusterer = PointClusterer(singlePoints)
+            clusteredLines = lines
+            clusteredPolygons = polygons
+            renderedClusters = null
+
+            map.setCameraIdleListener { updateClusters() }
+            updateClusters()
+
+            featureCount = items.size
+            return
+        }
+
+        if (clusterer != null) {
+            clusterer = null
+            map.setCameraIdleListener(null)
+        }
+
         val markerDescriptions = singlePoints.map {
             MarkerDescription(
                 MapPoint(it.point.latitude, it.point.longitude),
@@ -427,10 +486,84 @@ class SelectionMapFragment(
         featureCount = items.size
     }
 
+    /**
+     * Replaces the features on the map with a marker for each cluster of points (or single point)
+     * that is visible at the current zoom level along with any lines and polygons. Does nothing
+     * if the visible clusters haven't changed since the last update.
+     */
+    private fun updateClusters() {
+        val clusters = clusterer?.getClusters(map.getZoom(), map.getVisibleBounds()) ?: return
+        if (clusters == renderedClusters) {
+            return
+        }
+
+        renderedClusters = clusters
+        map.clearFeatures()
+        itemsByFeatureId.clear()
+        featureIdsByItemId.clear()
+        clustersByFeatureId.clear()
+
+        val selectedItemId = selectedItemViewModel.getSelectedItem()?.id
+        val markerDescriptions = clusters.map { cluster ->
+            if (cluster.items.size == 1) {
+                val item = cluster.items[0]
+                MarkerDescription(
+                    MapPoint(item.point.latitude, item.point.longitude),
+                    false,
+                    MapFragment.BOTTOM,
+                    MarkerIconDescription(
+                        if (item.id == selectedItemId) item.largeIcon else item.smallIcon,
+                        item.color,
+                        item.symbol
+                    )
+                )
+            } else {
+                MarkerDescription(
+                    cluster.point,
+                    false,
+                    MapFragment.CENTER,
+                    MarkerIconDescription(R.drawable.ic_map_cluster, label = getClusterLabel(cluster.items.size))
+                )
+            }
+        }
+
+        map.addMarkers(markerDescriptions).zip(clusters).forEach { (featureId, cluster) ->
+            if (cluster.items.size == 1) {
+                itemsByFeatureId[featureId] = cluster.items[0]
+                featureIdsByItemId[cluster.items[0].id] = featureId
+            } else {
+                clustersByFeatureId[featureId] = cluster
+            }
+        }
+
+        clusteredLines.forEach { item ->
+            val featureId = map.addPolyLine(LineDescription(item.points, item.strokeWidth, item.strokeColor))
+            itemsByFeatureId[featureId] = item
+            featureIdsByItemId[item.id] = featureId
+        }
+
+        clusteredPolygons.forEach { item ->
+            val featureId = map.addPolygon(PolygonDescription(item.points, item.strokeWidth, item.strokeColor, item.fillColor))
+            itemsByFeatureId[featureId] = item
+            featureIdsByItemId[item.id] = featureId
+        }
+    }
+
+    private fun getClusterLabel(size: Int): String {
+        return if (size > MAX_CLUSTER_LABEL) "$MAX_CLUSTER_LABEL+" else size.toString()
+    }
+
     companion object {
         const val REQUEST_SELECT_ITEM = "select_item"
         const val RESULT_SELECTED_ITEM = "selected_item"
         const val RESULT_CREATE_NEW_ITEM = "create_new_item"
+
+        /**
+         * Points are clustered (and only the clusters in view are added to the map) when there
+         * are more than this many of them.
+         */
+        const val CLUSTERING_THRESHOLD = 200
+        private const val MAX_CLUSTER_LABEL = 999
     }
 }
 
@@ -0,0 +1,62 @@
+package org.odk.collect.geo.selection
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.containsInAnyOrder
+import org.hamcrest.Matchers.equalTo
+import org.junit.Test
+import org.odk.collect.geo.support.Fixtures
+import org.odk.collect.maps.MapBounds
+import org.odk.collect.maps.MapPoint
+
+class PointClustererTest {
+
+    private val nearby1 = Fixtures.actionMappableSelectPoint().copy(id = 1, point = MapPoint(40.0, 0.0))
+    private val nearby2 = Fixtures.actionMappableSelectPoint().copy(id = 2, point = MapPoint(40.0, 0.0001))
+    private val farAway = Fixtures.actionMappableSelectPoint().copy(id = 3, point = MapPoint(-40.0, 100.0))
+
+    @Test
+    fun `groups points that are close together at the zoom level`() {
+        val clusters = PointClusterer(listOf(nearby1, nearby2, farAway)).getClusters(4.0, null)
+
+        assertThat(
+            clusters.map { it.items },
+            containsInAnyOrder(listOf(nearby1, nearby2), listOf(farAway))
+        )
+    }
+
+    @Test
+    fun `cluster point is the center of its points`() {
+        val clusters = PointClusterer(listOf(nearby1, nearby2)).getClusters(4.0, null)
+        assertThat(clusters.single().point, equalTo(MapPoint(40.0, 0.00005)))
+    }
+
+    @Test
+    fun `does not group points above the max cluster zoom`() {
+        val clusters = PointClusterer(listOf(nearby1, nearby2)).getClusters(
+            PointClusterer.MAX_CLUSTER_ZOOM + 1.0,
+            null
+        )
+
+        assertThat(clusters.map { it.items }, containsInAnyOrder(listOf(nearby1), listOf(nearby2)))
+    }
+
+    @Test
+    fun `only returns clusters inside bounds`() {
+        val clusters = PointClusterer(listOf(nearby1, nearby2, farAway)).getClusters(
+            4.0,
+            MapBounds(50.0, 10.0, 30.0, -10.0)
+        )
+
+        assertThat(clusters.map { it.items }, equalTo(listOf(listOf(nearby1, nearby2))))
+    }
+
+    @Test
+    fun `only returns clusters inside bounds that cross the antimeridian`() {
+        val clusters = PointClusterer(listOf(nearby1, farAway)).getClusters(
+            4.0,
+            MapBounds(0.0, -170.0, -50.0, 90.0)
+        )
+
+        assertThat(clusters.map { it.items }, equalTo(listOf(listOf(farAway))))
+    }
+}
@@ -160,6 +160,69 @@ class SelectionMapFragmentTest {
         assertThat(map.getMarkers(), equalTo(emptyList()))
     }
 
+    @Test
+    fun `clusters points when there are more than the clustering threshold`() {
+        val items = (0..SelectionMapFragment.CLUSTERING_THRESHOLD).map {
+            Fixtures.actionMappableSelectPoint().copy(id = it.toLong(), point = MapPoint(40.0, 0.0001 * it))
+        }
+        whenever(data.getMappableItems()).thenReturn(MutableLiveData(items))
+
+        launcherRule.launchInContainer(SelectionMapFragment::class.java)
+        map.ready()
+
+        assertThat(map.getMarkers().size, equalTo(1))
+
+        map.clickOnFeature(0)
+        assertThat(map.getZoomBoundingBox(), equalTo(Pair(items.map { it.point }, 0.8)))
+    }
+
+    @Test
+    fun `opening the map with an already selected item inside a cluster selects it`() {
+        val items = (0..SelectionMapFragment.CLUSTERING_THRESHOLD).map {
+            Fixtures.actionMappableSelectPoint().copy(
+                id = it.toLong(),
+                name = "Point$it",
+                point = MapPoint(40.0, 0.0001 * it),
+                selected = it == 100
+            )
+        }
+        whenever(data.getMappableItems()).thenReturn(MutableLiveData(items))
+
+        launcherRule.launchInContainer(SelectionMapFragment::class.java)
+        map.ready()
+
+        assertThat(map.getCenter(), equalTo(items[100].point))
+        assertThat(map.getZoom() > PointClusterer.MAX_CLUSTER_ZOOM, equalTo(true))
+        onView(allOf(isDescendantOfA(withId(R.id.summary_sheet)), withText("Point100")))
+            .check(matches(isDisplayed()))
+
+        val markerIndex = map.getMarkers().indexOf(items[100].point)
+        assertThat(map.getMarkerIcons()[markerIndex]?.icon, equalTo(items[100].largeIcon))
+    }
+
+    @Test
+    fun `recreating with a selected item inside a cluster maintains selection`() {
+        val items = (0..SelectionMapFragment.CLUSTERING_THRESHOLD).map {
+            Fixtures.actionMappableSelectPoint().copy(
+                id = it.toLong(),
+                name = "Point$it",
+                point = MapPoint(40.0, 0.0001 * it),
+                selected = it == 100
+            )
+        }
+        whenever(data.getMappableItems()).thenReturn(MutableLiveData(items))
+
+        val scenario = launcherRule.launchInContainer(SelectionMapFragment::class.java)
+        map.ready()
+
+        scenario.recreate()
+        map.ready()
+
+        assertThat(map.getCenter(), equalTo(items[100].point))
+        onView(allOf(isDescendantOfA(withId(R.id.summary_sheet)), withText("Point100")))
+            .check(matches(isDisplayed()))
+    }
+
     @Test
     fun `updates item count when items update`() {
         val items: List<MappableSelectItem> = listOf(
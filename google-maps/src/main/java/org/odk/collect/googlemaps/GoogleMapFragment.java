@@ -53,6 +53,7 @@ import org.odk.collect.googlemaps.GoogleMapConfigurator.GoogleMapTypeOption;
 import org.odk.collect.googlemaps.scaleview.MapScaleView;
 import org.odk.collect.location.LocationClient;
 import org.odk.collect.maps.LineDescription;
+import org.odk.collect.maps.MapBounds;
 import org.odk.collect.maps.MapConfigurator;
 import org.odk.collect.maps.MapFragment;
 import org.odk.collect.maps.MapFragmentDelegate;
@@ -115,6 +116,7 @@ public class GoogleMapFragment extends Fragment implements
     private PointListener gpsLocationListener;
     private FeatureListener featureClickListener;
     private FeatureListener dragEndListener;
+    private CameraIdleListener cameraIdleListener;
 
     private boolean clientWantsLocationUpdates;
     private MapPoint lastLocationFix;
@@ -188,6 +190,10 @@ public class GoogleMapFragment extends Fragment implements
                     isUserZooming = false;
                 }
                 currentZoomLevel = googleMap.getCameraPosition().zoom;
+
+                if (cameraIdleListener != null) {
+                    cameraIdleListener.onCameraIdle();
+                }
             });
             loadReferenceOverlay();
 
@@ -272,6 +278,15 @@ public class GoogleMapFragment extends Fragment implements
         return map.getCameraPosition().zoom;
     }
 
+    @Override public @Nullable MapBounds getVisibleBounds() {
+        if (map == null) {
+            return null;
+        }
+
+        LatLngBounds bounds = map.getProjection().getVisibleRegion().latLngBounds;
+        return new MapBounds(bounds.northeast.latitude, bounds.northeast.longitude, bounds.southwest.latitude, bounds.southwest.longitude);
+    }
+
     @Override public void zoomToPoint(@Nullable MapPoint center, boolean animate) {
         zoomToPoint(center, POINT_ZOOM, animate);
     }
@@ -416,6 +431,10 @@ public class GoogleMapFragment extends Fragment implements
         dragEndListener = listener;
     }
 
+    @Override public void setCameraIdleListener(@Nullable CameraIdleListener listener) {
+        cameraIdleListener = listener;
+    }
+
     @Override public void setGpsLocationListener(@Nullable PointListener listener) {
         gpsLocationListener = listener;
     }
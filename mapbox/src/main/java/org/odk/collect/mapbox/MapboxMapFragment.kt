@@ -19,6 +19,7 @@ import com.mapbox.maps.MapView
 import com.mapbox.maps.MapboxMap
 import com.mapbox.maps.Style
 import com.mapbox.maps.dsl.cameraOptions
+import com.mapbox.maps.extension.observable.eventdata.MapIdleEventData
 import com.mapbox.maps.extension.style.layers.Layer
 import com.mapbox.maps.extension.style.layers.addLayerAbove
 import com.mapbox.maps.extension.style.layers.generated.LineLayer
@@ -40,6 +41,7 @@ import com.mapbox.maps.plugin.annotation.generated.createPointAnnotationManager
 import com.mapbox.maps.plugin.annotation.generated.createPolygonAnnotationManager
 import com.mapbox.maps.plugin.annotation.generated.createPolylineAnnotationManager
 import com.mapbox.maps.plugin.compass.compass
+import com.mapbox.maps.plugin.delegates.listeners.OnMapIdleListener
 import com.mapbox.maps.plugin.gestures.OnMapClickListener
 import com.mapbox.maps.plugin.gestures.OnMapLongClickListener
 import com.mapbox.maps.plugin.gestures.OnScaleListener
@@ -53,7 +55,9 @@ import org.odk.collect.androidshared.utils.ScreenUtils
 import org.odk.collect.location.LocationClient
 import org.odk.collect.location.LocationClient.LocationClientListener
 import org.odk.collect.maps.LineDescription
+import org.odk.collect.maps.MapBounds
 import org.odk.collect.maps.MapFragment
+import org.odk.collect.maps.MapFragment.CameraIdleListener
 import org.odk.collect.maps.MapFragment.ErrorListener
 import org.odk.collect.maps.MapFragment.FeatureListener
 import org.odk.collect.maps.MapFragment.PointListener
@@ -99,6 +103,7 @@ class MapboxMapFragment :
 
     private var featureClickListener: FeatureListener? = null
     private var featureDragEndListener: FeatureListener? = null
+    private var cameraIdleListener: CameraIdleListener? = null
 
     private var lastLocationProvider: String? = null
     private var lastLocationFix: MapPoint? = null
@@ -167,6 +172,11 @@ class MapboxMapFragment :
             .apply {
                 addOnMapClickListener(this@MapboxMapFragment)
                 addOnMapLongClickListener(this@MapboxMapFragment)
+                addOnMapIdleListener(object : OnMapIdleListener {
+                    override fun onMapIdle(eventData: MapIdleEventData) {
+                        cameraIdleListener?.onCameraIdle()
+                    }
+                })
                 addOnScaleListener(object : OnScaleListener {
                     override fun onScale(detector: StandardScaleGestureDetector) = Unit
 
@@ -251,6 +261,21 @@ class MapboxMapFragment :
         return mapboxMap.cameraState.zoom
     }
 
+    override fun getVisibleBounds(): MapBounds {
+        val cameraState = mapboxMap.cameraState
+        val bounds = mapboxMap.coordinateBoundsForCamera(
+            cameraOptions {
+                center(cameraState.center)
+                zoom(cameraState.zoom)
+                bearing(cameraState.bearing)
+                pitch(cameraState.pitch)
+                padding(cameraState.padding)
+            }
+        )
+
+        return MapBounds(bounds.north(), bounds.east(), bounds.south(), bounds.west())
+    }
+
     override fun setCenter(center: MapPoint?, animate: Boolean) {
         center?.let {
             moveOrAnimateCamera(it, animate)
@@ -432,6 +457,10 @@ class MapboxMapFragment :
         featureDragEndListener = listener
     }
 
+    override fun setCameraIdleListener(listener: CameraIdleListener?) {
+        cameraIdleListener = listener
+    }
+
     override fun setGpsLocationEnabled(enabled: Boolean) {
         if (enabled != clientWantsLocationUpdates) {
             clientWantsLocationUpdates = enabled
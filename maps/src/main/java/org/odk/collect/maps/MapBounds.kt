@@ -0,0 +1,24 @@
+package org.odk.collect.maps
+
+/**
+ * The area of the map that is currently visible. [west] will be greater than [east] if the area
+ * crosses the antimeridian.
+ */
+data class MapBounds(
+    val north: Double,
+    val east: Double,
+    val south: Double,
+    val west: Double
+) {
+    fun contains(point: MapPoint): Boolean {
+        if (point.latitude < south || point.latitude > north) {
+            return false
+        }
+
+        return if (west <= east) {
+            point.longitude in west..east
+        } else {
+            point.longitude >= west || point.longitude <= east
+        }
+    }
+}
@@ -38,6 +38,12 @@ interface MapFragment {
      */
     fun getZoom(): Double
 
+    /**
+     * Gets the area of the map currently visible in the map view, or null if it isn't known
+     * (in which case the whole map should be treated as visible).
+     */
+    fun getVisibleBounds(): MapBounds? = null
+
     /**
      * Centers the map view on the given point, leaving zoom level unchanged,
      * possibly with animation.
@@ -137,6 +143,12 @@ interface MapFragment {
     /** Sets or clears the callback for when a drag is completed.  */
     fun setDragEndListener(listener: FeatureListener?)
 
+    /**
+     * Sets or clears the callback for when the map view stops moving after being panned or
+     * zoomed (by the user or programmatically).
+     */
+    fun setCameraIdleListener(listener: CameraIdleListener?) {}
+
     /**
      * Enables/disables GPS tracking.  While enabled, the GPS location is shown
      * on the map, the first GPS fix will trigger any pending callbacks set by
@@ -190,6 +202,10 @@ interface MapFragment {
         fun onFeature(featureId: Int)
     }
 
+    fun interface CameraIdleListener {
+        fun onCameraIdle()
+    }
+
     companion object {
         val INITIAL_CENTER: MapPoint = MapPoint(0.0, -30.0)
         const val INITIAL_ZOOM: Float = 2f
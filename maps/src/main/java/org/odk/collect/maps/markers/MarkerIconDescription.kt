@@ -4,14 +4,19 @@ import org.odk.collect.androidshared.utils.toColorInt
 import org.odk.collect.shared.strings.StringUtils
 import java.util.Locale
 
+/**
+ * @param label text to draw on the icon in full (unlike [symbol] which is shortened to its first
+ * character) that is used instead of [symbol] if set
+ */
 class MarkerIconDescription @JvmOverloads constructor(
     val icon: Int,
     private val color: String? = null,
-    private val symbol: String? = null
+    private val symbol: String? = null,
+    private val label: String? = null
 ) {
     fun getColor(): Int? = color?.toColorInt()
 
-    fun getSymbol(): String? = symbol?.let {
+    fun getSymbol(): String? = label ?: symbol?.let {
         if (it.isBlank()) {
             null
         } else {
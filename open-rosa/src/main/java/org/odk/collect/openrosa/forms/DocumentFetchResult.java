@@ -16,12 +16,15 @@ package org.odk.collect.openrosa.forms;
 
 import org.kxml2.kdom.Document;
 
+import java.net.HttpURLConnection;
+
 public class DocumentFetchResult {
     public final String errorMessage;
     public final int responseCode;
     public final Document doc;
     public final boolean isOpenRosaResponse;
     private String hash;
+    private String etag;
 
     public DocumentFetchResult(String msg, int response) {
         responseCode = response;
@@ -31,14 +34,30 @@ public class DocumentFetchResult {
     }
 
     public DocumentFetchResult(Document doc, boolean isOpenRosaResponse, String hash) {
+        this(doc, isOpenRosaResponse, hash, null);
+    }
+
+    public DocumentFetchResult(Document doc, boolean isOpenRosaResponse, String hash, String etag) {
         responseCode = 0;
         errorMessage = null;
         this.doc = doc;
         this.isOpenRosaResponse = isOpenRosaResponse;
         this.hash = hash;
+        this.etag = etag;
+    }
+
+    /**
+     * A result for a conditional request where the document hasn't changed.
+     */
+    public static DocumentFetchResult notModified() {
+        return new DocumentFetchResult(null, HttpURLConnection.HTTP_NOT_MODIFIED);
     }
 
     public String getHash() {
         return hash;
     }
+
+    public String getEtag() {
+        return etag;
+    }
 }
@@ -0,0 +1,69 @@
+package org.odk.collect.openrosa.forms
+
+import android.util.LruCache
+import org.odk.collect.forms.ManifestFile
+import java.security.SecureRandom
+import javax.crypto.Mac
+import javax.crypto.spec.SecretKeySpec
+
+/**
+ * Remembers the most recently fetched manifests that were returned with an ETag so they can be
+ * fetched conditionally. Entries are keyed by the server and credentials (using a hash of the
+ * password) as well as the manifest URL so that a manifest fetched for one user is never reused
+ * for another.
+ */
+class ManifestCache @JvmOverloads constructor(maxSize: Int = DEFAULT_MAX_SIZE) {
+
+    private val cache = LruCache<Key, Entry>(maxSize)
+
+    fun get(key: Key): Entry? {
+        return cache.get(key)
+    }
+
+    fun put(key: Key, entry: Entry) {
+        cache.put(key, entry)
+    }
+
+    fun remove(key: Key) {
+        cache.remove(key)
+    }
+
+    /**
+     * Use [key] to create keys so that the password is never stored.
+     */
+    data class Key(
+        val serverUrl: String,
+        val username: String?,
+        val passwordHash: String?,
+        val manifestUrl: String
+    )
+
+    data class Entry(val etag: String, val manifestFile: ManifestFile)
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 128
+
+        private const val HASH_ALGORITHM = "HmacSHA256"
+
+        /**
+         * Keys only need to match within the process (the cache is never persisted) so the
+         * password is hashed with a random secret. That way a key that ends up in a log can't be
+         * used to recover the password.
+         */
+        private val passwordSecret = SecretKeySpec(
+            ByteArray(32).also { SecureRandom().nextBytes(it) },
+            HASH_ALGORITHM
+        )
+
+        @JvmStatic
+        fun key(serverUrl: String, username: String?, password: String?, manifestUrl: String): Key {
+            return Key(serverUrl, username, password?.let { hashPassword(it) }, manifestUrl)
+        }
+
+        private fun hashPassword(password: String): String {
+            val mac = Mac.getInstance(HASH_ALGORITHM)
+            mac.init(passwordSecret)
+            return mac.doFinal(password.toByteArray()).joinToString("") { "%02x".format(it) }
+        }
+    }
+}
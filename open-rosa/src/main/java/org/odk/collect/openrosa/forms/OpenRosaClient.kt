@@ -16,20 +16,24 @@ import org.odk.collect.openrosa.http.OpenRosaHttpInterface
 import org.odk.collect.openrosa.parse.OpenRosaResponseParser
 import java.io.InputStream
 import java.net.HttpURLConnection
+import java.net.URI
+import java.net.URISyntaxException
 import java.net.UnknownHostException
 import java.util.concurrent.Callable
 import javax.net.ssl.SSLException
 
-class OpenRosaClient(
+class OpenRosaClient @JvmOverloads constructor(
     serverURL: String,
     openRosaHttpInterface: OpenRosaHttpInterface?,
-    private val webCredentialsProvider: WebCredentialsProvider,
-    private val openRosaResponseParser: OpenRosaResponseParser
+    webCredentialsProvider: WebCredentialsProvider,
+    private val openRosaResponseParser: OpenRosaResponseParser,
+    private val manifestCache: ManifestCache = ManifestCache()
 ) : FormSource, EntitySource {
     private val openRosaXMLFetcher =
-        OpenRosaXmlFetcher(openRosaHttpInterface, this.webCredentialsProvider)
+        OpenRosaXmlFetcher(openRosaHttpInterface, webCredentialsProvider)
 
     private var serverUrl: String = serverURL
+    private var webCredentialsProvider: WebCredentialsProvider? = webCredentialsProvider
 
     @Throws(FormSourceException::class)
     override fun fetchFormList(): List<FormListItem> {
@@ -64,13 +68,23 @@ class OpenRosaClient(
         }
     }
 
+    /**
+     * Manifests returned with an ETag are cached so that later fetches can be made conditionally
+     * and a "304 Not Modified" response can reuse the already parsed manifest.
+     */
     @Throws(FormSourceException::class)
     override fun fetchManifest(manifestURL: String?): ManifestFile? {
         if (manifestURL == null) {
             return null
         }
 
-        val result = mapException { openRosaXMLFetcher.getXML(manifestURL) }
+        val cacheKey = getManifestCacheKey(manifestURL)
+        val cachedManifest = manifestCache.get(cacheKey)
+        val result = mapException { openRosaXMLFetcher.getXML(manifestURL, cachedManifest?.etag) }
+
+        if (cachedManifest != null && result.responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return cachedManifest.manifestFile
+        }
 
         if (result.errorMessage != null) {
             if (result.responseCode != HttpURLConnection.HTTP_OK) {
@@ -86,7 +100,14 @@ class OpenRosaClient(
 
         val mediaFiles = openRosaResponseParser.parseManifest(result.doc)
         if (mediaFiles != null) {
-            return ManifestFile(result.hash, mediaFiles)
+            return ManifestFile(result.hash, mediaFiles).also {
+                val etag = result.etag
+                if (etag != null) {
+                    manifestCache.put(cacheKey, ManifestCache.Entry(etag, it))
+                } else {
+                    manifestCache.remove(cacheKey)
+                }
+            }
         } else {
             throw FormSourceException.ParseError(serverUrl)
         }
@@ -119,9 +140,20 @@ class OpenRosaClient(
     }
 
     fun updateWebCredentialsUtils(webCredentialsProvider: WebCredentialsProvider?) {
+        this.webCredentialsProvider = webCredentialsProvider
         openRosaXMLFetcher.updateWebCredentialsProvider(webCredentialsProvider)
     }
 
+    private fun getManifestCacheKey(manifestURL: String): ManifestCache.Key {
+        val credentials = try {
+            webCredentialsProvider?.getCredentials(URI(manifestURL))
+        } catch (e: URISyntaxException) {
+            null
+        }
+
+        return ManifestCache.key(serverUrl, credentials?.username, credentials?.password, manifestURL)
+    }
+
     @Throws(FormSourceException::class)
     private fun <T> mapException(callable: Callable<T>): T {
         try {
@@ -7,6 +7,7 @@ import org.javarosa.xform.parse.XFormParser;
 import org.kxml2.kdom.Document;
 import org.odk.collect.openrosa.http.HttpCredentialsInterface;
 import org.odk.collect.openrosa.http.HttpGetResult;
+import org.odk.collect.openrosa.http.OpenRosaConstants;
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface;
 
 import java.io.InputStreamReader;
@@ -15,6 +16,8 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -44,12 +47,33 @@ public class OpenRosaXmlFetcher {
 
     @SuppressWarnings("PMD.AvoidRethrowingException")
     public DocumentFetchResult getXML(String urlString) throws Exception {
+        return getXML(urlString, null);
+    }
+
+    /**
+     * Gets an XML document for a given url, making a conditional request if an ETag from a
+     * previous request is passed.
+     *
+     * @param urlString - url of the XML document
+     * @param etag      - ETag returned with a previous copy of the document (or null)
+     * @return DocumentFetchResult - an object that contains the results of the "get" operation.
+     * This will be {@link DocumentFetchResult#notModified()} if the document matches the ETag
+     */
+    public DocumentFetchResult getXML(String urlString, @Nullable String etag) throws Exception {
 
         // parse response
         Document doc;
         HttpGetResult inputStreamResult;
 
-        inputStreamResult = fetch(urlString, HTTP_CONTENT_TYPE_TEXT_XML);
+        if (etag == null) {
+            inputStreamResult = fetch(urlString, HTTP_CONTENT_TYPE_TEXT_XML);
+        } else {
+            inputStreamResult = fetch(urlString, HTTP_CONTENT_TYPE_TEXT_XML, Collections.singletonMap(OpenRosaConstants.IF_NONE_MATCH_HEADER, etag));
+        }
+
+        if (etag != null && inputStreamResult.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return DocumentFetchResult.notModified();
+        }
 
         if (inputStreamResult.getStatusCode() != HttpURLConnection.HTTP_OK) {
             String error = "getXML failed while accessing "
@@ -59,7 +83,7 @@ public class OpenRosaXmlFetcher {
 
         doc = XFormParser.getXMLDocument(new InputStreamReader(inputStreamResult.getInputStream()));
 
-        return new DocumentFetchResult(doc, inputStreamResult.isOpenRosaResponse(), inputStreamResult.getHash());
+        return new DocumentFetchResult(doc, inputStreamResult.isOpenRosaResponse(), inputStreamResult.getHash(), inputStreamResult.getHeader(OpenRosaConstants.ETAG_HEADER));
     }
 
     /**
@@ -73,6 +97,11 @@ public class OpenRosaXmlFetcher {
 
     @NonNull
     public HttpGetResult fetch(@NonNull String downloadUrl, @Nullable final String contentType) throws Exception {
+        return fetch(downloadUrl, contentType, null);
+    }
+
+    @NonNull
+    private HttpGetResult fetch(@NonNull String downloadUrl, @Nullable final String contentType, @Nullable Map<String, String> requestHeaders) throws Exception {
         URI uri;
         try {
             // assume the downloadUrl is escaped properly
@@ -88,7 +117,11 @@ public class OpenRosaXmlFetcher {
             throw new Exception("Invalid server URL (no hostname): " + downloadUrl);
         }
 
-        return httpInterface.executeGetRequest(uri, contentType, webCredentialsUtils.getCredentials(uri));
+        if (requestHeaders == null) {
+            return httpInterface.executeGetRequest(uri, contentType, webCredentialsUtils.getCredentials(uri));
+        } else {
+            return httpInterface.executeGetRequest(uri, contentType, webCredentialsUtils.getCredentials(uri), requestHeaders);
+        }
     }
 
     public void updateWebCredentialsProvider(WebCredentialsProvider webCredentialsUtils) {
@@ -4,6 +4,8 @@ object OpenRosaConstants {
     // HTTP Header strings
     const val VERSION_HEADER = "X-OpenRosa-Version"
     const val ACCEPT_CONTENT_LENGTH_HEADER = "X-OpenRosa-Accept-Content-Length"
+    const val ETAG_HEADER = "ETag"
+    const val IF_NONE_MATCH_HEADER = "If-None-Match"
 
     // Endpoints
     const val FORM_LIST = "/formList"
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 public interface OpenRosaHttpInterface {
 
@@ -38,6 +39,18 @@ public interface OpenRosaHttpInterface {
     @NonNull
     HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @NonNull HttpCredentialsInterface credentials) throws Exception;
 
+    /**
+     * Same as {@link #executeGetRequest(URI, String, HttpCredentialsInterface)} but also sends
+     * extra request headers (such as "If-None-Match" to make a conditional request). By default
+     * the extra headers are ignored.
+     *
+     * @param requestHeaders headers to add to the request
+     */
+    @NonNull
+    default HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @NonNull HttpCredentialsInterface credentials, @NonNull Map<String, String> requestHeaders) throws Exception {
+        return executeGetRequest(uri, contentType, credentials);
+    }
+
     /**
      * Performs a Http Head request.
      *
@@ -18,6 +18,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -54,11 +55,22 @@ public class OkHttpConnection implements OpenRosaHttpInterface {
     @NonNull
     @Override
     public HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @Nullable HttpCredentialsInterface credentials) throws Exception {
+        return executeGetRequest(uri, contentType, credentials, Collections.emptyMap());
+    }
+
+    @NonNull
+    @Override
+    public HttpGetResult executeGetRequest(@NonNull URI uri, @Nullable String contentType, @Nullable HttpCredentialsInterface credentials, @NonNull Map<String, String> requestHeaders) throws Exception {
         OpenRosaServerClient httpClient = clientFactory.get(uri.getScheme(), userAgent, credentials);
-        Request request = new Request.Builder()
+        Request.Builder requestBuilder = new Request.Builder()
                 .url(uri.toURL())
-                .get()
-                .build();
+                .get();
+
+        for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+            requestBuilder.header(header.getKey(), header.getValue());
+        }
+
+        Request request = requestBuilder.build();
 
         Response response = httpClient.makeRequest(request, new Date());
         int statusCode = response.code();
@@ -9,12 +9,15 @@ import org.junit.runner.RunWith
 import org.mockito.kotlin.any
 import org.mockito.kotlin.eq
 import org.mockito.kotlin.mock
+import org.mockito.kotlin.times
 import org.mockito.kotlin.verify
 import org.mockito.kotlin.whenever
 import org.odk.collect.forms.FormSourceException
 import org.odk.collect.forms.FormSourceException.FetchError
 import org.odk.collect.forms.FormSourceException.SecurityError
 import org.odk.collect.forms.FormSourceException.ServerNotOpenRosaError
+import org.odk.collect.forms.MediaFile
+import org.odk.collect.openrosa.http.HttpCredentials
 import org.odk.collect.openrosa.http.HttpGetResult
 import org.odk.collect.openrosa.http.OpenRosaConstants
 import org.odk.collect.openrosa.http.OpenRosaHttpInterface
@@ -297,6 +300,131 @@ class OpenRosaClientTest {
         }
     }
 
+    @Test
+    fun fetchManifest_whenManifestHasNotChangedSinceLastFetch_returnsPreviousManifest() {
+        val formListApi =
+            OpenRosaClient("http://blah.com", httpInterface, webCredentialsProvider, responseParser)
+
+        val mediaFiles = listOf(MediaFile("file", "hash", "http://blah.com/file"))
+        whenever(responseParser.parseManifest(any())).thenReturn(mediaFiles)
+        whenever(
+            httpInterface.executeGetRequest(any(), any(), any())
+        ).thenReturn(
+            HttpGetResult(
+                ByteArrayInputStream("<xml></xml>".toByteArray()),
+                hashMapOf(OpenRosaConstants.VERSION_HEADER to "1.0", "ETag" to "\"v1\""),
+                "manifest-hash",
+                200
+            )
+        )
+
+        val manifestUrl = "http://blah.com/etag-manifest"
+        val manifest = formListApi.fetchManifest(manifestUrl)
+
+        whenever(
+            httpInterface.executeGetRequest(
+                any(),
+                any(),
+                any(),
+                eq(mapOf(OpenRosaConstants.IF_NONE_MATCH_HEADER to "\"v1\""))
+            )
+        ).thenReturn(HttpGetResult(null, HashMap(), "", 304))
+
+        assertThat(formListApi.fetchManifest(manifestUrl), equalTo(manifest))
+        verify(responseParser, times(1)).parseManifest(any())
+    }
+
+    @Test
+    fun fetchManifest_reusesManifestsCachedByOtherClientsWithTheSameCache() {
+        val manifestCache = ManifestCache()
+        stubManifestWithETag()
+
+        OpenRosaClient("http://blah.com", httpInterface, webCredentialsProvider, responseParser, manifestCache)
+            .fetchManifest("http://blah.com/etag-manifest")
+        OpenRosaClient("http://blah.com", httpInterface, webCredentialsProvider, responseParser, manifestCache)
+            .fetchManifest("http://blah.com/etag-manifest")
+
+        verify(httpInterface, times(1)).executeGetRequest(any(), any(), any())
+        verify(httpInterface, times(1)).executeGetRequest(any(), any(), any(), any())
+    }
+
+    @Test
+    fun fetchManifest_doesNotReuseManifestsCachedForDifferentCredentials() {
+        val formListApi = OpenRosaClient(
+            "http://blah.com",
+            httpInterface,
+            { HttpCredentials("alice", "password") },
+            responseParser
+        )
+        stubManifestWithETag()
+
+        formListApi.fetchManifest("http://blah.com/etag-manifest")
+        formListApi.updateWebCredentialsUtils { HttpCredentials("bob", "password") }
+        formListApi.fetchManifest("http://blah.com/etag-manifest")
+
+        verify(httpInterface, times(2)).executeGetRequest(any(), any(), any())
+        verify(httpInterface, times(0)).executeGetRequest(any(), any(), any(), any())
+    }
+
+    @Test
+    fun fetchManifest_doesNotReuseManifestsCachedForADifferentPassword() {
+        val formListApi = OpenRosaClient(
+            "http://blah.com",
+            httpInterface,
+            { HttpCredentials("alice", "password") },
+            responseParser
+        )
+        stubManifestWithETag()
+
+        formListApi.fetchManifest("http://blah.com/etag-manifest")
+        formListApi.updateWebCredentialsUtils { HttpCredentials("alice", "other-password") }
+        formListApi.fetchManifest("http://blah.com/etag-manifest")
+
+        verify(httpInterface, times(2)).executeGetRequest(any(), any(), any())
+        verify(httpInterface, times(0)).executeGetRequest(any(), any(), any(), any())
+    }
+
+    @Test
+    fun manifestCacheKeys_doNotContainThePassword() {
+        val key = ManifestCache.key("http://blah.com", "alice", "secret-password", "http://blah.com/manifest")
+
+        assertThat(key.toString().contains("secret-password"), equalTo(false))
+        assertThat(key, equalTo(ManifestCache.key("http://blah.com", "alice", "secret-password", "http://blah.com/manifest")))
+    }
+
+    @Test
+    fun fetchManifest_doesNotReuseManifestsCachedForADifferentServer() {
+        val formListApi =
+            OpenRosaClient("http://blah.com", httpInterface, webCredentialsProvider, responseParser)
+        stubManifestWithETag()
+
+        formListApi.fetchManifest("http://blah.com/etag-manifest")
+        formListApi.updateUrl("http://other.com")
+        formListApi.fetchManifest("http://blah.com/etag-manifest")
+
+        verify(httpInterface, times(2)).executeGetRequest(any(), any(), any())
+        verify(httpInterface, times(0)).executeGetRequest(any(), any(), any(), any())
+    }
+
+    @Test
+    fun fetchManifest_onlyCachesUpToTheMaxSizeOfTheCache() {
+        val formListApi = OpenRosaClient(
+            "http://blah.com",
+            httpInterface,
+            webCredentialsProvider,
+            responseParser,
+            ManifestCache(1)
+        )
+        stubManifestWithETag()
+
+        formListApi.fetchManifest("http://blah.com/etag-manifest-1")
+        formListApi.fetchManifest("http://blah.com/etag-manifest-2")
+        formListApi.fetchManifest("http://blah.com/etag-manifest-1")
+
+        verify(httpInterface, times(3)).executeGetRequest(any(), any(), any())
+        verify(httpInterface, times(0)).executeGetRequest(any(), any(), any(), any())
+    }
+
     @Test
     fun fetchForm_whenThereIsAServerError_throwsServerError() {
         val formListApi =
@@ -388,6 +516,21 @@ class OpenRosaClientTest {
         }
     }
 
+    private fun stubManifestWithETag() {
+        whenever(responseParser.parseManifest(any()))
+            .thenReturn(listOf(MediaFile("file", "hash", "http://blah.com/file")))
+        whenever(httpInterface.executeGetRequest(any(), any(), any())).thenAnswer {
+            HttpGetResult(
+                ByteArrayInputStream("<xml></xml>".toByteArray()),
+                hashMapOf(OpenRosaConstants.VERSION_HEADER to "1.0", "ETag" to "\"v1\""),
+                "manifest-hash",
+                200
+            )
+        }
+        whenever(httpInterface.executeGetRequest(any(), any(), any(), any()))
+            .thenReturn(HttpGetResult(null, HashMap(), "", 304))
+    }
+
     companion object {
         private fun join(vararg strings: String): String {
             val bob = StringBuilder()
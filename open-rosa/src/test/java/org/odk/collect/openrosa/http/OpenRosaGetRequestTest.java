@@ -16,6 +16,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.zip.GZIPOutputStream;
 
 import okhttp3.mockwebserver.MockResponse;
@@ -65,6 +66,25 @@ public abstract class OpenRosaGetRequestTest {
         assertThat(request.getHeader("User-Agent"), equalTo(USER_AGENT));
     }
 
+    @Test
+    public void sendsPassedRequestHeaders() throws Exception {
+        mockWebServer.enqueue(new MockResponse());
+
+        subject.executeGetRequest(mockWebServer.url("").uri(), null, null, Collections.singletonMap("If-None-Match", "\"v1\""));
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getHeader("If-None-Match"), equalTo("\"v1\""));
+    }
+
+    @Test
+    public void whenResponseIsNotModified_returnsNotModifiedStatusWithoutBody() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(304));
+
+        HttpGetResult result = subject.executeGetRequest(mockWebServer.url("").uri(), null, null, Collections.singletonMap("If-None-Match", "\"v1\""));
+        assertThat(result.getStatusCode(), equalTo(304));
+        assertThat(result.getInputStream(), nullValue());
+    }
+
     @Test
     public void returnsBodyWithEmptyHash() throws Exception {
         mockWebServer.enqueue(new MockResponse()
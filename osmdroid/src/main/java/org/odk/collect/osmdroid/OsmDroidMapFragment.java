@@ -42,6 +42,7 @@ import com.google.android.gms.location.LocationListener;
 import org.odk.collect.androidshared.system.ContextUtils;
 import org.odk.collect.location.LocationClient;
 import org.odk.collect.maps.LineDescription;
+import org.odk.collect.maps.MapBounds;
 import org.odk.collect.maps.MapConfigurator;
 import org.odk.collect.maps.MapFragment;
 import org.odk.collect.maps.MapFragmentDelegate;
@@ -54,6 +55,7 @@ import org.odk.collect.maps.markers.MarkerIconCreator;
 import org.odk.collect.maps.markers.MarkerIconDescription;
 import org.odk.collect.settings.SettingsProvider;
 import org.osmdroid.api.IGeoPoint;
+import org.osmdroid.events.DelayedMapListener;
 import org.osmdroid.events.MapListener;
 import org.osmdroid.events.ScrollEvent;
 import org.osmdroid.events.ZoomEvent;
@@ -94,6 +96,9 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
     // Bundle keys understood by applyConfig().
     public static final String KEY_WEB_MAP_SERVICE = "WEB_MAP_SERVICE";
 
+    // How long the map needs to stop moving for before it's considered idle
+    private static final long CAMERA_IDLE_DELAY = 200;
+
     @Inject
     ReferenceLayerRepository referenceLayerRepository;
 
@@ -121,6 +126,7 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
     private PointListener gpsLocationListener;
     private FeatureListener featureClickListener;
     private FeatureListener dragEndListener;
+    private CameraIdleListener cameraIdleListener;
     private MyLocationNewOverlay myLocationOverlay;
     private OsmLocationClientWrapper osmLocationClientWrapper;
     private int nextFeatureId = 1;
@@ -218,6 +224,17 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
                 return false;
             }
         });
+        map.addMapListener(new DelayedMapListener(new MapListener() {
+            @Override
+            public boolean onScroll(ScrollEvent event) {
+                return onCameraIdle();
+            }
+
+            @Override
+            public boolean onZoom(ZoomEvent event) {
+                return onCameraIdle();
+            }
+        }, CAMERA_IDLE_DELAY));
         addAttributionAndMapEventsOverlays();
         loadReferenceOverlay();
         addMapLayoutChangeListener(map);
@@ -272,6 +289,12 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         return map.getZoomLevel();
     }
 
+    @Override
+    public @Nullable MapBounds getVisibleBounds() {
+        BoundingBox box = map.getBoundingBox();
+        return new MapBounds(box.getLatNorth(), box.getLonEast(), box.getLatSouth(), box.getLonWest());
+    }
+
     @Override
     public void zoomToPoint(@Nullable MapPoint center, boolean animate) {
         zoomToPoint(center, POINT_ZOOM, animate);
@@ -434,6 +457,19 @@ public class OsmDroidMapFragment extends Fragment implements MapFragment,
         dragEndListener = listener;
     }
 
+    @Override
+    public void setCameraIdleListener(@Nullable CameraIdleListener listener) {
+        cameraIdleListener = listener;
+    }
+
+    private boolean onCameraIdle() {
+        if (cameraIdleListener != null) {
+            cameraIdleListener.onCameraIdle();
+        }
+
+        return false;
+    }
+
     @Override
     public void setGpsLocationListener(@Nullable PointListener listener) {
         gpsLocationListener = listener;
@@ -32,6 +32,8 @@ object ProjectKeys {
     const val KEY_HIDE_OLD_FORM_VERSIONS = "hide_old_form_versions"
     const val KEY_AUTOSEND = "autosend"
     const val KEY_DELETE_AFTER_SEND = "delete_send"
+    const val KEY_SUBMISSION_CONCURRENCY = "submission_concurrency"
+    const val KEY_MEDIA_DOWNLOAD_CONCURRENCY = "media_download_concurrency"
     const val KEY_CONSTRAINT_BEHAVIOR = "constraint_behavior"
     const val KEY_HIGH_RESOLUTION = "high_resolution"
     const val KEY_IMAGE_SIZE = "image_size"
@@ -2,26 +2,47 @@ package org.odk.collect.shared
 
 import org.odk.collect.shared.Query.And
 import org.odk.collect.shared.Query.NumericEq
+import org.odk.collect.shared.Query.NumericGreaterThan
+import org.odk.collect.shared.Query.NumericGreaterThanOrEq
+import org.odk.collect.shared.Query.NumericLessThan
+import org.odk.collect.shared.Query.NumericLessThanOrEq
 import org.odk.collect.shared.Query.NumericNotEq
 import org.odk.collect.shared.Query.Or
+import org.odk.collect.shared.Query.StringContains
 import org.odk.collect.shared.Query.StringEq
+import org.odk.collect.shared.Query.StringIn
 import org.odk.collect.shared.Query.StringNotEq
+import org.odk.collect.shared.Query.StringStartsWith
 
 sealed class Query {
-    class StringEq(val column: String, val value: String) : Query()
-    class StringNotEq(val column: String, val value: String) : Query()
-    class NumericEq(val column: String, val value: Double) : Query()
-    class NumericNotEq(val column: String, val value: Double) : Query()
-    class And(val queryA: Query, val queryB: Query) : Query()
-    class Or(val queryA: Query, val queryB: Query) : Query()
+    data class StringEq(val column: String, val value: String) : Query()
+    data class StringNotEq(val column: String, val value: String) : Query()
+    data class StringIn(val column: String, val values: List<String>) : Query()
+    data class StringStartsWith(val column: String, val value: String) : Query()
+    data class StringContains(val column: String, val value: String) : Query()
+    data class NumericEq(val column: String, val value: Double) : Query()
+    data class NumericNotEq(val column: String, val value: Double) : Query()
+    data class NumericLessThan(val column: String, val value: Double) : Query()
+    data class NumericLessThanOrEq(val column: String, val value: Double) : Query()
+    data class NumericGreaterThan(val column: String, val value: Double) : Query()
+    data class NumericGreaterThanOrEq(val column: String, val value: Double) : Query()
+    data class And(val queryA: Query, val queryB: Query) : Query()
+    data class Or(val queryA: Query, val queryB: Query) : Query()
 }
 
 fun Query.mapColumns(columnMapper: (String) -> String): Query {
     return when (this) {
         is StringEq -> StringEq(columnMapper(column), value)
         is StringNotEq -> StringNotEq(columnMapper(column), value)
+        is StringIn -> StringIn(columnMapper(column), values)
+        is StringStartsWith -> StringStartsWith(columnMapper(column), value)
+        is StringContains -> StringContains(columnMapper(column), value)
         is NumericEq -> NumericEq(columnMapper(column), value)
         is NumericNotEq -> NumericNotEq(columnMapper(column), value)
+        is NumericLessThan -> NumericLessThan(columnMapper(column), value)
+        is NumericLessThanOrEq -> NumericLessThanOrEq(columnMapper(column), value)
+        is NumericGreaterThan -> NumericGreaterThan(columnMapper(column), value)
+        is NumericGreaterThanOrEq -> NumericGreaterThanOrEq(columnMapper(column), value)
         is And -> And(
             queryA.mapColumns(columnMapper),
             queryB.mapColumns(columnMapper)
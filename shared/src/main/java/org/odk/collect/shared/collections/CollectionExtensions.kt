@@ -1,15 +1,59 @@
 package org.odk.collect.shared.collections
 
 import org.json.JSONArray
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 import kotlin.math.abs
 
 object CollectionExtensions {
 
+    const val TERMINATION_TIMEOUT_SECONDS = 60L
+
     fun <T> List<T>.itemFromHashOf(any: Any): T {
         val index = abs(any.hashCode()) % this.size
         return this[index]
     }
 
+    /**
+     * Maps each item using up to [concurrency] threads and returns the results in the same order
+     * as the list. If any transform fails, the remaining ones are cancelled and the failure is
+     * rethrown once they have stopped (or [TERMINATION_TIMEOUT_SECONDS] has passed) so that the
+     * caller can safely clean up anything they were using. Transforms that are blocked in IO
+     * (which will often ignore interrupts) will be waited on.
+     */
+    fun <T, R> List<T>.mapConcurrently(concurrency: Int, transform: (T) -> R): List<R> {
+        val threads = concurrency.coerceAtMost(this.size)
+        if (threads <= 1) {
+            return this.map(transform)
+        }
+
+        val executor = Executors.newFixedThreadPool(threads)
+        try {
+            val futures = this.map { item -> executor.submit(Callable { transform(item) }) }
+            return futures.map {
+                try {
+                    it.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+            awaitTermination(executor)
+        }
+    }
+
+    private fun awaitTermination(executor: ExecutorService) {
+        try {
+            executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+    }
+
     fun JSONArray.has(value: Any): Boolean {
         for (i in 0 until this.length()) {
             if (this[i] == value) {
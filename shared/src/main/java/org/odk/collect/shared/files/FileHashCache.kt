@@ -0,0 +1,118 @@
+package org.odk.collect.shared.files
+
+import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.io.File
+import java.io.FileWriter
+import java.io.IOException
+
+/**
+ * Caches MD5 hashes of files keyed by their path, size and last modified time so that each file
+ * only needs to be hashed once per change. If a [storeFile] is passed, hashes are persisted to it
+ * (as an append only log that is compacted when loaded) so they survive process death.
+ *
+ * Files modified within [RACY_WINDOW] of being hashed aren't cached as a further change inside
+ * that window might not change their size or last modified time.
+ */
+class FileHashCache @JvmOverloads constructor(
+    private val storeFile: File? = null,
+    private val clock: () -> Long = { System.currentTimeMillis() }
+) {
+
+    private val entries: MutableMap<String, Entry> by lazy { load() }
+
+    fun getMd5Hash(file: File): String? {
+        val path = file.absolutePath
+        val size = file.length()
+        val lastModified = file.lastModified()
+
+        synchronized(this) {
+            val entry = entries[path]
+            if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+                return entry.hash
+            }
+        }
+
+        val hash = file.getMd5Hash() ?: return null
+        if (clock() - lastModified >= RACY_WINDOW && !path.contains('\n')) {
+            synchronized(this) {
+                val entry = Entry(hash, size, lastModified)
+                entries[path] = entry
+                append(path, entry)
+            }
+        }
+
+        return hash
+    }
+
+    private fun load(): MutableMap<String, Entry> {
+        val loaded = HashMap<String, Entry>()
+        if (storeFile == null || !storeFile.exists()) {
+            return loaded
+        }
+
+        var lines = 0
+        try {
+            storeFile.forEachLine { line ->
+                val parts = line.split(SEPARATOR, limit = 4)
+                if (parts.size == 4) {
+                    val size = parts[1].toLongOrNull()
+                    val lastModified = parts[2].toLongOrNull()
+                    if (size != null && lastModified != null) {
+                        loaded[parts[3]] = Entry(parts[0], size, lastModified)
+                    }
+                }
+
+                lines++
+            }
+        } catch (e: IOException) {
+            return HashMap()
+        }
+
+        if (lines > loaded.size * 2) {
+            loaded.keys.removeAll { !File(it).exists() }
+            compact(loaded)
+        }
+
+        return loaded
+    }
+
+    private fun append(path: String, entry: Entry) {
+        if (storeFile == null) {
+            return
+        }
+
+        try {
+            FileWriter(storeFile, true).use { it.write(serialize(path, entry)) }
+        } catch (e: IOException) {
+            // Hashes will just be recalculated next time
+        }
+    }
+
+    private fun compact(entries: Map<String, Entry>) {
+        if (storeFile == null) {
+            return
+        }
+
+        try {
+            val tempFile = File(storeFile.parentFile, "${storeFile.name}.tmp")
+            tempFile.bufferedWriter().use { writer ->
+                entries.forEach { (path, entry) -> writer.write(serialize(path, entry)) }
+            }
+
+            tempFile.renameTo(storeFile)
+        } catch (e: IOException) {
+            // Hashes will just be recalculated next time
+        }
+    }
+
+    private fun serialize(path: String, entry: Entry): String {
+        return listOf(entry.hash, entry.size, entry.lastModified, path).joinToString(SEPARATOR) + "\n"
+    }
+
+    private data class Entry(val hash: String, val size: Long, val lastModified: Long)
+
+    companion object {
+        const val RACY_WINDOW = 2000L
+        private const val SEPARATOR = "\t"
+    }
+}
@@ -42,16 +42,26 @@ object Md5 {
                 }
                 md.update(buffer, 0, result)
             }
-            val md5 = StringBuilder(BigInteger(1, md.digest()).toString(16))
-            while (md5.length < 32) {
-                md5.insert(0, "0")
-            }
             inputStream.close()
-            md5.toString()
+            toMd5Hash(md.digest())
         } catch (e: NoSuchAlgorithmException) {
             null
         } catch (e: IOException) {
             null
         }
     }
+
+    /**
+     * Formats an MD5 digest in the same way as the rest of these functions (zero-padded to 32
+     * hex digits) for when the digest is computed elsewhere.
+     */
+    @JvmStatic
+    fun toMd5Hash(digest: ByteArray): String {
+        val md5 = StringBuilder(BigInteger(1, digest).toString(16))
+        while (md5.length < 32) {
+            md5.insert(0, "0")
+        }
+
+        return md5.toString()
+    }
 }
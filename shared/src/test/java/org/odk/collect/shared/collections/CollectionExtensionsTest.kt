@@ -6,6 +6,10 @@ import org.json.JSONArray
 import org.junit.Test
 import org.odk.collect.shared.collections.CollectionExtensions.has
 import org.odk.collect.shared.collections.CollectionExtensions.itemFromHashOf
+import org.odk.collect.shared.collections.CollectionExtensions.mapConcurrently
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 
 class CollectionExtensionsTest {
 
@@ -26,6 +30,66 @@ class CollectionExtensionsTest {
         assertThat(listOf("0", "1").itemFromHashOf(HashCode(-1)), equalTo("1"))
     }
 
+    @Test
+    fun `mapConcurrently returns results in the same order as the list`() {
+        val results = (1..10).toList().mapConcurrently(3) { it * 2 }
+        assertThat(results, equalTo((1..10).map { it * 2 }))
+    }
+
+    @Test
+    fun `mapConcurrently runs transforms at the same time`() {
+        val started = CountDownLatch(2)
+        val results = listOf(1, 2).mapConcurrently(2) {
+            started.countDown()
+            started.await(5, TimeUnit.SECONDS)
+        }
+
+        assertThat(results, equalTo(listOf(true, true)))
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun `mapConcurrently rethrows exceptions from transforms`() {
+        listOf(1, 2).mapConcurrently(2) {
+            if (it == 2) {
+                throw IllegalStateException()
+            }
+        }
+    }
+
+    @Test
+    fun `mapConcurrently waits for running transforms to stop before rethrowing`() {
+        val started = CountDownLatch(2)
+        val finished = AtomicBoolean(false)
+
+        try {
+            listOf(1, 2).mapConcurrently(2) {
+                started.countDown()
+                started.await(5, TimeUnit.SECONDS)
+
+                if (it == 1) {
+                    throw IllegalStateException()
+                } else {
+                    // Like a blocking read, keep going even if interrupted
+                    val end = System.currentTimeMillis() + 200
+                    while (System.currentTimeMillis() < end) {
+                        try {
+                            Thread.sleep((end - System.currentTimeMillis()).coerceAtLeast(0))
+                        } catch (e: InterruptedException) {
+                            // Ignored
+                        }
+                    }
+
+                    finished.set(true)
+                }
+            }
+        } catch (e: IllegalStateException) {
+            assertThat(finished.get(), equalTo(true))
+            return
+        }
+
+        throw AssertionError("Expected exception")
+    }
+
     @Test
     fun `has returns true if given value exists in json array`() {
         assertThat(JSONArray(listOf("blah")).has("blah"), equalTo(true))
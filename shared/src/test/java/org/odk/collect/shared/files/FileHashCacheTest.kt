@@ -0,0 +1,98 @@
+package org.odk.collect.shared.files
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.equalTo
+import org.hamcrest.Matchers.nullValue
+import org.junit.Test
+import org.odk.collect.shared.TempFiles
+import org.odk.collect.shared.strings.Md5.getMd5Hash
+import java.io.File
+
+class FileHashCacheTest {
+
+    private val storeFile = File(TempFiles.createTempDir(), "hashes")
+
+    @Test
+    fun `getMd5Hash returns the MD5 hash of the file`() {
+        val file = createFile("contents")
+        assertThat(FileHashCache(storeFile).getMd5Hash(file), equalTo(file.getMd5Hash()))
+    }
+
+    @Test
+    fun `getMd5Hash returns null when the file does not exist`() {
+        val file = File(TempFiles.createTempDir(), "missing")
+        assertThat(FileHashCache(storeFile).getMd5Hash(file), nullValue())
+    }
+
+    @Test
+    fun `getMd5Hash returns the cached hash when the file's size and last modified time have not changed`() {
+        val file = createFile("contents")
+        val cache = FileHashCache(storeFile)
+        val hash = cache.getMd5Hash(file)
+
+        // Change the contents without changing the size or last modified time
+        val lastModified = file.lastModified()
+        file.writeText("CONTENTS")
+        file.setLastModified(lastModified)
+
+        assertThat(cache.getMd5Hash(file), equalTo(hash))
+    }
+
+    @Test
+    fun `getMd5Hash returns a new hash when the file's last modified time changes`() {
+        val file = createFile("contents")
+        val cache = FileHashCache(storeFile)
+        cache.getMd5Hash(file)
+
+        val lastModified = file.lastModified()
+        file.writeText("CONTENTS")
+        file.setLastModified(lastModified - 5000)
+
+        assertThat(cache.getMd5Hash(file), equalTo(file.getMd5Hash()))
+    }
+
+    @Test
+    fun `getMd5Hash returns a new hash when the file's size changes`() {
+        val file = createFile("contents")
+        val cache = FileHashCache(storeFile)
+        cache.getMd5Hash(file)
+
+        val lastModified = file.lastModified()
+        file.writeText("more contents")
+        file.setLastModified(lastModified)
+
+        assertThat(cache.getMd5Hash(file), equalTo(file.getMd5Hash()))
+    }
+
+    @Test
+    fun `getMd5Hash does not cache the hash of a recently modified file`() {
+        val file = createFile("contents")
+        val cache = FileHashCache(storeFile) { file.lastModified() }
+        cache.getMd5Hash(file)
+
+        val lastModified = file.lastModified()
+        file.writeText("CONTENTS")
+        file.setLastModified(lastModified)
+
+        assertThat(cache.getMd5Hash(file), equalTo(file.getMd5Hash()))
+    }
+
+    @Test
+    fun `hashes are persisted between instances using the same store file`() {
+        val file = createFile("contents")
+        val hash = FileHashCache(storeFile).getMd5Hash(file)
+
+        val lastModified = file.lastModified()
+        file.writeText("CONTENTS")
+        file.setLastModified(lastModified)
+
+        assertThat(FileHashCache(storeFile).getMd5Hash(file), equalTo(hash))
+    }
+
+    private fun createFile(contents: String): File {
+        return File(TempFiles.createTempDir(), "file").also {
+            it.writeText(contents)
+            it.setLastModified(System.currentTimeMillis() - 10000)
+        }
+    }
+}
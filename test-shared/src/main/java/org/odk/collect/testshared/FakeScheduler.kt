@@ -51,6 +51,9 @@ class FakeScheduler : Scheduler {
     ) {
     }
 
+    override fun deferred(tag: String, spec: TaskSpec, inputData: Map<String, String>) {
+    }
+
     override fun networkDeferredRepeat(
         tag: String,
         taskSpec: TaskSpec,